@@ -2,13 +2,16 @@ package FracPermBasic;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
-
-import Polynomial;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class FracHal {
     static int prime;
@@ -21,6 +24,9 @@ public class FracHal {
     static int[][] powerTable;
     
     static boolean outputPerms;
+    static boolean fastMode; // only the PERMUTATION lines, from the pruned parallel search
+    static int threads;
+    static final long CHUNK_PAIRS = 1 << 16; // f/g pairs per fast mode task
 
     public static void main(String[] args) throws IOException {
         parseArgs(args);
@@ -39,6 +45,10 @@ public class FracHal {
         int gLock = 0; // -1 = no lock, 0 = lock first coeff
         if(fdegree % prime == 0)
             fLock = 0;
+        if(fastMode) {
+            fastSearch(fLock, gLock);
+            return;
+        }
 
         // String outFileName = "frac_" + prime + "_" + power + "_" + fdegree + "_" + gdegree + ".txt";
         // BufferedWriter outFile = new BufferedWriter(new FileWriter(outFileName));
@@ -99,6 +109,38 @@ public class FracHal {
         System.out.println(plusXcount + " +x permutations found");
     }
     
+    public static void fastSearch(int fLock, int gLock) { // same pairs, perms and counts as the full listing, printing only its PERMUTATION lines
+        long gCount = (long) Math.pow(GF.n, gdegree - gLock); // g by index, in incrementPolynomial order
+        long fCount = (long) Math.pow(GF.n, fdegree - fLock);
+        long gsPerChunk = Math.max(1, CHUNK_PAIRS / fCount);
+        long count = 0;
+        long plusXcount = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // ranges of consecutive g are searched on the pool and printed in order
+            ArrayDeque<Future<HalSearch>> pending = new ArrayDeque<Future<HalSearch>>();
+            long next = 0;
+            while(next < gCount || !pending.isEmpty()) {
+                while(next < gCount && pending.size() < 2 * threads) { // bounds the results held in memory
+                    final long from = next;
+                    final long to = Math.min(gCount, next + gsPerChunk);
+                    pending.add(pool.submit(() -> new HalSearch(fLock, gLock).search(from, to)));
+                    next = to;
+                }
+                HalSearch chunk = pending.poll().get();
+                System.out.print(chunk.text);
+                count += chunk.count;
+                plusXcount += chunk.plusXcount;
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            System.out.println("Search failed.");
+            ex.printStackTrace();
+        }
+        pool.shutdown();
+        System.out.println(count + " normalized fractional permutation polynomials found");
+        System.out.println(plusXcount + " +x permutations found");
+    }
+    
     public static int add(int a, int b) { // a + b in GF
         return GF.addTable[a + b * GF.n];
     }
@@ -119,15 +161,11 @@ public class FracHal {
         return powerTable[a][b];
     }
     
-    public static int[][] fillSubtractionTable() {
+    public static int[][] fillSubtractionTable() { // b + i = a  =>  a - b = i
         int[][] subtraction = new int[GF.n][GF.n];
-        for(int a = 0; a < GF.n; a++) {
-            for(int b = 0; b < GF.n; b++) {
-                for(int i=0; i<GF.n; i++) {
-                    if(GF.addTable[b*GF.n + i] == a) {
-                         subtraction[a][b] = i;
-                    }
-                }                
+        for(int b = 0; b < GF.n; b++) {
+            for(int i=0; i<GF.n; i++) {
+                subtraction[GF.addTable[b*GF.n + i]][b] = i;
             }
         }
         return subtraction;        
@@ -138,13 +176,9 @@ public class FracHal {
         for(int a = 0; a < GF.n; a++) {
             division[a][0] = -1; // -1 as error for divide by zero
         }
-        for(int a = 0; a < GF.n; a++) {
-            for(int b = 1; b < GF.n; b++) {
-                for(int i=0; i<GF.n; i++) {
-                    if(GF.mulTable[b*GF.n + i] == a) {
-                         division[a][b] = i;
-                    }
-                }                
+        for(int b = 1; b < GF.n; b++) { // b * i = a  =>  a / b = i
+            for(int i=0; i<GF.n; i++) {
+                division[GF.mulTable[b*GF.n + i]][b] = i;
             }
         }
         return division;
@@ -385,19 +419,49 @@ public class FracHal {
         System.out.println(Arrays.toString(array));
     }
     
+    public static void printUsage() {
+        System.out.println("Usage: java FracPermBasic.FracHal <prime> <power> [<fdegree> <gdegree>] -options");
+        System.out.println("options:");
+        System.out.println("     -fast     print only the PERMUTATION lines, skipping non-permutations before the gcd test");
+        System.out.println("     -t n      number of worker threads for -fast (default: all cores)");
+    }
+    
     public static void parseArgs(String[] args) {
         if(args.length < 2) {
-            System.out.println("Usage: java FracSearch <prime> <power>");
+            printUsage();
             System.exit(0);
         }
         prime = Integer.parseInt(args[0]);
         power = Integer.parseInt(args[1]);
         fdegree = 1;
         gdegree = 2;
-        GF.initGF(prime, power);
+        int next = 2;
+        if(args.length > 3 && !args[2].startsWith("-")) {
+            fdegree = Integer.parseInt(args[2]);
+            gdegree = Integer.parseInt(args[3]);
+            next = 4;
+        }
         
         // set default options
         outputPerms = false;
+        fastMode = false;
+        threads = Runtime.getRuntime().availableProcessors();
+        for(int i=next; i<args.length; i++) {
+            if(args[i].equals("-fast"))
+                fastMode = true;
+            else if(args[i].equals("-t") && i+1 < args.length)
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            else {
+                System.out.println(args[i] + " is an unrecognized option.");
+                printUsage();
+                System.exit(0);
+            }
+        }
+        if(fdegree < 1 || gdegree < 1) {
+            System.out.println("Degrees must be at least 1.");
+            System.exit(0);
+        }
+        GF.initGF(prime, power);
         
         // check additional options
         // if(args.length > 2) {
@@ -415,6 +479,120 @@ public class FracHal {
     }
 }
 
+class HalSearch // FracHal pairs of a range of denominators, with buffers reused across pairs
+{
+    final int n = GF.n;
+    final int fLock;
+    final int gLock;
+    final int[] f = new int[FracHal.fdegree + 1];
+    final int[] g = new int[FracHal.gdegree + 1];
+    final int[] gInverse = new int[n]; // 1/g(x)
+    final int[][] partial = new int[f.length + 1][n]; // partial[i][x] = first i terms of f at x, so partial[f.length] = f(x)
+    final int[] seen = new int[n]; // pair stamp that last produced each value of f/g
+    final int[] plusSeen = new int[n]; // same for f/g + x
+    int stamp;
+    final StringBuilder text = new StringBuilder();
+    int count;
+    int plusXcount;
+
+    HalSearch(int fLock, int gLock)
+    {
+        this.fLock = fLock;
+        this.gLock = gLock;
+    }
+
+    HalSearch search(long from, long to) // denominators from, ..., to-1 by index
+    {
+        for (long index = from; index < to; index++)
+        {
+            Arrays.fill(g, 0);
+            g[0] = 1;
+            long rest = index;
+            for (int i = g.length - 1; i > gLock; i--, rest /= n)
+                g[i] = (int) (rest % n);
+            if (invertDenominator())
+                searchNumerators();
+        }
+        return this;
+    }
+
+    boolean invertDenominator() // fills gInverse, false if g has a root
+    {
+        for (int x = 0; x < n; x++)
+        {
+            int value = 0;
+            for (int i = 0; i < g.length; i++) // Horner
+                value = FracHal.add(FracHal.mult(value, x), g[i]);
+            if (value == 0)
+                return false;
+            gInverse[x] = FracHal.divide(1, value);
+        }
+        return true;
+    }
+
+    void searchNumerators()
+    {
+        Arrays.fill(f, 0);
+        f[0] = 1;
+        int changed = 0; // first coefficient that differs from the previous f
+        do
+        {
+            for (int i = changed; i < f.length; i++)
+                for (int x = 0; x < n; x++)
+                    partial[i + 1][x] = FracHal.add(partial[i][x], FracHal.mult(f[i], FracHal.power(x, f.length - 1 - i)));
+            test(partial[f.length]);
+            if (!FracHal.incrementPolynomial(f, fLock))
+                return;
+            changed = f.length - 1; // incrementing zeroes a suffix and bumps the coefficient before it
+            while (f[changed] == 0)
+                changed--;
+        }
+        while (true);
+    }
+
+    void test(int[] fValues) // permutation tests first, the gcd only for pairs that pass one
+    {
+        stamp++;
+        boolean isPerm = true;
+        boolean plusXPerm = true;
+        for (int x = 0; x < n && (isPerm || plusXPerm); x++)
+        {
+            int value = FracHal.mult(fValues[x], gInverse[x]);
+            if (isPerm)
+            {
+                isPerm = seen[value] != stamp;
+                seen[value] = stamp;
+            }
+            if (plusXPerm)
+            {
+                int plus = FracHal.add(value, x);
+                plusXPerm = plusSeen[plus] != stamp;
+                plusSeen[plus] = stamp;
+            }
+        }
+        if ((!isPerm && !plusXPerm) || !FracHal.isOne(FracHal.polyGCD(f, g)))
+            return;
+        int[] perm = new int[n];
+        int[] plusX = new int[n];
+        for (int x = 0; x < n; x++)
+        {
+            perm[x] = FracHal.mult(fValues[x], gInverse[x]);
+            plusX[x] = FracHal.add(perm[x], x);
+        }
+        String pair = Arrays.toString(f) + " / " + Arrays.toString(g);
+        if (isPerm)
+        {
+            count++;
+            text.append(pair + " = " + Arrays.toString(perm) + " PERMUTATION" + System.lineSeparator());
+        }
+        if (plusXPerm)
+        {
+            plusXcount++;
+            text.append(pair + " + x = " + Arrays.toString(plusX) + " +X PERMUTATION" + System.lineSeparator());
+        }
+    }
+}
+
 class GF 
 {    
     static Random rand = new Random(1);
@@ -486,7 +664,8 @@ class GF
             arr.add(zero);
             do
             {
-                    arr.add(base.divide(irr)[1]);
+                    base = base.divide(irr)[1]; // kept reduced, so each step divides a degree <= power polynomial
+                    arr.add(base);
                     base = base.mult(x);
             }
             while (arr.size() < n);
@@ -509,42 +688,40 @@ class GF
             return false;
     }
 
-    public static int[] multTable(int prime, int pow, Polynomial irr, List<Polynomial> arr)
+    public static int[] multTable(int prime, int pow, Polynomial irr, List<Polynomial> arr) // arr.get(i) = x^(i-1) with irr primitive, so exponents add mod n-1
     {
-            Polynomial.mod = prime;
             int sz = (int) Math.pow(prime, pow);
             int[] table = new int[sz * sz];
-            for (int a = 0; a < sz; a++)
-                    for (int b = 0; b < sz; b++)
-                    {
-                            Polynomial result = arr.get(a).mult(arr.get(b)).divide(irr)[1];
-                            for (int i = 0; i < arr.size(); i++)
-                                    if (arr.get(i).equals(result))
-                                    {
-                                            table[a + b * n] = i;
-                                            break;
-                                    }
-                    }
+            for (int a = 1; a < sz; a++)
+                    for (int b = 1; b < sz; b++)
+                            table[a + b * sz] = 1 + (a - 1 + b - 1) % (sz - 1);
             return table;
     }
 
-    public static int[] addTable(int prime, int pow, List<Polynomial> arr)
+    public static int[] addTable(int prime, int pow, List<Polynomial> arr) // elements found by their coefficients read as a base-prime number, not by searching arr
     {
-            Polynomial.mod = prime;
             int sz = (int) Math.pow(prime, pow);
+            int[][] digits = new int[sz][pow];
+            int[] index = new int[sz];
+            for (int i = 0; i < sz; i++)
+            {
+                    Polynomial poly = arr.get(i);
+                    int code = 0;
+                    for (int j = pow - 1; j >= 0; j--)
+                    {
+                            digits[i][j] = j < poly.coef.length ? poly.coef[j] : 0;
+                            code = code * prime + digits[i][j];
+                    }
+                    index[code] = i;
+            }
             int[] table = new int[sz * sz];
             for (int a = 0; a < sz; a++)
                     for (int b = 0; b < sz; b++)
                     {
-                            Polynomial result = arr.get(a).add(arr.get(b));
-                            for (int i = 0; i < arr.size(); i++)
-                            {
-                                    if (arr.get(i).equals(result))
-                                    {
-                                            table[a + b * sz] = i;
-                                            break;
-                                    }
-                            }
+                            int code = 0;
+                            for (int j = pow - 1; j >= 0; j--)
+                                    code = code * prime + (digits[a][j] + digits[b][j]) % prime;
+                            table[a + b * sz] = index[code];
                     }
             return table;
     }
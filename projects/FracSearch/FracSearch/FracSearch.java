@@ -1,43 +1,72 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FracSearch {
     // Parameter Variables
     static int prime;
     static int power;
-    static int fdegree;
-    static int gdegree;
+    static int maxFdegree; // largest degrees of the run, the tables are sized for them
+    static int maxGdegree;
+    static int[] fdegrees; // every f-degree to search, more than one (or more than one g-degree) sweeps them in one run
+    static int[] gdegrees;
+    static boolean sweep; // more than one configuration in this run
     static boolean verbose;
+    static boolean resume; // continue from the save file of an interrupted run
+    static long samples; // draw this many random candidates and estimate the NFPP count instead of searching
+    static boolean mobius; // write one representative per Mobius class, with the number of NFPPs it stands for
+    static int threads; // configurations searched at once
     // static boolean outputPerms;
     // Arithmetic Tables
     static int[][] subtractionTable;
     static int[][] divisionTable;
     static int[][] powerTable;
-    // Program Variables
-    static HashMap<Integer, ArrayList<Integer>> fFGMapValues; // maps index of f to array of minimum values needed by FG-Map
-    static HashMap<Integer, ArrayList<Integer>> gFGMapValues; // maps index of g to array of minimum values needed by FG-Map
-    static int[] lockIndex; // [0]: 0=f, 1=g; [1]: index of coefficient being fixed by FG-Map
-    static int[] lockValues; // minimum values needed to cycle through lockIndex
-    static int curLockValueIndex; // current value of lockIndex
-    static ArrayList<boolean[]> fBitMasks; // bit masks for f
-    static ArrayList<boolean[]> gBitMasks; // bit masks for g
-    static boolean pDividesG;
-    static long count;
-    static long totalToCheck;
-    static long startTime;
+    static int[][][] shiftTable; // shiftTable[b][k] = coefficients of (x+b)^k
+    static int[][] powerVectors; // powerVectors[k][x] = x^k, one row per degree for updating f(x) in place
+    // Program Variables, each configuration keeps its own state in a SearchContext
+    static HashMap<Integer, ConcurrentHashMap<String, FutureTask<DenominatorSet>>> denominatorCache; // root-free g per gmask, by g-degree, kept for the other f-degrees of a sweep
+    static HashMap<Integer, AtomicInteger> configurationsLeft; // unfinished configurations by g-degree, the last one drops the cache
+    static final AtomicLong denominatorBytes = new AtomicLong(); // held by every DenominatorSet in use or cached, kept under a quarter of the heap
+    static final Set<SearchContext> running = ConcurrentHashMap.newKeySet(); // configurations being searched, for the progress lines
 
     public static void main(String[] args) throws IOException {
         System.out.println("Here we are");
@@ -50,114 +79,426 @@ public class FracSearch {
         //verbose = true;
         
         System.out.println(GF.irr+"\n");
+        maxFdegree = Arrays.stream(fdegrees).max().getAsInt();
+        maxGdegree = Arrays.stream(gdegrees).max().getAsInt();
         subtractionTable = fillSubtractionTable();
         divisionTable = fillDivisionTable();
         powerTable = fillPowerTable();
-        fFGMapValues = getMinFGMapValues(fdegree);
-        gFGMapValues = getMinFGMapValues(gdegree);
-        fBitMasks = createFBitMasks();
-        gBitMasks = createGBitMasks();
-        pDividesG = gdegree % prime == 0;  
+        shiftTable = fillShiftTable();
+        powerVectors = fillPowerVectors();
+        Runnable updateConsole = () -> { update(); };
+        ScheduledExecutorService updateThread = Executors.newScheduledThreadPool(1);
+        updateThread.schedule(updateConsole, 10, TimeUnit.SECONDS);
+        updateThread.schedule(updateConsole, 30, TimeUnit.SECONDS);
+        updateThread.scheduleAtFixedRate(updateConsole, 1, 1, TimeUnit.MINUTES);
+        denominatorCache = new HashMap<>();
+        configurationsLeft = new HashMap<>();
+        List<Callable<Void>> configurations = new ArrayList<>();
+        for(int gd : gdegrees) { // grouped by g-degree so each gmask's denominators are found once
+            denominatorCache.put(gd, new ConcurrentHashMap<>());
+            configurationsLeft.put(gd, new AtomicInteger());
+            for(int fd : fdegrees) {
+                if(sweep && fd <= gd)
+                    continue;
+                configurationsLeft.get(gd).incrementAndGet();
+                configurations.add(() -> { runConfiguration(fd, gd); return null; });
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(samples > 0 ? 1 : threads); // an estimate already samples on every core
+        try {
+            for(Future<Void> result : pool.invokeAll(configurations))
+                result.get(); // rethrow the first failure
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException("Configuration search failed", ex);
+        } finally { // not daemon threads, they would keep the JVM alive after a failed search
+            pool.shutdown();
+            updateThread.shutdownNow();
+        }
+    }
+
+    public static void runConfiguration(int fdegree, int gdegree) throws IOException {
+        try {
+            search(new SearchContext(fdegree, gdegree));
+        } finally {
+            running.removeIf(ctx -> ctx.fdegree == fdegree && ctx.gdegree == gdegree);
+            if(configurationsLeft.get(gdegree).decrementAndGet() == 0) { // no f-degree left to share this g-degree's denominators
+                for(FutureTask<DenominatorSet> cached : denominatorCache.get(gdegree).values())
+                    release(cached.isDone() ? getDenominators(cached) : null);
+                denominatorCache.get(gdegree).clear();
+            }
+        }
+    }
+
+    public static void search(SearchContext ctx) throws IOException { // one (f-degree, g-degree) configuration
+        if(sweep)
+            System.out.println("\nSearching f-degree " + ctx.fdegree + ", g-degree " + ctx.gdegree);
       
         // Print FG-Map Values and Masks
         /*System.out.println("f(x) FG-Map Values");
-        for(int key : fFGMapValues.keySet()) {
-            System.out.println(key+": "+ fFGMapValues.get(key));
+        for(int key : ctx.fFGMapValues.keySet()) {
+            System.out.println(key+": "+ ctx.fFGMapValues.get(key));
         }
         System.out.println("g(x) FG-Map Values");
-        for(int key : gFGMapValues.keySet()) {
-            System.out.println(key+": "+ gFGMapValues.get(key));
+        for(int key : ctx.gFGMapValues.keySet()) {
+            System.out.println(key+": "+ ctx.gFGMapValues.get(key));
         }  
-        System.out.println("fBitMasks Masks: "+fBitMasks.size());
-        for(boolean[] mask : fBitMasks) {
+        System.out.println("fBitMasks Masks: "+ctx.fBitMasks.size());
+        for(boolean[] mask : ctx.fBitMasks) {
             System.out.println(Arrays.toString(mask));
         }
-        System.out.println("gBitMasks Masks: "+gBitMasks.size());
-        for(boolean[] mask : gBitMasks) {
+        System.out.println("gBitMasks Masks: "+ctx.gBitMasks.size());
+        for(boolean[] mask : ctx.gBitMasks) {
             System.out.println(Arrays.toString(mask));
         }*/
 
-        String outFileName = "frac_" + prime + "_" + power + "_" + fdegree + "_" + gdegree + ".txt";
-        BufferedWriter outFile = new BufferedWriter(new FileWriter(outFileName));
-        outFile.write(GF.irr+"\r\n");
-        outFile.flush();
-        
+        String outFileName = "frac_" + prime + "_" + power + "_" + ctx.fdegree + "_" + ctx.gdegree + ".txt";
+        if(mobius && samples == 0) {
+            outFileName = "frac_" + prime + "_" + power + "_" + ctx.fdegree + "_" + ctx.gdegree + "_mobius.txt";
+            indexMasks(ctx);
+        }
+        if(samples > 0) {
+            estimate("frac_" + prime + "_" + power + "_" + ctx.fdegree + "_" + ctx.gdegree + "_sample.txt", ctx);
+            return;
+        }
         HashSet<String> foundFracPPs = new HashSet<>();
-        count = 0;
-        totalToCheck = totalToCheck();
-        startTime = System.currentTimeMillis();
-        Runnable updateConsole = () -> { update(); };
-        ScheduledExecutorService updateThread = Executors.newScheduledThreadPool(1);
-        updateThread.schedule(updateConsole, 10, TimeUnit.SECONDS);
-        updateThread.schedule(updateConsole, 30, TimeUnit.SECONDS);
-        updateThread.scheduleAtFixedRate(updateConsole, 1, 1, TimeUnit.MINUTES);
+        ctx.checkpoint = new Checkpoint(outFileName);
+        if(sweep && resume && ctx.checkpoint.isComplete()) {
+            System.out.println("\"" + outFileName + "\" is already complete, skipping");
+            return;
+        }
+        BufferedWriter outFile = ctx.checkpoint.open(resume, foundFracPPs);
+        ctx.count = ctx.checkpoint.count;
+        ctx.totalToCheck = totalToCheck(ctx);
+        ctx.startPercent = (float)ctx.count / (float)ctx.totalToCheck;
+        ctx.startTime = System.currentTimeMillis();
+        running.add(ctx);
         // Main Loop
-        for(boolean[] gmask : gBitMasks) {
-            for(boolean[] fmask : fBitMasks) {
+        for(int gi = 0; gi < ctx.gBitMasks.size(); gi++) {
+            boolean[] gmask = ctx.gBitMasks.get(gi);
+            int firstPair = gi * ctx.fBitMasks.size(); // pairs are numbered in search order for the checkpoint
+            if(ctx.checkpoint.allDone(firstPair, firstPair + ctx.fBitMasks.size()))
+                continue; // every pair for this gmask finished before the save
+            DenominatorSet denominators = cachedDenominators(gmask, ctx); // null if too large to cache
+            for(int fi = 0; fi < ctx.fBitMasks.size(); fi++) {
+                int pair = firstPair + fi;
+                if(ctx.checkpoint.isDone(pair))
+                    continue;
+                boolean[] fmask = ctx.fBitMasks.get(fi);
+                int[] cursor = ctx.checkpoint.resumesAt(pair); // continue this pair from the saved g
                 //Find lock index
-                lockIndex = getLockIndex(fmask, gmask);
-                if(lockIndex[0] == 0) { // locking an index in f
-                    lockValues = fFGMapValues.get(lockIndex[1]).stream().mapToInt(i->i).toArray();
+                ctx.lockIndex = getLockIndex(fmask, gmask, ctx);
+                if(ctx.lockIndex[0] == 0) { // locking an index in f
+                    ctx.lockValues = ctx.fFGMapValues.get(ctx.lockIndex[1]).stream().mapToInt(i->i).toArray();
                 }
                 else { // locking an index in g
-                    lockValues = gFGMapValues.get(lockIndex[1]).stream().mapToInt(i->i).toArray();
+                    ctx.lockValues = ctx.gFGMapValues.get(ctx.lockIndex[1]).stream().mapToInt(i->i).toArray();
+                }
+                ctx.curLockValueIndex = 1;  //skipping value 0 at index 0
+                int[] gMaskIndexes = listIndexes(gmask);
+                if(denominators != null) {
+                    // the saved count runs up to the cursor, which may be a g with a root saved by the uncached loop
+                    long perG = totalSkipped(fmask, gmask, ctx);
+                    long pairStart = ctx.count - (cursor == null ? 0 : perG * ctx.before(cursor, gMaskIndexes));
+                    ctx.count = pairStart + perG * denominators.skipped(ctx.lockIndex, ctx.lockValues);
+                    for(int[][] denominator : denominators.rootFree) {
+                        if(ctx.lockIndex[0] == 1 && !ctx.isLockValue(denominator[0][ctx.lockIndex[1]]))
+                            continue; // g is locked for this pair, only its minimum FG-Map values are needed
+                        if(cursor != null && Arrays.compare(denominator[0], cursor) < 0) { // searched before the save
+                            ctx.count += perG;
+                            continue;
+                        }
+                        if(ctx.checkpoint.due()) {
+                            ctx.checkpoint.mark(pair, denominator[0]);
+                            ctx.checkpoint.save(pairStart + perG * ctx.before(denominator[0], gMaskIndexes), 0);
+                        }
+                        searchNumerators(fmask, denominator[0], denominator[2], ctx, foundFracPPs, outFile);
+                    }
+                    ctx.checkpoint.pairDone(pair);
+                    continue;
                 }
-                curLockValueIndex = 1;  //skipping value 0 at index 0
                 //Create initial pp
                 int[] g = createPolynomial(gmask);
-                int[] gMaskIndexes = listIndexes(gmask);
-                //System.out.println(Arrays.toString(fmask) + " / " + Arrays.toString(gmask) + " " + lockIndex[0] + " " + lockIndex[1]);
+                if(cursor != null) {
+                    g = cursor;
+                    ctx.curLockValueIndex = ctx.lockPosition(g);
+                }
+                //System.out.println(Arrays.toString(fmask) + " / " + Arrays.toString(gmask) + " " + ctx.lockIndex[0] + " " + ctx.lockIndex[1]);
                 do {
+                    if(ctx.checkpoint.due()) {
+                        ctx.checkpoint.mark(pair, g);
+                        ctx.checkpoint.save(ctx.count, 0);
+                    }
                     int[] gValues = evaluatePolynomial(g);
                     if(containsZero(gValues)) { // if g(x) produces a 0, skip it since we can't divide by zero
-                        count += totalSkipped(fmask, gmask);
+                        ctx.count += totalSkipped(fmask, gmask, ctx);
                         continue;
                     }                    
-                    int[] f = createPolynomial(fmask);
-                    int[] fMaskIndexes = listIndexes(fmask);
-                    do {
-                        count++;
-                        if(checkPerm(f, gValues) 
-                                && !foundFracPPs.contains(Arrays.toString(f) + " / " + Arrays.toString(g))
-                                && isOne(polyGCD(f, g))) {
-                            HashMap<String, int[][]> equivalenceClass = getFGMaps(f, g);
-                            if(pDividesG) {
-                                equivalenceClass = getFofXPlusBMaps(equivalenceClass);
-                            }
-                            String toWrite = "";
-                            for(String key : equivalenceClass.keySet())
-                                toWrite += key + "\r\n";
-                            outFile.write(toWrite);
-                            outFile.flush();
-                            foundFracPPs.addAll(equivalenceClass.keySet());
-                            String output = Arrays.toString(f) + " / " + Arrays.toString(g);                     
-                            while(output.length() < maxStringLength())
-                                output += " ";
-                            if(verbose) {
-                                System.out.println(equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
-                                System.out.println(toWrite);
-                            }
-                            else {
-                                System.out.println(output + "   " + equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
-                            }
-                        }
-                        //update();
-                    }
-                    while(incrementPolynomial(f, fMaskIndexes, 0));
-                    
+                    searchNumerators(fmask, g, invertValues(gValues), ctx, foundFracPPs, outFile);
                 }
-                while(incrementPolynomial(g, gMaskIndexes, 1));
+                while(incrementPolynomial(g, gMaskIndexes, 1, ctx));
+                ctx.checkpoint.pairDone(pair);
             }
+            if(!denominatorCache.get(ctx.gdegree).containsKey(Arrays.toString(gmask))) // not shared with another f-degree
+                release(denominators);
         }
         outFile.close();
-        updateThread.shutdownNow();
+        ctx.checkpoint.complete();
         long endTime = System.currentTimeMillis();
         DecimalFormat df = new DecimalFormat("##.##");
         System.out.println("\nSearch Complete");
-        System.out.println(df.format((float)(endTime-startTime)/60000) + " min elapsed");
+        System.out.println(df.format((float)(endTime-ctx.startTime)/60000) + " min elapsed");
         System.out.println(foundFracPPs.size() + " NFPPs Found");
     }
     
+    public static void searchNumerators(boolean[] fmask, int[] g, int[] gInverses, SearchContext ctx,
+                                        HashSet<String> foundFracPPs, BufferedWriter outFile) throws IOException {
+        int[] f = createPolynomial(fmask);
+        int[] fMaskIndexes = listIndexes(fmask);
+        int[] fValues = evaluatePolynomial(f); // kept equal to f(x) as f is incremented
+        int[] fLast = Arrays.copyOf(f, f.length); // coefficients fValues was last updated for
+        do {
+            ctx.count++;
+            if(ctx.checkPerm(fValues, gInverses) 
+                    && !foundFracPPs.contains(Arrays.toString(f) + " / " + Arrays.toString(g))
+                    && isOne(polyGCD(f, g))) {
+                HashMap<String, int[][]> equivalenceClass;
+                String toWrite = "";
+                if(mobius) { // one line per class: its smallest member and the NFPPs a normal search writes for it
+                    equivalenceClass = getMobiusClass(f, g, ctx);
+                    toWrite = Collections.min(equivalenceClass.keySet()) + "   " + equivalenceClass.size() + "\r\n";
+                }
+                else {
+                    equivalenceClass = getFGMaps(f, g);
+                    if(ctx.pDividesG) {
+                        equivalenceClass = getFofXPlusBMaps(equivalenceClass);
+                    }
+                    for(String key : equivalenceClass.keySet())
+                        toWrite += key + "\r\n";
+                }
+                outFile.write(toWrite);
+                outFile.flush();
+                foundFracPPs.addAll(equivalenceClass.keySet());
+                ctx.checkpoint.record(equivalenceClass.values());
+                String output = Arrays.toString(f) + " / " + Arrays.toString(g);                     
+                while(output.length() < maxStringLength(ctx))
+                    output += " ";
+                if(verbose) {
+                    System.out.println(equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
+                    System.out.println(toWrite);
+                }
+                else {
+                    System.out.println(output + "   " + equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
+                }
+            }
+            //update();
+        }
+        while(stepNumerator(f, fMaskIndexes, fLast, fValues, ctx));
+    }
+
+    public static DenominatorSet rootFreeDenominators(boolean[] gmask, SearchContext ctx) { // every g under gmask with no root, evaluated once
+        int[] gMaskIndexes = listIndexes(gmask);
+        long candidates = (long) Math.pow(GF.n-1, gMaskIndexes.length);
+        long bytes = candidates * (ctx.gdegree + 1 + 2*GF.n) * Integer.BYTES;
+        if(denominatorBytes.addAndGet(bytes) > Runtime.getRuntime().maxMemory() / 4) { // leave each pair to evaluate g on the fly
+            denominatorBytes.addAndGet(-bytes);
+            return null;
+        }
+        DenominatorSet denominators = new DenominatorSet(ctx.gdegree);
+        ctx.lockIndex = new int[] {-1, -1}; // enumerate every value, the pair's lock is applied later as a filter
+        int[] g = createPolynomial(gmask);
+        do {
+            int[] gValues = evaluatePolynomial(g);
+            if(containsZero(gValues))
+                denominators.reject(g);
+            else
+                denominators.rootFree.add(new int[][] {Arrays.copyOf(g, g.length), gValues, invertValues(gValues)});
+        }
+        while(incrementPolynomial(g, gMaskIndexes, 1, ctx));
+        denominators.bytes = (long) denominators.rootFree.size() * (ctx.gdegree + 1 + 2*GF.n) * Integer.BYTES;
+        denominatorBytes.addAndGet(denominators.bytes - bytes); // reserved for every candidate, keep only what the root-free g take
+        return denominators;
+    }
+
+    public static void estimate(String outFileName, SearchContext ctx) throws IOException { // Monte Carlo NFPP count from uniform draws over the enumeration space
+        ctx.totalToCheck = totalToCheck(ctx);
+        ctx.samplePairs = new boolean[ctx.gBitMasks.size() * ctx.fBitMasks.size()][][];
+        ctx.samplePairEnds = new long[ctx.samplePairs.length];
+        long end = 0;
+        int pair = 0;
+        for(boolean[] gmask : ctx.gBitMasks) {
+            for(boolean[] fmask : ctx.fBitMasks) {
+                ctx.samplePairs[pair] = new boolean[][] {fmask, gmask};
+                end += pairSize(fmask, gmask, ctx);
+                ctx.samplePairEnds[pair++] = end;
+            }
+        }
+        indexMasks(ctx);
+        ctx.sampleWeights = new ConcurrentHashMap<>();
+        ctx.sampleClasses = new ConcurrentHashMap<>();
+        System.out.println("Sampling " + samples + " of " + ctx.totalToCheck + " candidates");
+        ctx.startTime = System.currentTimeMillis();
+        int threads = Runtime.getRuntime().availableProcessors();
+        SplittableRandom seeds = new SplittableRandom();
+        ArrayList<Sampler> samplers = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for(int t = 0; t < threads; t++) {
+            Sampler sampler = new Sampler(samples / threads + (t < samples % threads ? 1 : 0), seeds.split(), ctx);
+            samplers.add(sampler);
+            pool.execute(sampler);
+        }
+        pool.shutdown();
+        try {
+            while(!pool.awaitTermination(1, TimeUnit.MINUTES))
+                printEstimate(samplers, ctx);
+        } catch (InterruptedException ex) {
+            throw new IOException("Sampling interrupted", ex);
+        }
+        BufferedWriter outFile = new BufferedWriter(new FileWriter(outFileName));
+        outFile.write(GF.irr+"\r\n");
+        long distinct = 0;
+        for(Set<String> members : ctx.sampleClasses.values()) {
+            for(String member : members)
+                outFile.write(member + "\r\n");
+            distinct += members.size();
+        }
+        outFile.close();
+        DecimalFormat df = new DecimalFormat("##.##");
+        System.out.println("\nSampling Complete");
+        System.out.println(df.format((float)(System.currentTimeMillis()-ctx.startTime)/60000) + " min elapsed");
+        printEstimate(samplers, ctx);
+        System.out.println(ctx.sampleClasses.size() + " distinct classes hit, " + distinct + " NFPPs written to \"" + outFileName + "\"");
+    }
+
+    static void printEstimate(ArrayList<Sampler> samplers, SearchContext ctx) { // NFPP estimate with a 95% normal confidence interval
+        long drawn = 0, hits = 0;
+        double sum = 0, sumSquares = 0;
+        for(Sampler sampler : samplers) {
+            drawn += sampler.drawn;
+            hits += sampler.hits;
+            sum += sampler.sum;
+            sumSquares += sampler.sumSquares;
+        }
+        if(drawn == 0)
+            return;
+        DecimalFormat df = new DecimalFormat("0.###E0");
+        if(hits == 0) { // rule of three, on candidates since the class size of a miss is unknown
+            System.out.println(drawn + " drawn, no hits. 95% upper bound " + df.format(3.0 * ctx.totalToCheck / drawn) + " permutation candidates");
+            return;
+        }
+        double mean = sum / drawn;
+        double error = 1.96 * Math.sqrt(Math.max(sumSquares / drawn - mean * mean, 0) / drawn);
+        System.out.println(drawn + " drawn, " + hits + " hits. Estimated " + df.format(mean * ctx.totalToCheck) + " NFPPs, 95% CI ["
+                + df.format(Math.max(mean - error, 0) * ctx.totalToCheck) + ", " + df.format((mean + error) * ctx.totalToCheck) + "]");
+    }
+
+    public static long pairSize(boolean[] fmask, boolean[] gmask, SearchContext ctx) { // candidates the pair enumerates, as in totalToCheck
+        long size = 1;
+        int[] lock = getLockIndex(fmask, gmask, ctx);
+        for(int index : listIndexes(fmask))
+            size *= lock[0] == 0 && lock[1] == index ? ctx.fFGMapValues.get(index).size()-1 : GF.n-1;
+        for(int index : listIndexes(gmask))
+            size *= lock[0] == 1 && lock[1] == index ? ctx.gFGMapValues.get(index).size()-1 : GF.n-1;
+        return size;
+    }
+
+    static int[][] drawCandidate(SplittableRandom random, SearchContext ctx) { // uniform over every (f, g) the search enumerates
+        long r = random.nextLong(ctx.totalToCheck);
+        int pair = Arrays.binarySearch(ctx.samplePairEnds, r + 1);
+        if(pair < 0)
+            pair = -pair - 1; // first pair whose end is past r
+        boolean[] fmask = ctx.samplePairs[pair][0];
+        boolean[] gmask = ctx.samplePairs[pair][1];
+        int[] lock = getLockIndex(fmask, gmask, ctx);
+        return new int[][] {drawPolynomial(fmask, lock[0] == 0 ? lock[1] : -1, ctx.fFGMapValues, random),
+                            drawPolynomial(gmask, lock[0] == 1 ? lock[1] : -1, ctx.gFGMapValues, random)};
+    }
+
+    static int[] drawPolynomial(boolean[] mask, int lockedIndex, HashMap<Integer, ArrayList<Integer>> fgMapValues, SplittableRandom random) {
+        int[] poly = createPolynomial(mask);
+        for(int index : listIndexes(mask)) {
+            if(index == lockedIndex) { // one of the minimum FG-Map values, skipping value 0
+                ArrayList<Integer> values = fgMapValues.get(index);
+                poly[index] = values.get(1 + random.nextInt(values.size()-1));
+            }
+            else
+                poly[index] = 1 + random.nextInt(GF.n-1);
+        }
+        return poly;
+    }
+
+    static double sampleWeight(int[] f, int[] g, SearchContext ctx) { // NFPPs the class of f/g adds to the output, spread over its members the search can draw
+        String key = Arrays.toString(f) + " / " + Arrays.toString(g);
+        Double weight = ctx.sampleWeights.get(key);
+        if(weight != null)
+            return weight;
+        HashMap<String, int[][]> equivalenceClass = getFGMaps(f, g);
+        if(ctx.pDividesG)
+            equivalenceClass = getFofXPlusBMaps(equivalenceClass);
+        int drawable = 0;
+        for(int[][] member : equivalenceClass.values())
+            if(inSearchSpace(member[0], member[1], ctx))
+                drawable++;
+        weight = (double) equivalenceClass.size() / Math.max(drawable, 1);
+        for(String member : equivalenceClass.keySet())
+            ctx.sampleWeights.put(member, weight);
+        ctx.sampleClasses.putIfAbsent(Collections.min(equivalenceClass.keySet()), equivalenceClass.keySet());
+        return weight;
+    }
+
+    static void indexMasks(SearchContext ctx) { // fill fMasksByPattern and gMasksByPattern
+        ctx.fMasksByPattern = new HashMap<>();
+        for(boolean[] fmask : ctx.fBitMasks)
+            ctx.fMasksByPattern.put(Arrays.toString(fmask), fmask);
+        ctx.gMasksByPattern = new HashMap<>();
+        for(boolean[] gmask : ctx.gBitMasks)
+            ctx.gMasksByPattern.put(Arrays.toString(gmask), gmask);
+    }
+
+    static boolean inSearchSpace(int[] f, int[] g, SearchContext ctx) { // does some pair enumerate f/g
+        boolean[] fmask = ctx.fMasksByPattern.get(Arrays.toString(nonZeroPattern(f)));
+        boolean[] gmask = ctx.gMasksByPattern.get(Arrays.toString(nonZeroPattern(g)));
+        if(fmask == null || gmask == null)
+            return false;
+        int[] lock = getLockIndex(fmask, gmask, ctx);
+        if(lock[1] < 0)
+            return true;
+        int value = lock[0] == 0 ? f[lock[1]] : g[lock[1]];
+        return (lock[0] == 0 ? ctx.fFGMapValues : ctx.gFGMapValues).get(lock[1]).indexOf(value) >= 1;
+    }
+
+    public static DenominatorSet cachedDenominators(boolean[] gmask, SearchContext ctx) throws IOException { // rootFreeDenominators, kept for the other f-degrees of this g-degree
+        ConcurrentHashMap<String, FutureTask<DenominatorSet>> cache = denominatorCache.get(ctx.gdegree);
+        String key = Arrays.toString(gmask);
+        FutureTask<DenominatorSet> cached = cache.get(key);
+        if(cached == null) {
+            if(configurationsLeft.get(ctx.gdegree).get() == 1) // no other f-degree will ask for it
+                return rootFreeDenominators(gmask, ctx);
+            FutureTask<DenominatorSet> build = new FutureTask<>(() -> rootFreeDenominators(gmask, ctx));
+            cached = cache.putIfAbsent(key, build);
+            if(cached == null) { // built outside the map, a configuration asking for the same gmask waits on the task
+                build.run();
+                cached = build;
+            }
+        }
+        DenominatorSet denominators = getDenominators(cached);
+        if(denominators == null)
+            cache.remove(key, cached); // over the memory budget, the next f-degree may find room
+        return denominators;
+    }
+
+    static DenominatorSet getDenominators(FutureTask<DenominatorSet> build) throws IOException {
+        try {
+            return build.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException("Finding root-free denominators failed", ex);
+        }
+    }
+
+    static void release(DenominatorSet denominators) { // give its memory back to the budget
+        if(denominators != null)
+            denominatorBytes.addAndGet(-denominators.bytes);
+    }
+
     public static int add(int a, int b) { // a + b in GF
         return GF.addTable[a + b * GF.n];
     }
@@ -210,7 +551,7 @@ public class FracSearch {
     }
 
     public static int[][] fillPowerTable() {
-        int maxDegree = Math.max(fdegree+1, gdegree+1);
+        int maxDegree = Math.max(maxFdegree+1, maxGdegree+1);
         if(maxDegree <= prime+1)
             maxDegree = prime + 1;
         int[][] powers = new int [GF.n][maxDegree];
@@ -222,6 +563,14 @@ public class FracSearch {
         return powers;
     }
      
+    public static int[][] fillPowerVectors() { // transpose of powerTable up to fdegree, so each update walks one row
+        int[][] vectors = new int[maxFdegree+1][GF.n];
+        for(int k = 0; k <= maxFdegree; k++)
+            for(int x = 0; x < GF.n; x++)
+                vectors[k][x] = calcPower(x, k);
+        return vectors;
+    }
+
     public static int calcPower(int a, int b) { //a^b in GF
         if(b==0)
             return 1;
@@ -362,24 +711,36 @@ public class FracSearch {
         return p.length == 1 && p[0] == 1;
     }
     
-    public static int[] binomialToPower(int[] p1, int c, int n) { //p1 = (x+c), return (x+c)^n
-        if(n == 1)
-            return p1;
-        else {
-            int[] timesX = multX(p1);
-            int[] timesB = multA(p1, c);
-            int[] result = addPoly(timesX, timesB);
-            return binomialToPower(result, c, n-1);
+    public static int[][][] fillShiftTable() { // shift[b][k][j] = coefficient of x^j in (x+b)^k
+        int maxDegree = Math.max(maxFdegree, maxGdegree);
+        int[][][] shifts = new int[GF.n][maxDegree+1][];
+        for(int b = 0; b < GF.n; b++) {
+            shifts[b][0] = new int[] {1};
+            for(int k = 1; k <= maxDegree; k++) {
+                int[] prev = shifts[b][k-1];
+                int[] cur = new int[k+1];
+                cur[k] = 1;
+                for(int j = 0; j < k; j++) // (x+b)^k = x*(x+b)^(k-1) + b*(x+b)^(k-1)
+                    cur[j] = add(j == 0 ? 0 : prev[j-1], mult(b, prev[j]));
+                shifts[b][k] = cur;
+            }
         }
-    } 
-    
+        return shifts;
+    }
+
     public static int[] fOfXPlusB(int[] p, int b) { // returns f(x+b)
-        int[] result = {p[p.length-1]}; //start with result as constant of p
-        for(int i=p.length-2; i>=0; i--) {
-            int[] binomial = {1, b}; //(x+b)
-            int[] poly = binomialToPower(binomial, b, p.length-1-i); //(x+b)^p.length-1-i
-            int[] timesCoef = multA(poly, p[i]); // a*(x+b)^p.length-1-i
-            result = addPoly(timesCoef, result);
+        return fOfXPlusB(p, b, new int[p.length]);
+    }
+
+    public static int[] fOfXPlusB(int[] p, int b, int[] result) { // writes f(x+b) into result, no allocation
+        int degree = p.length - 1;
+        Arrays.fill(result, 0, p.length, 0);
+        for(int i=0; i<p.length; i++) {
+            if(p[i] != 0) {
+                int[] binomial = shiftTable[b][degree-i]; // (x+b)^(degree-i), lowest term first
+                for(int j=0; j<binomial.length; j++)
+                    result[degree-j] = add(result[degree-j], mult(p[i], binomial[j]));
+            }
         }
         return result;
     }    
@@ -432,14 +793,27 @@ public class FracSearch {
         return false;
     }
     
-    public static boolean checkPerm(int[] f, int[] gValues) { // check if f(x)/g(x) is a permutation fraction (pass g as values since we already calculated them)
-        HashSet<Integer> values = new HashSet<>();
-        for(int x=0; x<GF.n; x++) {
-            int fValue = evaluateX(x, f);
-            if(!values.add(divide(fValue, gValues[x]))) // add f(x)/g(x) to set, return false if it already exists (ie, not a perm)
-                return false;
+    public static int[] invertValues(int[] values) { // 1/v for each (non-zero) value
+        int[] inverses = new int[values.length];
+        for(int x=0; x<values.length; x++)
+            inverses[x] = divide(1, values[x]);
+        return inverses;
+    }
+    
+    public static boolean stepNumerator(int[] f, int[] fMaskIndexes, int[] fLast, int[] fValues, SearchContext ctx) { // increment f, then add (new-old)*x^k to f(x) for each coefficient that changed
+        if(!incrementPolynomial(f, fMaskIndexes, 0, ctx))
+            return false;
+        int degree = f.length-1;
+        for(int index : fMaskIndexes) {
+            if(f[index] == fLast[index])
+                continue;
+            int delta = subtract(f[index], fLast[index]);
+            int[] xPowers = powerVectors[degree-index];
+            for(int x=0; x<GF.n; x++)
+                fValues[x] = add(fValues[x], mult(delta, xPowers[x]));
+            fLast[index] = f[index];
         }
-        return true;       
+        return true;
     }
     
     public static int[] calcPerm(int[] f, int[] gValues) {
@@ -519,7 +893,7 @@ public class FracSearch {
         return mask;
     }
     
-    public static ArrayList<boolean[]> createFBitMasks() {
+    public static ArrayList<boolean[]> createFBitMasks(int fdegree) {
         ArrayList<boolean[]> masks = new ArrayList<>();
         if(fdegree == 1) { //If fdegree = 1, there are basically no “middle” coefficients to vary.
             boolean[] mask = {false, false}; 
@@ -536,7 +910,7 @@ public class FracSearch {
         return masks;
     }
     
-    public static ArrayList<boolean[]> createGBitMasks() {
+    public static ArrayList<boolean[]> createGBitMasks(int gdegree) {
         ArrayList<boolean[]> masks = new ArrayList<>();
         if(gdegree == 1) {
             boolean[] mask = {false, true};
@@ -545,7 +919,7 @@ public class FracSearch {
         }
         int gapDegree = -1; // first index in gap for b-normalization
         if(gdegree % prime == 0 && prime == 2) {
-            gapDegree = getGapDegree();
+            gapDegree = getGapDegree(gdegree);
         }
         int numMasks = (int) Math.pow(2,gdegree-1); // eg. deg=5: [F F X X X F] 
         for(int x=0; x<numMasks; x++) {
@@ -589,7 +963,7 @@ public class FracSearch {
         return masks;
     }
     
-    public static int getGapDegree() { // find start degree of gap defined by b-normalization
+    public static int getGapDegree(int gdegree) { // find start degree of gap defined by b-normalization
         if(((gdegree+2) & (gdegree+1)) == 0) // if fedgree is 2 less than a power of 2
             return -1; //no Gap
         int powerTwo = 1;
@@ -600,21 +974,21 @@ public class FracSearch {
         return gapDegree;
     }
 
-    public static int[] getLockIndex(boolean[] fmask, boolean[] gmask) {
+    public static int[] getLockIndex(boolean[] fmask, boolean[] gmask, SearchContext ctx) {
         int smallestIndex = -1;
         int smallestSize = Integer.MAX_VALUE;
         int polynomial = -1; // 0 = f, 1 = g
-        for(int x=0; x<=fdegree; x++) {
-            if(fFGMapValues.get(x).size() < smallestSize && fmask[x]) {
+        for(int x=0; x<=ctx.fdegree; x++) {
+            if(ctx.fFGMapValues.get(x).size() < smallestSize && fmask[x]) {
                 smallestIndex = x;
-                smallestSize = fFGMapValues.get(x).size();
+                smallestSize = ctx.fFGMapValues.get(x).size();
                 polynomial = 0;
             }
         }
-        for(int x=0; x<=gdegree; x++) {
-            if(gFGMapValues.get(x).size() < smallestSize && gmask[x]) {
+        for(int x=0; x<=ctx.gdegree; x++) {
+            if(ctx.gFGMapValues.get(x).size() < smallestSize && gmask[x]) {
                 smallestIndex = x;
-                smallestSize = gFGMapValues.get(x).size();
+                smallestSize = ctx.gFGMapValues.get(x).size();
                 polynomial = 1;
             }
         }   
@@ -638,17 +1012,17 @@ public class FracSearch {
         return indexes;
     }
     
-    public static long totalToCheck() {
+    public static long totalToCheck(SearchContext ctx) {
         long count = 0;
-        for(boolean[] gMask : gBitMasks) {
-            for(boolean[] fMask : fBitMasks) {
+        for(boolean[] gMask : ctx.gBitMasks) {
+            for(boolean[] fMask : ctx.fBitMasks) {
                 long curCount = 1;
                 int[] fIndexes = listIndexes(fMask);
                 int[] gIndexes = listIndexes(gMask);
-                int[] lockedIndex = getLockIndex(fMask, gMask);
+                int[] lockedIndex = getLockIndex(fMask, gMask, ctx);
                 for(int index : fIndexes) {
                     if(index == lockedIndex[1] && lockedIndex[0] == 0) {
-                        int numValues = fFGMapValues.get(index).size()-1;
+                        int numValues = ctx.fFGMapValues.get(index).size()-1;
                         curCount = curCount * numValues;
                     }
                     else {
@@ -657,7 +1031,7 @@ public class FracSearch {
                 }
                 for(int index : gIndexes) {
                     if(index == lockedIndex[1] && lockedIndex[0] == 1) {
-                        int numValues = gFGMapValues.get(index).size()-1;
+                        int numValues = ctx.gFGMapValues.get(index).size()-1;
                         curCount = curCount * numValues;
                     }
                     else {
@@ -670,14 +1044,14 @@ public class FracSearch {
         return count;
     }
     
-    public static long totalSkipped(boolean[] fMask, boolean[] gMask) { // fractions we don't have to check because g(x) contains a 0
+    public static long totalSkipped(boolean[] fMask, boolean[] gMask, SearchContext ctx) { // fractions we don't have to check because g(x) contains a 0
         long count = 0;
         long curCount = 1;
         int[] fIndexes = listIndexes(fMask);
-        int[] lockedIndex = getLockIndex(fMask, gMask);
+        int[] lockedIndex = getLockIndex(fMask, gMask, ctx);
         for(int index : fIndexes) { // for each index in f (since we are skipping all f)
             if(index == lockedIndex[1] && lockedIndex[0] == 0) { // if f is locked, count the number of values for that index
-                int numValues = fFGMapValues.get(index).size()-1;
+                int numValues = ctx.fFGMapValues.get(index).size()-1;
                 curCount = curCount * numValues;
             }
             else { // else we are skipping GF.n-1 values for that index
@@ -700,12 +1074,12 @@ public class FracSearch {
         return poly;
     }
     
-    static boolean incrementPolynomial(int[] poly, int[] maskIndexes, int fg) { // fg: 0=f, 1=g
+    static boolean incrementPolynomial(int[] poly, int[] maskIndexes, int fg, SearchContext ctx) { // fg: 0=f, 1=g
         if(maskIndexes.length == 0) // no indexes to increment
             return false;
         int curMaskIndex = 0;
         int curIndex = maskIndexes[0];
-        while(incrementIndex(poly, curIndex, fg) && curMaskIndex < maskIndexes.length) {
+        while(incrementIndex(poly, curIndex, fg, ctx) && curMaskIndex < maskIndexes.length) {
             curMaskIndex++;
             if(curMaskIndex == maskIndexes.length)
                 return false;
@@ -714,8 +1088,8 @@ public class FracSearch {
         return true;
     }
 
-    static boolean incrementIndex(int[] poly, int index, int fg) { //return true if carries (does not include 0 values)
-        if(index != lockIndex[1] || fg != lockIndex[0]) {
+    static boolean incrementIndex(int[] poly, int index, int fg, SearchContext ctx) { //return true if carries (does not include 0 values)
+        if(index != ctx.lockIndex[1] || fg != ctx.lockIndex[0]) {
             poly[index]++;
             if(poly[index] == GF.n) {
                 poly[index] = 1;
@@ -725,14 +1099,14 @@ public class FracSearch {
                 return false;
         }
         else {
-            curLockValueIndex++;
-            if(curLockValueIndex == lockValues.length) {
-                curLockValueIndex = 1;
-                poly[index] = lockValues[1];
+            ctx.curLockValueIndex++;
+            if(ctx.curLockValueIndex == ctx.lockValues.length) {
+                ctx.curLockValueIndex = 1;
+                poly[index] = ctx.lockValues[1];
                 return true;
             }
             else {
-                poly[index] = lockValues[curLockValueIndex];
+                poly[index] = ctx.lockValues[ctx.curLockValueIndex];
                 return false;
             }
         }
@@ -800,45 +1174,141 @@ public class FracSearch {
         return fofxpbMaps; 
     }
 
+    // Class of f/g under (ax+b)/(cx+d) on either side (and Frobenius), kept to the NFPPs a normal search writes: members a mask
+    // enumerates and, when p divides the g-degree, their x+b shifts. The walk stays in this degree shape: a Mobius map
+    // moving a to infinity only keeps it when f/g - f(a)/g(a) has a zero of order f-degree - g-degree at a (invertAt).
+    static HashMap<String, int[][]> getMobiusClass(int[] f, int[] g, SearchContext ctx) {
+        HashMap<String, int[][]> orbit = new HashMap<>(); // every normal form of this shape, enumerated or not
+        ArrayDeque<int[][]> queue = new ArrayDeque<>();
+        orbit.put(Arrays.toString(f) + " / " + Arrays.toString(g), new int[][] {f, g});
+        queue.add(new int[][] {f, g});
+        while(!queue.isEmpty()) {
+            int[] curF = queue.peek()[0];
+            int[] curG = queue.poll()[1];
+            ArrayList<int[][]> images = new ArrayList<>();
+            images.add(new int[][] {fMap(curF), fMap(curG)}); // x -> ax
+            images.add(new int[][] {gMap(curF), gMap(curG)}); // Frobenius
+            for(int b=1; b<GF.n; b++) // x -> x+b
+                images.add(normalizeFraction(fOfXPlusB(curF, b), fOfXPlusB(curG, b)));
+            for(int a=0; a<GF.n; a++) { // x -> a + 1/x, then move f(a)/g(a) back to infinity
+                int[][] inverted = invertAt(curF, curG, a, ctx);
+                if(inverted != null)
+                    images.add(inverted);
+            }
+            for(int[][] image : images) {
+                if(orbit.putIfAbsent(Arrays.toString(image[0]) + " / " + Arrays.toString(image[1]), image) == null)
+                    queue.add(image);
+            }
+        }
+        HashMap<String, int[][]> enumerated = new HashMap<>();
+        for(String key : orbit.keySet()) {
+            int[][] member = orbit.get(key);
+            if(ctx.fMasksByPattern.containsKey(Arrays.toString(nonZeroPattern(member[0])))
+                    && ctx.gMasksByPattern.containsKey(Arrays.toString(nonZeroPattern(member[1]))))
+                enumerated.put(key, member);
+        }
+        return ctx.pDividesG ? getFofXPlusBMaps(enumerated) : enumerated;
+    }
+
+    static int[][] invertAt(int[] f, int[] g, int a, SearchContext ctx) { // g(a)G/(g(a)F - f(a)G) with F, G = x^m f(a+1/x), x^m g(a+1/x), or null if the shape changes
+        int fa = evaluateX(a, f);
+        int ga = evaluateX(a, g);
+        int[] h = fOfXPlusB(addPoly(multA(f, ga), multA(g, subtract(0, fa))), a); // g(a)f(x+a) - f(a)g(x+a), divisible by x^e
+        int e = 0;
+        while(e < h.length && h[h.length-1-e] == 0)
+            e++;
+        if(e != ctx.fdegree - ctx.gdegree) // ramification at a decides the new denominator degree
+            return null;
+        int[] numerator = new int[ctx.fdegree+1];
+        int[] gShifted = fOfXPlusB(g, a);
+        for(int i=0; i<gShifted.length; i++)
+            numerator[i] = mult(ga, gShifted[gShifted.length-1-i]); // reversed and padded to degree m
+        int[] denominator = new int[ctx.gdegree+1];
+        for(int i=0; i<denominator.length; i++)
+            denominator[i] = h[h.length-1-e-i]; // reversed, x^e dropped
+        return normalizeFraction(numerator, denominator);
+    }
+
+    static int[][] normalizeFraction(int[] f, int[] g) { // monic f and g (scale), then f(0) = 0 (H-map f + cg)
+        int[] monicF = multA(f, divide(1, f[0]));
+        int[] monicG = multA(g, divide(1, g[0]));
+        int c = divide(subtract(0, monicF[monicF.length-1]), monicG[monicG.length-1]);
+        return new int[][] {addPoly(monicF, multA(monicG, c)), monicG};
+    }
+
+    static boolean[] nonZeroPattern(int[] p) { // the mask that enumerates p
+        boolean[] mask = new boolean[p.length];
+        for(int i=1; i<p.length; i++)
+            mask[i] = p[i] != 0;
+        return mask;
+    }
+
     public static void update() {
-        float numMinutes = (float) (System.currentTimeMillis() - startTime) / 60000;
+        for(SearchContext ctx : running)
+            update(ctx);
+    }
+
+    public static void update(SearchContext ctx) {
+        float numMinutes = (float) (System.currentTimeMillis() - ctx.startTime) / 60000;
         DecimalFormat df = new DecimalFormat("##.##");
-        float percent = (float)count / (float)totalToCheck;
-        float totalMinutes = (float)numMinutes / (percent);
-        System.out.println(df.format(percent*100)+"% complete. "+ df.format(numMinutes) + " min elapsed. Estimated " 
+        float percent = (float)ctx.count / (float)ctx.totalToCheck;
+        float totalMinutes = (float)numMinutes / (percent-ctx.startPercent) * (1-ctx.startPercent); //adjusted by startPercent if we resume
+        System.out.println((sweep ? "f-degree " + ctx.fdegree + ", g-degree " + ctx.gdegree + ": " : "")
+                + df.format(percent*100)+"% complete. "+ df.format(numMinutes) + " min elapsed. Estimated " 
                 + df.format(totalMinutes-numMinutes)+" min remaining, "+df.format(totalMinutes)+" min total.");
     }
     
-    public static int maxStringLength() {
+    public static int maxStringLength(SearchContext ctx) {
         int length = 11; // "[1," + "] / [1," + "]"
         int digits = 3;
         if(GF.n < 100)
             digits = 2;
         if(GF.n < 10)
             digits = 1;
-        length += (fdegree + gdegree) * (digits+2);
+        length += (ctx.fdegree + ctx.gdegree) * (digits+2);
         return length;
     }
     
+    public static int[] parseDegrees(String arg) { // "5", "4-7" or "3,5,8-9"
+        ArrayList<Integer> degrees = new ArrayList<>();
+        for(String part : arg.split(",")) {
+            String[] range = part.split("-");
+            int low = Integer.parseInt(range[0]);
+            int high = Integer.parseInt(range[range.length-1]);
+            for(int d = low; d <= high; d++)
+                degrees.add(d);
+        }
+        return degrees.stream().mapToInt(i->i).toArray();
+    }
+
     public static void print(int[] array){
         System.out.println(Arrays.toString(array));
     }
     
     public static void parseArgs(String[] args) {
+        resume = Arrays.asList(args).contains("--resume");
+        args = Arrays.stream(args).filter(arg -> !arg.equals("--resume")).toArray(String[]::new);
         if(args.length < 4) {
             System.out.println("Usage: java FracSearch <prime> <power> <f-degree> <g-degree>");
             System.out.println("f-degree must be strictly > g-degree");
+            System.out.println("either degree may be a list or range, e.g. 4-7 or 3,5, to sweep every f-degree > g-degree in one run");
             System.out.println("options:");
             System.out.println("     -v     verbose output of nFPPs");            
+            System.out.println("     -t n   number of configurations of a sweep searched at once (default: all cores)");
+            System.out.println("     -mobius    one line per Mobius equivalence class: its smallest member and the NFPPs it stands for");
+            System.out.println("     -sample n  estimate the NFPP count from n random candidates, on all cores");
+            System.out.println("     --resume   continue from the save file of an interrupted search");
             System.exit(0);
         }
         //initialize variables
         prime = Integer.parseInt(args[0]);
         power = Integer.parseInt(args[1]);
-        fdegree = Integer.parseInt(args[2]);
-        gdegree = Integer.parseInt(args[3]);
+        fdegrees = parseDegrees(args[2]);
+        gdegrees = parseDegrees(args[3]);
+        sweep = fdegrees.length > 1 || gdegrees.length > 1;
         GF.initGF(prime, power);
         verbose = false;
+        threads = Runtime.getRuntime().availableProcessors();
         /*if(fdegree <= gdegree) {
             System.out.println("f-degree must be strictly > g-degree");
             System.exit(0);
@@ -850,6 +1320,15 @@ public class FracSearch {
                     case "-v":
                         verbose = true;
                         break;
+                    case "-mobius":
+                        mobius = true;
+                        break;
+                    case "-sample":
+                        samples = Long.parseLong(args[++x]);
+                        break;
+                    case "-t":
+                        threads = Math.max(1, Integer.parseInt(args[++x]));
+                        break;
                     default:
                         System.out.println("Unrecognized option "+args[x]);
                         System.exit(0);
@@ -859,6 +1338,387 @@ public class FracSearch {
     }
 }
 
+class Sampler implements Runnable // draws candidates on one thread and sums their NFPP weights
+{
+    final long samples;
+    final SplittableRandom random;
+    final SearchContext ctx; // configuration being sampled
+    final int[] seen = new int[GF.n]; // seen[v] == stamp when f(x)/g(x) = v was hit in the current check
+    int stamp;
+    volatile long drawn;
+    volatile long hits;
+    volatile double sum; // of sampleWeight over the draws, 0 for a miss
+    volatile double sumSquares;
+
+    Sampler(long samples, SplittableRandom random, SearchContext ctx)
+    {
+        this.samples = samples;
+        this.random = random;
+        this.ctx = ctx;
+    }
+
+    public void run()
+    {
+        for(long i = 0; i < samples; i++) {
+            int[][] candidate = FracSearch.drawCandidate(random, ctx);
+            double weight = isHit(candidate[0], candidate[1]) ? FracSearch.sampleWeight(candidate[0], candidate[1], ctx) : 0;
+            if(weight > 0)
+                hits++;
+            sum += weight;
+            sumSquares += weight * weight;
+            drawn++;
+        }
+    }
+
+    boolean isHit(int[] f, int[] g) // root-free g, f/g a permutation and gcd(f, g) = 1, as in the search
+    {
+        int[] gValues = FracSearch.evaluatePolynomial(g);
+        if(FracSearch.containsZero(gValues))
+            return false;
+        int[] fValues = FracSearch.evaluatePolynomial(f);
+        if(++stamp == 0) { // stamp wrapped, old marks could collide
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        for(int x = 0; x < GF.n; x++) {
+            int value = FracSearch.divide(fValues[x], gValues[x]);
+            if(seen[value] == stamp)
+                return false;
+            seen[value] = stamp;
+        }
+        return FracSearch.isOne(FracSearch.polyGCD(f, g));
+    }
+}
+
+class SearchContext // per (f-degree, g-degree) configuration state, so configurations can run on separate threads
+{
+    final int fdegree;
+    final int gdegree;
+    final HashMap<Integer, ArrayList<Integer>> fFGMapValues; // maps index of f to array of minimum values needed by FG-Map
+    final HashMap<Integer, ArrayList<Integer>> gFGMapValues; // maps index of g to array of minimum values needed by FG-Map
+    final ArrayList<boolean[]> fBitMasks; // bit masks for f
+    final ArrayList<boolean[]> gBitMasks; // bit masks for g
+    final boolean pDividesG;
+    int[] lockIndex; // [0]: 0=f, 1=g; [1]: index of coefficient being fixed by FG-Map, for the pair being searched
+    int[] lockValues; // minimum values needed to cycle through lockIndex
+    int curLockValueIndex; // current value of lockIndex
+    long count;
+    final int[] seen = new int[GF.n]; // seen[v] == stamp when f(x)/g(x) = v was hit in the current checkPerm
+    int stamp;
+    Checkpoint checkpoint;
+    long totalToCheck;
+    float startPercent; // share of totalToCheck already searched when resuming
+    long startTime;
+    // Sampling
+    boolean[][][] samplePairs; // {fmask, gmask} of every pair in the enumeration space
+    long[] samplePairEnds; // candidates in pairs 0..i, so a uniform draw below totalToCheck picks a pair by size
+    HashMap<String, boolean[]> fMasksByPattern; // mask enumerating each coefficient pattern, to tell if a class member is in the space
+    HashMap<String, boolean[]> gMasksByPattern;
+    ConcurrentHashMap<String, Double> sampleWeights; // class size / class members in the space, by member
+    ConcurrentHashMap<String, Set<String>> sampleClasses; // distinct classes hit, by smallest member
+
+    SearchContext(int fdegree, int gdegree)
+    {
+        this.fdegree = fdegree;
+        this.gdegree = gdegree;
+        fFGMapValues = FracSearch.getMinFGMapValues(fdegree);
+        gFGMapValues = FracSearch.getMinFGMapValues(gdegree);
+        fBitMasks = FracSearch.createFBitMasks(fdegree);
+        gBitMasks = FracSearch.createGBitMasks(gdegree);
+        pDividesG = gdegree % FracSearch.prime == 0;
+    }
+
+    boolean checkPerm(int[] fValues, int[] gInverses) // check if f(x)/g(x) is a permutation fraction (pass f(x) and 1/g(x) since we already calculated them)
+    {
+        if(++stamp == 0) { // stamp wrapped, old marks could collide
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        for(int x = 0; x < GF.n; x++) {
+            int value = FracSearch.mult(fValues[x], gInverses[x]);
+            if(seen[value] == stamp) // f(x)/g(x) already hit, not a perm
+                return false;
+            seen[value] = stamp;
+        }
+        return true;
+    }
+
+    long before(int[] g, int[] gMaskIndexes) // g the pair enumerates ahead of g, its rank in odometer order
+    {
+        long rank = 0;
+        for(int m = gMaskIndexes.length - 1; m >= 0; m--) { // the highest-degree coefficient is the most significant digit
+            int index = gMaskIndexes[m];
+            if(lockIndex[0] == 1 && lockIndex[1] == index)
+                rank = rank * (lockValues.length - 1) + lockPosition(g) - 1;
+            else
+                rank = rank * (GF.n - 1) + g[index] - 1;
+        }
+        return rank;
+    }
+
+    int lockPosition(int[] g) // curLockValueIndex once the g odometer has reached g, 1 while the lock is in f
+    {
+        if(lockIndex[0] != 1)
+            return 1;
+        for(int i = 1; i < lockValues.length; i++)
+            if(lockValues[i] == g[lockIndex[1]])
+                return i;
+        return 1;
+    }
+
+    boolean isLockValue(int value)
+    {
+        for(int i = 1; i < lockValues.length; i++) // value 0 is never used
+            if(lockValues[i] == value)
+                return true;
+        return false;
+    }
+}
+
+class DenominatorSet // root-free g for one gmask, shared by every fmask paired with it
+{
+    final ArrayList<int[][]> rootFree = new ArrayList<>(); // {g, g(x) values, 1/g(x) values}
+    final long[][] rejected; // rejected[i][v] = number of g with a root whose coefficient i is v
+    long rejectedTotal;
+    long bytes; // held in FracSearch.denominatorBytes until the set is released
+
+    DenominatorSet(int gdegree)
+    {
+        rejected = new long[gdegree+1][GF.n];
+    }
+
+    void reject(int[] g)
+    {
+        for(int i = 0; i < g.length; i++)
+            rejected[i][g[i]]++;
+        rejectedTotal++;
+    }
+
+    long skipped(int[] lockIndex, int[] lockValues) // g with a root that the pair would have enumerated
+    {
+        if(lockIndex[0] != 1)
+            return rejectedTotal;
+        long skipped = 0;
+        for(int i = 1; i < lockValues.length; i++)
+            skipped += rejected[lockIndex[1]][lockValues[i]];
+        return skipped;
+    }
+}
+
+class Checkpoint // periodic save of the search cursors, so an interrupted run can continue with --resume
+{
+    static final long INTERVAL = 60000; // ms between saves
+    final String outFileName;
+    final String saveFileName; // count, finished pairs, cursors and file lengths at the last save
+    final String foundFileName; // coefficients of every recorded fraction, reloaded on resume instead of parsing the text output
+    FileOutputStream outStream;
+    FileOutputStream foundStream;
+    DataOutputStream found;
+    long foundLength; // bytes written to foundFileName
+    long lastSave;
+    long count; // fractions counted at the last save, up to each cursor
+    int state; // search state the caller passed to save, 0 if it keeps none
+    final BitSet done = new BitSet(); // finished pairs, by position in the pair list
+    final TreeMap<Integer, int[]> cursors = new TreeMap<>(); // next g to search in each pair that was part way through
+
+    Checkpoint(String outFileName)
+    {
+        this.outFileName = outFileName;
+        String name = outFileName.substring(0, outFileName.lastIndexOf('.'));
+        saveFileName = name + "_save.txt";
+        foundFileName = name + "_found.bin";
+    }
+
+    BufferedWriter open(boolean resume, Set<String> foundFracPPs) throws IOException // output file positioned at the last save, foundFracPPs reloaded
+    {
+        lastSave = System.currentTimeMillis();
+        if(!resume || !new File(saveFileName).exists()) {
+            if(resume)
+                System.out.println("No save file \""+saveFileName+"\" found, starting a new search");
+            outStream = new FileOutputStream(outFileName);
+            foundStream = new FileOutputStream(foundFileName);
+            found = new DataOutputStream(new BufferedOutputStream(foundStream));
+            BufferedWriter outFile = new BufferedWriter(new OutputStreamWriter(outStream));
+            outFile.write(GF.irr+"\r\n");
+            outFile.flush();
+            return outFile;
+        }
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        if(firstLine.equals("complete")) {
+            System.out.println("A completed search has been detected. See \""+outFileName+"\" for results.");
+            System.out.println("Delete \""+saveFileName+"\" if you wish to start a new search");
+            System.exit(0);
+        }
+        count = Long.parseLong(firstLine);
+        state = Integer.parseInt(saveReader.readLine());
+        done.or(BitSet.valueOf(parseWords(saveReader.readLine())));
+        int cursorCount = Integer.parseInt(saveReader.readLine());
+        for(int i = 0; i < cursorCount; i++) { // "pair [g]"
+            String line = saveReader.readLine();
+            int split = line.indexOf(' ');
+            cursors.put(Integer.parseInt(line.substring(0, split)), parsePolynomial(line.substring(split + 1)));
+        }
+        long outLength = Long.parseLong(saveReader.readLine());
+        foundLength = Long.parseLong(saveReader.readLine());
+        saveReader.close();
+        truncate(outFileName, outLength); // anything written after the save is searched again
+        truncate(foundFileName, foundLength);
+        loadFound(foundFracPPs);
+        System.out.println("Resuming Search From:");
+        System.out.println("count = "+count);
+        System.out.println(done.cardinality()+" pairs finished");
+        for(int pair : cursors.keySet())
+            System.out.println("pair "+pair+" at g = "+Arrays.toString(cursors.get(pair)));
+        System.out.println(foundFracPPs.size()+" NFPPs loaded\n");
+        outStream = new FileOutputStream(outFileName, true);
+        foundStream = new FileOutputStream(foundFileName, true);
+        found = new DataOutputStream(new BufferedOutputStream(foundStream));
+        return new BufferedWriter(new OutputStreamWriter(outStream));
+    }
+
+    boolean isComplete() throws IOException // the save file marks a finished search
+    {
+        if(!new File(saveFileName).exists())
+            return false;
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        saveReader.close();
+        return "complete".equals(firstLine);
+    }
+
+    boolean isDone(int pair) // pair was finished before the save
+    {
+        return done.get(pair);
+    }
+
+    boolean allDone(int fromPair, int toPair) // every pair in [fromPair, toPair) was finished before the save
+    {
+        return done.nextClearBit(fromPair) >= toPair;
+    }
+
+    int[] resumesAt(int pair) // g to continue the pair from, null to start it from the beginning
+    {
+        return cursors.get(pair);
+    }
+
+    boolean due()
+    {
+        return System.currentTimeMillis() - lastSave >= INTERVAL;
+    }
+
+    void mark(int pair, int[] g) // pair will search g next; kept for the following saves
+    {
+        cursors.put(pair, Arrays.copyOf(g, g.length));
+    }
+
+    void pairDone(int pair)
+    {
+        done.set(pair);
+        cursors.remove(pair);
+    }
+
+    void record(Collection<int[][]> fractions) throws IOException // append {f, g} of each fraction: lengths, then one byte (two if n > 256) per coefficient
+    {
+        for(int[][] fraction : fractions) {
+            for(int[] poly : fraction) {
+                found.writeByte(poly.length);
+                for(int c : poly)
+                    writeCoefficient(c);
+                foundLength += 1 + poly.length * (GF.n > 256 ? 2 : 1);
+            }
+        }
+    }
+
+    void save(long count, int state) throws IOException // count covers the finished pairs and each marked pair up to its cursor
+    {
+        found.flush();
+        foundStream.getFD().sync();
+        outStream.getFD().sync(); // the caller flushes the output file after every write
+        StringBuilder contents = new StringBuilder();
+        contents.append(count).append("\r\n").append(state).append("\r\n");
+        contents.append(Arrays.toString(done.toLongArray())).append("\r\n").append(cursors.size()).append("\r\n");
+        for(int pair : cursors.keySet())
+            contents.append(pair).append(' ').append(Arrays.toString(cursors.get(pair))).append("\r\n");
+        contents.append(new File(outFileName).length()).append("\r\n").append(foundLength).append("\r\n");
+        writeSaveFile(contents.toString());
+        lastSave = System.currentTimeMillis();
+    }
+
+    void complete() throws IOException
+    {
+        found.close();
+        writeSaveFile("complete\r\n");
+    }
+
+    void writeSaveFile(String contents) throws IOException // write a temp file, then rename it over the save so a crash never leaves half a save
+    {
+        File tmp = new File(saveFileName+".tmp");
+        FileOutputStream tmpStream = new FileOutputStream(tmp);
+        tmpStream.write(contents.getBytes());
+        tmpStream.getFD().sync();
+        tmpStream.close();
+        Files.move(tmp.toPath(), Paths.get(saveFileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void loadFound(Set<String> foundFracPPs) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(foundFileName)));
+        long read = 0;
+        while(read < foundLength) {
+            int[] f = readPolynomial(in);
+            int[] g = readPolynomial(in);
+            read += 2 + (f.length + g.length) * (GF.n > 256 ? 2 : 1);
+            foundFracPPs.add(Arrays.toString(f) + " / " + Arrays.toString(g));
+        }
+        in.close();
+    }
+
+    void writeCoefficient(int c) throws IOException
+    {
+        if(GF.n > 256)
+            found.writeShort(c);
+        else
+            found.writeByte(c);
+    }
+
+    static int[] readPolynomial(DataInputStream in) throws IOException
+    {
+        int[] poly = new int[in.readUnsignedByte()];
+        for(int i = 0; i < poly.length; i++)
+            poly[i] = GF.n > 256 ? in.readUnsignedShort() : in.readUnsignedByte();
+        return poly;
+    }
+
+    static int[] parsePolynomial(String input)
+    {
+        String[] split = input.replace("[", "").replace("]", "").split(", ");
+        int[] poly = new int[split.length];
+        for(int x = 0; x < split.length; x++)
+            poly[x] = Integer.parseInt(split[x]);
+        return poly;
+    }
+
+    static long[] parseWords(String input)
+    {
+        input = input.replace("[", "").replace("]", "");
+        if(input.isEmpty())
+            return new long[0];
+        String[] split = input.split(", ");
+        long[] words = new long[split.length];
+        for(int x = 0; x < split.length; x++)
+            words[x] = Long.parseLong(split[x]);
+        return words;
+    }
+
+    static void truncate(String fileName, long length) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        file.setLength(length);
+        file.close();
+    }
+}
+
 class GF 
 {    
     static Random rand = new Random(1);
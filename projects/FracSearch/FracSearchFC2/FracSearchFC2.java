@@ -1,12 +1,34 @@
 package FracSearchFC2;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class FracSearchFC2 {
     // Parameter Variables
@@ -21,25 +43,37 @@ public class FracSearchFC2 {
     static List<boolean[]> masksToRemove = new ArrayList<>();
 
     static boolean verbose;
+    static boolean resume; // continue from the save file of an interrupted run
+    static int threads; // worker threads used for (gmask, fmask) pairs
+    static boolean complete; // only keep f/g with f(x)/g(x) + x also a permutation
+    static int[] completeMultipliers; // f/g + x is a permutation for some member of f/g's FG class exactly when f/g + ax is one for some a here
     // static boolean outputPerms;
     // Arithmetic Tables
     static int[][] subtractionTable;
     static int[][] divisionTable;
     static int[][] powerTable;
+    static int[][][] shiftTable; // shiftTable[b][k] = coefficients of (x+b)^k
+    static int[][] powerVectors; // powerVectors[k][x] = x^k, one row per degree for updating f(x) in place
     // Program Variables
     static HashMap<Integer, ArrayList<Integer>> fFGMapValues; // maps index of f to array of minimum values needed by FG-Map
     static HashMap<Integer, ArrayList<Integer>> gFGMapValues; // maps index of g to array of minimum values needed by FG-Map
-    static int[] lockIndex; // [0]: 0=f, 1=g; [1]: index of coefficient being fixed by FG-Map
-    static int[] lockValues; // minimum values needed to cycle through lockIndex
-    static int curLockValueIndex; // current value of lockIndex
     static ArrayList<boolean[]> fBitMasks; // bit masks for f
     static ArrayList<boolean[]> gBitMasks; // bit masks for g
     static ArrayList<boolean[]> fBitMasksDMP; // additional f masks for when degree % prime = 0
     static ArrayList<boolean[]> gBitMasksDMP; // additional g masks for when degree % prime = 0
     static boolean pDividesG;
     static boolean pDividesF;
-    static long count;
+    static LongAdder count; // fractions checked so far, summed across workers
+    static ConcurrentHashMap<boolean[], FutureTask<DenominatorSet>> denominatorCache = new ConcurrentHashMap<>(); // root-free g by gmask, a placeholder while it is built
+    static final AtomicLong denominatorBytes = new AtomicLong(); // held by the cached DenominatorSets, kept under a quarter of the heap
+    static ConcurrentHashMap<boolean[], AtomicInteger> pairsRemaining = new ConcurrentHashMap<>(); // unfinished pairs by gmask
+    static HashMap<String, ArrayList<int[]>> rootFreeByMask; // generated root-free g by gmask pattern, null if not generated
+    static final long MAX_CATALOG_SPACE = 1L << 28; // largest n^gdegree the irreducible sieve will cover
+    static Checkpoint checkpoint;
+    static long settledCount; // fractions counted outside the running pairs, guarded by the output file lock
+    static HashMap<Integer, SearchContext> running = new HashMap<>(); // pairs being searched, guarded by the output file lock
     static long totalToCheck;
+    static float startPercent; // share of totalToCheck already searched when resuming
     static long startTime;
 
     public static void main(String[] args) throws IOException {
@@ -49,6 +83,8 @@ public class FracSearchFC2 {
         subtractionTable = fillSubtractionTable();
         divisionTable = fillDivisionTable();
         powerTable = fillPowerTable();
+        shiftTable = fillShiftTable();
+        powerVectors = fillPowerVectors();
         fFGMapValues = getMinFGMapValues(fdegree);
         gFGMapValues = getMinFGMapValues(gdegree);
         fBitMasks = createFBitMasks();
@@ -64,7 +100,9 @@ public class FracSearchFC2 {
             gBitMasksDMP = createGBitMasksDMP();
         }
 
-        String outFileName = "frac_" + prime + "_" + power + "_" + fdegree + "_" + gdegree + ".txt";
+        String outFileName = "frac_" + prime + "_" + power + "_" + fdegree + "_" + gdegree + (complete ? "_complete" : "") + ".txt";
+        if(complete)
+            completeMultipliers = completeMultipliers();
         fixNumeratorDegreesToZero();
 
         StringBuffer totalFixedDegrees = new StringBuffer();
@@ -75,13 +113,17 @@ public class FracSearchFC2 {
             totalFixedDegrees.append(fdegree-fixedDegrees.get(i) + "->" + fixedIndexes.get(i) + ",");
         }
         System.out.println("Here is totalFixed Degrees " + totalFixedDegrees);
-        BufferedWriter outFile = new BufferedWriter(new FileWriter(outFileName));
-        outFile.write(GF.irr+"\r\n");
-        outFile.flush();
+        Set<String> foundFracPPs = ConcurrentHashMap.newKeySet();
+        checkpoint = new Checkpoint(outFileName);
+        BufferedWriter outFile = checkpoint.open(resume, foundFracPPs);
 
-        HashSet<String> foundFracPPs = new HashSet<>();
-        count = 0;
+        rootFreeByMask = generateRootFreeDenominators();
+
+        count = new LongAdder();
+        count.add(checkpoint.count);
+        settledCount = checkpoint.count;
         totalToCheck = totalToCheck();
+        startPercent = (float)count.sum() / (float)totalToCheck;
         startTime = System.currentTimeMillis();
         Runnable updateConsole = () -> { update(); };
         ScheduledExecutorService updateThread = Executors.newScheduledThreadPool(1);
@@ -89,12 +131,20 @@ public class FracSearchFC2 {
         updateThread.schedule(updateConsole, 30, TimeUnit.SECONDS);
         updateThread.scheduleAtFixedRate(updateConsole, 1, 1, TimeUnit.MINUTES);
         
+        // Each (gmask, fmask) pair is an independent task with its own SearchContext
+        List<Callable<Void>> pairs = new ArrayList<>();
+        int pairIndex = 0; // position in the full pair list, the checkpoint records finished positions
+        fBitMasks.removeAll(masksToRemove);
+
         // Main Loop - standard cases
         for(boolean[] gmask : gBitMasks) {
             for(boolean[] fmask : fBitMasks) {
-                processPolynomialPair(fmask, gmask, foundFracPPs, outFile, false);
+                int pair = pairIndex++;
+                if(checkpoint.isDone(pair))
+                    continue; // finished before the save
+                pairs.add(() -> { processPolynomialPair(pair, fmask, gmask, foundFracPPs, outFile, false); return null; });
+                pairsRemaining.computeIfAbsent(gmask, k -> new AtomicInteger()).incrementAndGet();
             }
-            fBitMasks.removeAll(masksToRemove);
         }
 
         // Additional loop for degree % prime == 0 cases
@@ -104,10 +154,15 @@ public class FracSearchFC2 {
             
             for(boolean[] gmask : gMasksToUse) {
                 for(boolean[] fmask : fMasksToUse) {
-                    processPolynomialPair(fmask, gmask, foundFracPPs, outFile, true);
+                    int pair = pairIndex++;
+                    if(checkpoint.isDone(pair))
+                        continue;
+                    pairs.add(() -> { processPolynomialPair(pair, fmask, gmask, foundFracPPs, outFile, true); return null; });
+                    pairsRemaining.computeIfAbsent(gmask, k -> new AtomicInteger()).incrementAndGet();
                 }
             }
         }
+        runPairs(pairs);
 
         // Special handling for prime = 2 and degree % prime == 0
         if((pDividesF || pDividesG) && prime == 2) {
@@ -116,6 +171,7 @@ public class FracSearchFC2 {
         }
 
         outFile.close();
+        checkpoint.complete();
         updateThread.shutdownNow();
         long endTime = System.currentTimeMillis();
         DecimalFormat df = new DecimalFormat("##.##");
@@ -124,67 +180,308 @@ public class FracSearchFC2 {
         System.out.println(foundFracPPs.size() + " NFPPs Found");
     }
 
-    public static void processPolynomialPair(boolean[] fmask, boolean[] gmask, 
-                                           HashSet<String> foundFracPPs, 
+    public static void runPairs(List<Callable<Void>> pairs) throws IOException {
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        try {
+            for(Future<Void> result : pool.invokeAll(pairs))
+                result.get(); // rethrow the first worker failure
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException("Fraction search worker failed", ex);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void processPolynomialPair(int pair, boolean[] fmask, boolean[] gmask, 
+                                           Set<String> foundFracPPs, 
                                            BufferedWriter outFile, 
                                            boolean applyXPlusB) throws IOException {
-        //Find lock index
-        lockIndex = getLockIndex(fmask, gmask);
-        if(lockIndex[0] == 0) { // locking an index in f
-            lockValues = fFGMapValues.get(lockIndex[1]).stream().mapToInt(i->i).toArray();
+        SearchContext ctx = new SearchContext(pair, fmask, gmask);
+        int[] gMaskIndexes = listIndexes(gmask);
+        int[] cursor = ctx.start(gMaskIndexes, outFile); // g to continue from, null for a pair not started before the save
+        try {
+            DenominatorSet denominators = cachedDenominators(gmask);
+            if(denominators == null) { // no room under the memory budget, evaluate each g for this pair
+                int[] g = createGPolynomial(gmask);
+                if(cursor != null) {
+                    g = Arrays.copyOf(cursor, cursor.length);
+                    ctx.curLockValueIndex = ctx.lockPosition(g);
+                }
+                do {
+                    ctx.reached(g, gMaskIndexes, outFile);
+                    int[] gValues = evaluatePolynomial(g);
+                    if(containsZero(gValues)) { // if g(x) produces a 0, skip it since we can't divide by zero
+                        ctx.add(ctx.perG);
+                        continue;
+                    }
+                    searchNumerators(fmask, g, invertValues(gValues), ctx, foundFracPPs, outFile, applyXPlusB);
+                }
+                while(incrementPolynomial(g, gMaskIndexes, 1, ctx));
+                ctx.finish(outFile);
+                return;
+            }
+            // the g before the cursor are in the saved count, the list is added again below as it is passed
+            ctx.add(ctx.perG * (denominators.skipped(ctx) - (cursor == null ? 0 : ctx.before(cursor, gMaskIndexes))));
+            for(int[][] denominator : denominators.rootFree) {
+                if(ctx.lockIndex[0] == 1 && !ctx.isLockValue(denominator[0][ctx.lockIndex[1]]))
+                    continue; // g is locked for this pair, only its minimum FG-Map values are needed
+                if(cursor != null && Arrays.compare(denominator[0], cursor) < 0) { // searched before the save
+                    ctx.add(ctx.perG);
+                    continue;
+                }
+                ctx.reached(denominator[0], gMaskIndexes, outFile);
+                searchNumerators(fmask, denominator[0], denominator[2], ctx, foundFracPPs, outFile, applyXPlusB);
+            }
+            ctx.finish(outFile);
         }
-        else { // locking an index in g
-            lockValues = gFGMapValues.get(lockIndex[1]).stream().mapToInt(i->i).toArray();
+        finally {
+            if(pairsRemaining.get(gmask).decrementAndGet() == 0) { // last pair for this gmask
+                FutureTask<DenominatorSet> cached = denominatorCache.remove(gmask);
+                if(cached != null && cached.isDone())
+                    release(getDenominators(cached));
+            }
         }
-        curLockValueIndex = 1;  //skipping value 0 at index 0
-        //Create initial pp
-        int[] g = createGPolynomial(gmask);
+    }
+
+    static DenominatorSet cachedDenominators(boolean[] gmask) throws IOException { // rootFreeDenominators, built once per gmask by the first pair to ask
+        FutureTask<DenominatorSet> build = new FutureTask<>(() -> rootFreeDenominators(gmask));
+        FutureTask<DenominatorSet> cached = denominatorCache.putIfAbsent(gmask, build);
+        if(cached == null) { // built outside the map, so pairs of other gmasks are not held up; pairs of this one wait on the task
+            build.run();
+            cached = build;
+        }
+        DenominatorSet denominators = getDenominators(cached);
+        if(denominators == null)
+            denominatorCache.remove(gmask, cached); // over the memory budget, a later pair may find room
+        return denominators;
+    }
+
+    static DenominatorSet getDenominators(FutureTask<DenominatorSet> build) throws IOException {
+        try {
+            return build.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException("Finding root-free denominators failed", ex);
+        }
+    }
+
+    static void release(DenominatorSet denominators) { // give its memory back to the budget
+        if(denominators != null)
+            denominatorBytes.addAndGet(-denominators.bytes);
+    }
+
+    static void saveCheckpoint() throws IOException { // callers hold the output file lock
+        long saved = settledCount;
+        for(SearchContext ctx : running.values())
+            saved += ctx.marked;
+        checkpoint.save(saved, 0);
+    }
+
+    public static void searchNumerators(boolean[] fmask, int[] g, int[] gInverses, SearchContext ctx,
+                                        Set<String> foundFracPPs, BufferedWriter outFile,
+                                        boolean applyXPlusB) throws IOException {
+        int[] f = createFPolynomial(fmask);
+        int[] fMaskIndexes = listIndexesF(fmask);
+        int[] fValues = evaluatePolynomial(f); // kept equal to f(x) as f is incremented
+        int[] fLast = Arrays.copyOf(f, f.length); // coefficients fValues was last updated for
+        long checked = 0;
+        do {
+            checked++;
+            if((complete ? ctx.checkComplete(fValues, gInverses) : ctx.checkPerm(fValues, gInverses))
+                    && !foundFracPPs.contains(Arrays.toString(f) + " / " + Arrays.toString(g))
+                    && isOne(polyGCD(f, g))) {
+                HashMap<String, int[][]> equivalenceClass = getFGMaps(f, g);
+                
+                // Apply f(x+b) transformations if needed
+                if(applyXPlusB && (pDividesF || pDividesG)) {
+                    equivalenceClass = getFofXPlusBMaps(equivalenceClass);
+                }
+                recordEquivalenceClass(f, g, equivalenceClass, foundFracPPs, outFile);
+            }
+        }
+        while(stepNumerator(f, fMaskIndexes, fLast, fValues, ctx));
+        ctx.add(checked);
+    }
+
+    public static boolean stepNumerator(int[] f, int[] fMaskIndexes, int[] fLast, int[] fValues, SearchContext ctx) { // increment f, then add (new-old)*x^k to f(x) for each coefficient that changed
+        if(!incrementPolynomial(f, fMaskIndexes, 0, ctx))
+            return false;
+        int degree = f.length-1;
+        for(int index : fMaskIndexes) {
+            if(f[index] == fLast[index])
+                continue;
+            int delta = subtract(f[index], fLast[index]);
+            int[] xPowers = powerVectors[degree-index];
+            for(int x=0; x<GF.n; x++)
+                fValues[x] = add(fValues[x], mult(delta, xPowers[x]));
+            fLast[index] = f[index];
+        }
+        return true;
+    }
+
+    public static DenominatorSet rootFreeDenominators(boolean[] gmask) { // every g under gmask with no root, evaluated once
         int[] gMaskIndexes = listIndexes(gmask);
-        
+        ArrayList<int[]> generated = rootFreeByMask == null ? null : rootFreeByMask.get(Arrays.toString(gmask));
+        long entries = generated != null ? generated.size() : (long) Math.pow(GF.n-1, gMaskIndexes.length);
+        long bytes = entries * (gdegree + 1 + 2*GF.n) * Integer.BYTES;
+        if(denominatorBytes.addAndGet(bytes) > Runtime.getRuntime().maxMemory() / 4) { // reserved before building, leave the pair to evaluate g on the fly
+            denominatorBytes.addAndGet(-bytes);
+            return null;
+        }
+        DenominatorSet denominators = new DenominatorSet(gmask);
+        denominators.bytes = bytes;
+        if(generated != null) { // already root-free, nothing to reject
+            for(int[] g : generated) {
+                int[] gValues = evaluatePolynomial(g);
+                denominators.add(g, gValues, invertValues(gValues));
+            }
+            return denominators;
+        }
+        SearchContext unlocked = SearchContext.unlocked(); // the pair's lock is applied later as a filter
+        int[] g = createGPolynomial(gmask);
         do {
             int[] gValues = evaluatePolynomial(g);
-            if(containsZero(gValues)) { // if g(x) produces a 0, skip it since we can't divide by zero
-                count += totalSkipped(fmask, gmask);
-                continue;
+            if(!containsZero(gValues))
+                denominators.add(Arrays.copyOf(g, g.length), gValues, invertValues(gValues));
+        }
+        while(incrementPolynomial(g, gMaskIndexes, 1, unlocked));
+        denominators.bytes = (long) denominators.rootFree.size() * (gdegree + 1 + 2*GF.n) * Integer.BYTES;
+        denominatorBytes.addAndGet(denominators.bytes - bytes); // reserved for every candidate, keep only what the root-free g take
+        return denominators;
+    }
+
+    public static HashMap<String, ArrayList<int[]>> generateRootFreeDenominators() {
+        // g has no root exactly when it is a product of irreducible factors of degree >= 2
+        if(gdegree < 2 || Math.pow(GF.n, gdegree) > MAX_CATALOG_SPACE)
+            return null;
+        long bytes = (long) rootFreeMonics(gdegree) * ((gdegree + 1) * Integer.BYTES + 24); // each g is an int[] plus its header and list slot
+        if(bytes > Runtime.getRuntime().maxMemory() / 4) { // every list is held for the whole run, leave each pair to enumerate its gmask
+            System.out.println("Too many root-free denominators to hold, enumerating g per pair\n");
+            return null;
+        }
+        IrreducibleCatalog catalog = new IrreducibleCatalog(gdegree);
+        HashMap<String, ArrayList<int[]>> byMask = new HashMap<>();
+        for(boolean[] gmask : gBitMasks)
+            byMask.put(Arrays.toString(gmask), new ArrayList<>());
+        if(gBitMasksDMP != null) {
+            for(boolean[] gmask : gBitMasksDMP)
+                byMask.put(Arrays.toString(gmask), new ArrayList<>());
+        }
+        generateProducts(catalog, new int[] {1}, 2, 0, byMask);
+        long total = 0;
+        for(ArrayList<int[]> denominators : byMask.values()) {
+            denominators.sort(Arrays::compare); // odometer order, so a saved cursor splits each list into searched and not
+            total += denominators.size();
+        }
+        System.out.println(total + " root-free denominators generated from " + catalog.size() + " irreducible factors\n");
+        return byMask;
+    }
+
+    static double rootFreeMonics(int degree) { // monic polynomials of this degree with no root, by inclusion-exclusion over root sets
+        double total = 0;
+        double choose = 1; // n choose k
+        for(int k = 0; k <= Math.min(degree, GF.n); k++) {
+            total += (k % 2 == 0 ? 1 : -1) * choose * Math.pow(GF.n, degree - k);
+            choose = choose * (GF.n - k) / (k + 1);
+        }
+        return total;
+    }
+
+    static void generateProducts(IrreducibleCatalog catalog, int[] product, int minDegree, int minIndex,
+                                 HashMap<String, ArrayList<int[]>> byMask) {
+        int degree = product.length - 1;
+        if(degree == gdegree) {
+            ArrayList<int[]> denominators = byMask.get(Arrays.toString(denominatorMask(product)));
+            if(denominators != null && holdsFixedDegrees(product))
+                denominators.add(product);
+            return;
+        }
+        // factors are taken in non-decreasing (degree, index) order so every product is built once
+        for(int d = minDegree; d <= gdegree - degree; d++) {
+            int remaining = gdegree - degree - d;
+            if(remaining != 0 && remaining < d)
+                continue; // the rest could only be filled by a smaller factor
+            List<int[]> factors = catalog.byDegree.get(d);
+            for(int i = (d == minDegree ? minIndex : 0); i < factors.size(); i++)
+                generateProducts(catalog, multMonic(product, factors.get(i)), d, i, byMask);
+        }
+    }
+
+    static boolean[] denominatorMask(int[] g) { // the gmask whose enumeration produces g
+        boolean[] mask = new boolean[g.length];
+        for(int i=1; i<g.length; i++)
+            mask[i] = g[i] != 0;
+        return mask;
+    }
+
+    static boolean holdsFixedDegrees(int[] g) { // incrementIndex never steps a fixed index, so it stays at 1 in g as well
+        for(int index : fixedDegrees) {
+            if(index > 0 && index < g.length && g[index] != 0 && g[index] != 1)
+                return false;
+        }
+        return true;
+    }
+
+    public static int[] multMonic(int[] p1, int[] p2) { // product of two polynomials, highest term first
+        int[] result = new int[p1.length + p2.length - 1];
+        for(int i=0; i<p1.length; i++) {
+            if(p1[i] != 0) {
+                for(int j=0; j<p2.length; j++)
+                    result[i+j] = add(result[i+j], mult(p1[i], p2[j]));
             }
-            int[] f = createFPolynomial(fmask);
-            int[] fMaskIndexes = listIndexesF(fmask);
-            do {
-                count++;
-                if(checkPerm(f, gValues)
-                        && !foundFracPPs.contains(Arrays.toString(f) + " / " + Arrays.toString(g))
-                        && isOne(polyGCD(f, g))) {
-                    HashMap<String, int[][]> equivalenceClass = getFGMaps(f, g);
-                    
-                    // Apply f(x+b) transformations if needed
-                    if(applyXPlusB && (pDividesF || pDividesG)) {
-                        equivalenceClass = getFofXPlusBMaps(equivalenceClass);
-                    }
-                    
-                    String toWrite = "";
-                    for(String key : equivalenceClass.keySet())
-                        toWrite += key + "\r\n";
-                    outFile.write(toWrite);
-                    outFile.flush();
-                    foundFracPPs.addAll(equivalenceClass.keySet());
-                    String output = Arrays.toString(f) + " / " + Arrays.toString(g);
-                    while(output.length() < maxStringLength())
-                        output += " ";
-                    if(verbose) {
-                        System.out.println(equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
-                        System.out.println(toWrite);
-                    }
-                    else {
-                        System.out.println(output + "   " + equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
-                    }
-                }
+        }
+        return result;
+    }
+
+    public static void recordEquivalenceClass(int[] f, int[] g, HashMap<String, int[][]> equivalenceClass,
+                                              Set<String> foundFracPPs, BufferedWriter outFile) throws IOException {
+        // f(x+b) maps can cross mask pairs, so another worker may have claimed this class already. Classes are written
+        // as workers find them: the file's lines are fixed, their order depends on scheduling
+        synchronized(outFile) {
+            if(foundFracPPs.contains(Arrays.toString(f) + " / " + Arrays.toString(g)))
+                return;
+            StringBuilder toWrite = new StringBuilder();
+            for(String key : equivalenceClass.keySet())
+                if(!complete || isCompleteMapping(equivalenceClass.get(key)))
+                    toWrite.append(key).append("\r\n");
+            outFile.write(toWrite.toString());
+            outFile.flush();
+            foundFracPPs.addAll(equivalenceClass.keySet());
+            checkpoint.record(equivalenceClass.values());
+            String output = Arrays.toString(f) + " / " + Arrays.toString(g);
+            while(output.length() < maxStringLength())
+                output += " ";
+            if(verbose) {
+                System.out.println(equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
+                System.out.println(toWrite);
+            }
+            else {
+                System.out.println(output + "   " + equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
             }
-            while(incrementPolynomial(f, fMaskIndexes, 0));
         }
-        while(incrementPolynomial(g, gMaskIndexes, 1));
     }
 
-    public static void handlePrime2Cases(HashSet<String> foundFracPPs, BufferedWriter outFile) throws IOException {
+    static boolean isCompleteMapping(int[][] fraction) { // f(x)/g(x) + x is a permutation
+        int[] fValues = evaluatePolynomial(fraction[0]);
+        int[] gValues = evaluatePolynomial(fraction[1]);
+        boolean[] hit = new boolean[GF.n];
+        for(int x=0; x<GF.n; x++) {
+            int plusX = add(divide(fValues[x], gValues[x]), x);
+            if(hit[plusX])
+                return false;
+            hit[plusX] = true;
+        }
+        return true;
+    }
+
+    public static int[] completeMultipliers() { // fMap sends f/g to a^(m-k) f(x/a)/g(x/a), which is complete exactly when f/g + a^(1-m+k) x is a permutation
+        int step = Math.floorMod(1 - fdegree + gdegree, GF.n - 1); // a^(1-m+k) for a = alpha is alpha^step
+        TreeSet<Integer> multipliers = new TreeSet<>();
+        for(int j=0; j<GF.n-1; j++)
+            multipliers.add(1 + (int)((long)j * step % (GF.n - 1))); // element i is alpha^(i-1)
+        return multipliers.stream().mapToInt(i->i).toArray();
+    }
+
+    public static void handlePrime2Cases(Set<String> foundFracPPs, BufferedWriter outFile) throws IOException {
         // Special handling for prime = 2 cases
         // This would include gap degree calculations and special mask generation
         // Implementation depends on specific requirements for prime = 2
@@ -345,6 +642,14 @@ public class FracSearchFC2 {
         return powers;
     }
 
+    public static int[][] fillPowerVectors() { // transpose of powerTable up to fdegree, so each update walks one row
+        int[][] vectors = new int[fdegree+1][GF.n];
+        for(int k = 0; k <= fdegree; k++)
+            for(int x = 0; x < GF.n; x++)
+                vectors[k][x] = calcPower(x, k);
+        return vectors;
+    }
+
     public static int calcPower(int a, int b) { //a^b in GF
         if(b==0)
             return 1;
@@ -459,24 +764,36 @@ public class FracSearchFC2 {
         return p.length == 1 && p[0] == 1;
     }
 
-    public static int[] binomialToPower(int[] p1, int c, int n) { //p1 = (x+c), return (x+c)^n
-        if(n == 1)
-            return p1;
-        else {
-            int[] timesX = multX(p1);
-            int[] timesB = multA(p1, c);
-            int[] result = addPoly(timesX, timesB);
-            return binomialToPower(result, c, n-1);
+    public static int[][][] fillShiftTable() { // shift[b][k][j] = coefficient of x^j in (x+b)^k
+        int maxDegree = Math.max(fdegree, gdegree);
+        int[][][] shifts = new int[GF.n][maxDegree+1][];
+        for(int b = 0; b < GF.n; b++) {
+            shifts[b][0] = new int[] {1};
+            for(int k = 1; k <= maxDegree; k++) {
+                int[] prev = shifts[b][k-1];
+                int[] cur = new int[k+1];
+                cur[k] = 1;
+                for(int j = 0; j < k; j++) // (x+b)^k = x*(x+b)^(k-1) + b*(x+b)^(k-1)
+                    cur[j] = add(j == 0 ? 0 : prev[j-1], mult(b, prev[j]));
+                shifts[b][k] = cur;
+            }
         }
+        return shifts;
     }
 
     public static int[] fOfXPlusB(int[] p, int b) { // returns f(x+b)
-        int[] result = {p[p.length-1]}; //start with result as constant of p
-        for(int i=p.length-2; i>=0; i--) {
-            int[] binomial = {1, b}; //(x+b)
-            int[] poly = binomialToPower(binomial, b, p.length-1-i); //(x+b)^p.length-1-i
-            int[] timesCoef = multA(poly, p[i]); // a*(x+b)^p.length-1-i
-            result = addPoly(timesCoef, result);
+        return fOfXPlusB(p, b, new int[p.length]);
+    }
+
+    public static int[] fOfXPlusB(int[] p, int b, int[] result) { // writes f(x+b) into result, no allocation
+        int degree = p.length - 1;
+        Arrays.fill(result, 0, p.length, 0);
+        for(int i=0; i<p.length; i++) {
+            if(p[i] != 0) {
+                int[] binomial = shiftTable[b][degree-i]; // (x+b)^(degree-i), lowest term first
+                for(int j=0; j<binomial.length; j++)
+                    result[degree-j] = add(result[degree-j], mult(p[i], binomial[j]));
+            }
         }
         return result;
     }
@@ -509,14 +826,11 @@ public class FracSearchFC2 {
         return false;
     }
 
-    public static boolean checkPerm(int[] f, int[] gValues) { // check if f(x)/g(x) is a permutation fraction (pass g as values since we already calculated them)
-        HashSet<Integer> values = new HashSet<>();
-        for(int x=0; x<GF.n; x++) {
-            int fValue = evaluateX(x, f);
-            if(!values.add(divide(fValue, gValues[x]))) // add f(x)/g(x) to set, return false if it already exists (ie, not a perm)
-                return false;
-        }
-        return true;
+    public static int[] invertValues(int[] values) { // 1/v for each (non-zero) value
+        int[] inverses = new int[values.length];
+        for(int x=0; x<values.length; x++)
+            inverses[x] = divide(1, values[x]);
+        return inverses;
     }
 
     public static ArrayList<ArrayList<Integer>> getGOrbits() {
@@ -816,12 +1130,12 @@ public class FracSearchFC2 {
         return poly;
     }
 
-    static boolean incrementPolynomial(int[] poly, int[] maskIndexes, int fg) { // fg: 0=f, 1=g
+    static boolean incrementPolynomial(int[] poly, int[] maskIndexes, int fg, SearchContext ctx) { // fg: 0=f, 1=g
         if(maskIndexes.length == 0) // no indexes to increment
             return false;
         int curMaskIndex = 0;
         int curIndex = maskIndexes[0];
-        while(incrementIndex(poly, curIndex, fg) && curMaskIndex < maskIndexes.length) {
+        while(incrementIndex(poly, curIndex, fg, ctx) && curMaskIndex < maskIndexes.length) {
             curMaskIndex++;
             if(curMaskIndex == maskIndexes.length)
                 return false;
@@ -830,7 +1144,7 @@ public class FracSearchFC2 {
         return true;
     }
 
-    static boolean incrementIndex(int[] poly, int index, int fg) { //return true if carries (does not include 0 values)
+    static boolean incrementIndex(int[] poly, int index, int fg, SearchContext ctx) { //return true if carries (does not include 0 values)
         // Skip fixed coefficients
         for(int i=0; i<fixedDegrees.size(); i++) {
             if(index == fixedDegrees.get(i)) {
@@ -838,7 +1152,7 @@ public class FracSearchFC2 {
             }
         }
         
-        if(index != lockIndex[1] || fg != lockIndex[0]) {
+        if(index != ctx.lockIndex[1] || fg != ctx.lockIndex[0]) {
             poly[index]++;
             if(poly[index] == GF.n) {
                 poly[index] = 1;
@@ -848,14 +1162,14 @@ public class FracSearchFC2 {
                 return false;
         }
         else {
-            curLockValueIndex++;
-            if(curLockValueIndex == lockValues.length) {
-                curLockValueIndex = 1;
-                poly[index] = lockValues[1];
+            ctx.curLockValueIndex++;
+            if(ctx.curLockValueIndex == ctx.lockValues.length) {
+                ctx.curLockValueIndex = 1;
+                poly[index] = ctx.lockValues[1];
                 return true;
             }
             else {
-                poly[index] = lockValues[curLockValueIndex];
+                poly[index] = ctx.lockValues[ctx.curLockValueIndex];
                 return false;
             }
         }
@@ -908,8 +1222,8 @@ public class FracSearchFC2 {
     public static void update() {
         float numMinutes = (float) (System.currentTimeMillis() - startTime) / 60000;
         DecimalFormat df = new DecimalFormat("##.##");
-        float percent = (float)count / (float)totalToCheck;
-        float totalMinutes = (float)numMinutes / (percent);
+        float percent = (float)count.sum() / (float)totalToCheck;
+        float totalMinutes = (float)numMinutes / (percent-startPercent) * (1-startPercent); //adjusted by startPercent if we resume
         System.out.println(df.format(percent*100)+"% complete. "+ df.format(numMinutes) + " min elapsed. Estimated "
                 + df.format(totalMinutes-numMinutes)+" min remaining, "+df.format(totalMinutes)+" min total.");
     }
@@ -930,11 +1244,18 @@ public class FracSearchFC2 {
     }
 
     public static void parseArgs(String[] args) {
+        resume = Arrays.asList(args).contains("--resume");
+        args = Arrays.stream(args).filter(arg -> !arg.equals("--resume")).toArray(String[]::new);
         if(args.length < 4) {
             System.out.println("Usage: java FracSearchFC <prime> <power> <f-degree> <g-degree> [degree value pairs...] [-v]");
             System.out.println("f-degree must be strictly > g-degree");
             System.out.println("options:");
             System.out.println("     -v     verbose output of nFPPs");
+            System.out.println("     -t n   number of worker threads (default: all cores)");
+            System.out.println("            the output holds the same lines for any n, but with n > 1 classes are written in the order");
+            System.out.println("            workers find them, so sort the file to compare runs");
+            System.out.println("     -complete  only fractions f/g with f/g + x also a permutation");
+            System.out.println("     --resume   continue from the save file of an interrupted search");
             System.out.println("Example: java FracSearchFC 2 3 4 2 3 0 2 1 -v");
             System.out.println("         (fixes degree 3 coeff to 0, degree 2 coeff to 1)");
             System.exit(0);
@@ -946,18 +1267,18 @@ public class FracSearchFC2 {
         gdegree = Integer.parseInt(args[3]);
         GF.initGF(prime, power);
         verbose = false;
+        threads = Runtime.getRuntime().availableProcessors();
         
         // check additional options
         fixedZeroDegrees = new ArrayList<Integer>();
 
         for (int i = 4; i+1 < args.length; i=i+2) {
             String arg = args[i];
-            if(arg.equals("-v")) {
-                verbose = true;
+            if(arg.startsWith("-")) { // options follow the degree value pairs
                 break;
             }
             
-            if(i+1 < args.length && !args[i+1].equals("-v")) {
+            if(i+1 < args.length && !args[i+1].startsWith("-")) {
                 int degree = Integer.parseInt(args[i]);
                 int value = Integer.parseInt(args[i+1]);
                 
@@ -975,12 +1296,510 @@ public class FracSearchFC2 {
                 if(args[x].equals("-v")) {
                     verbose = true;
                 }
+                if(args[x].equals("-complete")) {
+                    complete = true;
+                }
+                if(args[x].equals("-t") && x+1 < args.length) {
+                    threads = Math.max(1, Integer.parseInt(args[x+1]));
+                }
             }
         }
         System.out.println("Here is the fixedZeroDegrees" + fixedZeroDegrees.toString());
     }
 }
 
+class SearchContext // per (fmask, gmask) pair state, so pairs can run on separate threads
+{
+    final int pair; // position in the pair list, the checkpoint's key for this pair
+    final int[] lockIndex; // [0]: 0=f, 1=g; [1]: index of coefficient being fixed by FG-Map
+    final int[] lockValues; // minimum values needed to cycle through lockIndex
+    int curLockValueIndex; // current value of lockIndex
+    final long perG; // fractions each g stands for, searched or skipped
+    long checked; // fractions counted for this pair, settled when the pair finishes
+    long marked; // fractions before the g last marked in the checkpoint, guarded by the output file lock
+    final int[] seen = new int[GF.n]; // seen[v] == stamp when f(x)/g(x) = v was hit in the current checkPerm
+    final int[] seenPlus = new int[GF.n]; // same for f(x)/g(x) + ax in checkComplete
+    int stamp;
+
+    SearchContext(int pair, boolean[] fmask, boolean[] gmask)
+    {
+        this.pair = pair;
+        perG = FracSearchFC2.totalSkipped(fmask, gmask);
+        lockIndex = FracSearchFC2.getLockIndex(fmask, gmask);
+        if(lockIndex[0] == 0) // locking an index in f
+            lockValues = FracSearchFC2.fFGMapValues.get(lockIndex[1]).stream().mapToInt(i->i).toArray();
+        else // locking an index in g
+            lockValues = FracSearchFC2.gFGMapValues.get(lockIndex[1]).stream().mapToInt(i->i).toArray();
+        curLockValueIndex = 1; //skipping value 0 at index 0
+    }
+
+    private SearchContext()
+    {
+        pair = -1;
+        perG = 0;
+        lockIndex = new int[] {-1, -1};
+        lockValues = new int[0];
+    }
+
+    static SearchContext unlocked() // increments every index through all non-zero values
+    {
+        return new SearchContext();
+    }
+
+    boolean checkPerm(int[] fValues, int[] gInverses) // f(x)/g(x) is a permutation, using seen[] stamped per call instead of a fresh set
+    {
+        if(++stamp == 0) { // stamp wrapped, old marks could collide
+            Arrays.fill(seen, 0);
+            Arrays.fill(seenPlus, 0);
+            stamp = 1;
+        }
+        for(int x = 0; x < seen.length; x++) {
+            int value = FracSearchFC2.mult(fValues[x], gInverses[x]);
+            if(seen[value] == stamp)
+                return false;
+            seen[value] = stamp;
+        }
+        return true;
+    }
+
+    boolean checkComplete(int[] fValues, int[] gInverses) // f(x)/g(x) and f(x)/g(x) + ax are permutations, a = 1 in one pass with two collision maps
+    {
+        int[] multipliers = FracSearchFC2.completeMultipliers;
+        if(multipliers.length > 1) { // several a to try, only pay for them once f/g is a permutation
+            if(!checkPerm(fValues, gInverses))
+                return false;
+            for(int a : multipliers)
+                if(checkPlusPerm(fValues, gInverses, a))
+                    return true;
+            return false;
+        }
+        if(++stamp == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(seenPlus, 0);
+            stamp = 1;
+        }
+        for(int x = 0; x < seen.length; x++) {
+            int value = FracSearchFC2.mult(fValues[x], gInverses[x]);
+            int plusX = FracSearchFC2.add(value, x);
+            if(seen[value] == stamp || seenPlus[plusX] == stamp)
+                return false;
+            seen[value] = stamp;
+            seenPlus[plusX] = stamp;
+        }
+        return true;
+    }
+
+    boolean checkPlusPerm(int[] fValues, int[] gInverses, int a) // f(x)/g(x) + ax hits every element once
+    {
+        if(++stamp == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(seenPlus, 0);
+            stamp = 1;
+        }
+        for(int x = 0; x < seenPlus.length; x++) {
+            int plusX = FracSearchFC2.add(FracSearchFC2.mult(fValues[x], gInverses[x]), FracSearchFC2.mult(a, x));
+            if(seenPlus[plusX] == stamp)
+                return false;
+            seenPlus[plusX] = stamp;
+        }
+        return true;
+    }
+
+    void add(long fractions)
+    {
+        checked += fractions;
+        FracSearchFC2.count.add(fractions);
+    }
+
+    int[] start(int[] gMaskIndexes, Object outLock) // register as running, and take over the saved count up to the checkpoint's cursor
+    {
+        synchronized(outLock) {
+            int[] cursor = FracSearchFC2.checkpoint.resumesAt(pair);
+            if(cursor != null) {
+                checked = marked = perG * before(cursor, gMaskIndexes);
+                FracSearchFC2.settledCount -= checked;
+            }
+            FracSearchFC2.running.put(pair, this);
+            return cursor;
+        }
+    }
+
+    void reached(int[] g, int[] gMaskIndexes, Object outLock) throws IOException // g is next: move the pair's cursor, saving every pair's if one is due
+    {
+        synchronized(outLock) {
+            FracSearchFC2.checkpoint.mark(pair, g);
+            marked = perG * before(g, gMaskIndexes);
+            if(FracSearchFC2.checkpoint.due())
+                FracSearchFC2.saveCheckpoint();
+        }
+    }
+
+    void finish(Object outLock) throws IOException
+    {
+        synchronized(outLock) {
+            FracSearchFC2.running.remove(pair);
+            FracSearchFC2.settledCount += checked;
+            FracSearchFC2.checkpoint.pairDone(pair);
+            if(FracSearchFC2.checkpoint.due())
+                FracSearchFC2.saveCheckpoint();
+        }
+    }
+
+    long before(int[] g, int[] gMaskIndexes) // g the pair enumerates ahead of g: its rank in odometer order
+    {
+        long rank = 0;
+        for(int m = gMaskIndexes.length - 1; m >= 0; m--) { // the highest-degree coefficient is the most significant digit
+            int index = gMaskIndexes[m];
+            if(FracSearchFC2.fixedDegrees.contains(index))
+                continue; // never stepped
+            if(lockIndex[0] == 1 && lockIndex[1] == index)
+                rank = rank * (lockValues.length - 1) + lockPosition(g) - 1;
+            else
+                rank = rank * (GF.n - 1) + g[index] - 1;
+        }
+        return rank;
+    }
+
+    int lockPosition(int[] g) // curLockValueIndex once the g odometer has reached g, 1 while the lock is in f
+    {
+        if(lockIndex[0] != 1)
+            return 1;
+        for(int i = 1; i < lockValues.length; i++)
+            if(lockValues[i] == g[lockIndex[1]])
+                return i;
+        return 1;
+    }
+
+    boolean isLockValue(int value)
+    {
+        for(int i = 1; i < lockValues.length; i++) // value 0 is never used
+            if(lockValues[i] == value)
+                return true;
+        return false;
+    }
+}
+
+class DenominatorSet // root-free g for one gmask, shared by every fmask paired with it
+{
+    final ArrayList<int[][]> rootFree = new ArrayList<>(); // {g, g(x) values, 1/g(x) values}
+    final long[][] rootFreeByValue; // rootFreeByValue[i][v] = number of root-free g whose coefficient i is v
+    final long[][] candidatesByValue; // same count over every g the mask enumerates
+    final long candidates;
+    long bytes; // held in FracSearchFC2.denominatorBytes until the set is released
+
+    DenominatorSet(boolean[] gmask)
+    {
+        rootFreeByValue = new long[gmask.length][GF.n];
+        candidatesByValue = new long[gmask.length][GF.n];
+        long total = 1;
+        for(int i = 0; i < gmask.length; i++)
+            if(steps(gmask, i))
+                total *= GF.n - 1;
+        candidates = total;
+        for(int i = 0; i < gmask.length; i++) {
+            if(steps(gmask, i)) {
+                for(int v = 1; v < GF.n; v++)
+                    candidatesByValue[i][v] = candidates / (GF.n - 1);
+            }
+            else // leading 1, fixed 0, or a fixed numerator index left at 1
+                candidatesByValue[i][i == 0 || gmask[i] ? 1 : 0] = candidates;
+        }
+    }
+
+    static boolean steps(boolean[] gmask, int index) // does the g odometer change this coefficient
+    {
+        return gmask[index] && !FracSearchFC2.fixedDegrees.contains(index);
+    }
+
+    void add(int[] g, int[] gValues, int[] gInverses)
+    {
+        rootFree.add(new int[][] {g, gValues, gInverses});
+        for(int i = 0; i < g.length; i++)
+            rootFreeByValue[i][g[i]]++;
+    }
+
+    long skipped(SearchContext ctx) // g with a root that the pair would have enumerated
+    {
+        if(ctx.lockIndex[0] != 1)
+            return candidates - rootFree.size();
+        long skipped = 0;
+        for(int i = 1; i < ctx.lockValues.length; i++) {
+            int value = ctx.lockValues[i];
+            skipped += candidatesByValue[ctx.lockIndex[1]][value] - rootFreeByValue[ctx.lockIndex[1]][value];
+        }
+        return skipped;
+    }
+}
+
+class IrreducibleCatalog // monic irreducible polynomials over GF, by degree, built once per field
+{
+    final List<List<int[]>> byDegree = new ArrayList<>();
+
+    IrreducibleCatalog(int maxDegree)
+    {
+        byDegree.add(new ArrayList<>());
+        byDegree.add(new ArrayList<>());
+        for(int c = 0; c < GF.n; c++)
+            byDegree.get(1).add(new int[] {1, c});
+        for(int k = 2; k <= maxDegree; k++) {
+            // sieve: mark every product of an irreducible of degree j <= k/2 with any monic of degree k-j
+            int size = (int) Math.pow(GF.n, k);
+            BitSet reducible = new BitSet(size);
+            for(int j = 1; j <= k / 2; j++) {
+                int cofactors = (int) Math.pow(GF.n, k - j);
+                for(int[] factor : byDegree.get(j))
+                    for(int code = 0; code < cofactors; code++)
+                        reducible.set(encode(FracSearchFC2.multMonic(factor, decode(code, k - j))));
+            }
+            List<int[]> irreducible = new ArrayList<>();
+            for(int code = reducible.nextClearBit(0); code < size; code = reducible.nextClearBit(code + 1))
+                irreducible.add(decode(code, k));
+            byDegree.add(irreducible);
+        }
+    }
+
+    int size() // number of factors of degree >= 2
+    {
+        int total = 0;
+        for(int k = 2; k < byDegree.size(); k++)
+            total += byDegree.get(k).size();
+        return total;
+    }
+
+    static int encode(int[] monic) // lower coefficients as base n digits
+    {
+        int code = 0;
+        for(int i = 1; i < monic.length; i++)
+            code = code * GF.n + monic[i];
+        return code;
+    }
+
+    static int[] decode(int code, int degree)
+    {
+        int[] monic = new int[degree + 1];
+        monic[0] = 1;
+        for(int i = degree; i >= 1; i--) {
+            monic[i] = code % GF.n;
+            code /= GF.n;
+        }
+        return monic;
+    }
+}
+
+class Checkpoint // periodic save of the search cursors, so an interrupted run can continue with --resume
+{
+    static final long INTERVAL = 60000; // ms between saves
+    final String outFileName;
+    final String saveFileName; // count, finished pairs, cursors and file lengths at the last save
+    final String foundFileName; // coefficients of every recorded fraction, reloaded on resume instead of parsing the text output
+    FileOutputStream outStream;
+    FileOutputStream foundStream;
+    DataOutputStream found;
+    long foundLength; // bytes written to foundFileName
+    long lastSave;
+    long count; // fractions counted at the last save, up to each cursor
+    int state; // search state the caller passed to save, 0 if it keeps none
+    final BitSet done = new BitSet(); // finished pairs, by position in the pair list
+    final TreeMap<Integer, int[]> cursors = new TreeMap<>(); // next g to search in each pair that was part way through
+
+    Checkpoint(String outFileName)
+    {
+        this.outFileName = outFileName;
+        String name = outFileName.substring(0, outFileName.lastIndexOf('.'));
+        saveFileName = name + "_save.txt";
+        foundFileName = name + "_found.bin";
+    }
+
+    BufferedWriter open(boolean resume, Set<String> foundFracPPs) throws IOException // output file positioned at the last save, foundFracPPs reloaded
+    {
+        lastSave = System.currentTimeMillis();
+        if(!resume || !new File(saveFileName).exists()) {
+            if(resume)
+                System.out.println("No save file \""+saveFileName+"\" found, starting a new search");
+            outStream = new FileOutputStream(outFileName);
+            foundStream = new FileOutputStream(foundFileName);
+            found = new DataOutputStream(new BufferedOutputStream(foundStream));
+            BufferedWriter outFile = new BufferedWriter(new OutputStreamWriter(outStream));
+            outFile.write(GF.irr+"\r\n");
+            outFile.flush();
+            return outFile;
+        }
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        if(firstLine.equals("complete")) {
+            System.out.println("A completed search has been detected. See \""+outFileName+"\" for results.");
+            System.out.println("Delete \""+saveFileName+"\" if you wish to start a new search");
+            System.exit(0);
+        }
+        count = Long.parseLong(firstLine);
+        state = Integer.parseInt(saveReader.readLine());
+        done.or(BitSet.valueOf(parseWords(saveReader.readLine())));
+        int cursorCount = Integer.parseInt(saveReader.readLine());
+        for(int i = 0; i < cursorCount; i++) { // "pair [g]"
+            String line = saveReader.readLine();
+            int split = line.indexOf(' ');
+            cursors.put(Integer.parseInt(line.substring(0, split)), parsePolynomial(line.substring(split + 1)));
+        }
+        long outLength = Long.parseLong(saveReader.readLine());
+        foundLength = Long.parseLong(saveReader.readLine());
+        saveReader.close();
+        truncate(outFileName, outLength); // anything written after the save is searched again
+        truncate(foundFileName, foundLength);
+        loadFound(foundFracPPs);
+        System.out.println("Resuming Search From:");
+        System.out.println("count = "+count);
+        System.out.println(done.cardinality()+" pairs finished");
+        for(int pair : cursors.keySet())
+            System.out.println("pair "+pair+" at g = "+Arrays.toString(cursors.get(pair)));
+        System.out.println(foundFracPPs.size()+" NFPPs loaded\n");
+        outStream = new FileOutputStream(outFileName, true);
+        foundStream = new FileOutputStream(foundFileName, true);
+        found = new DataOutputStream(new BufferedOutputStream(foundStream));
+        return new BufferedWriter(new OutputStreamWriter(outStream));
+    }
+
+    boolean isComplete() throws IOException // the save file marks a finished search
+    {
+        if(!new File(saveFileName).exists())
+            return false;
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        saveReader.close();
+        return "complete".equals(firstLine);
+    }
+
+    boolean isDone(int pair) // pair was finished before the save
+    {
+        return done.get(pair);
+    }
+
+    boolean allDone(int fromPair, int toPair) // every pair in [fromPair, toPair) was finished before the save
+    {
+        return done.nextClearBit(fromPair) >= toPair;
+    }
+
+    int[] resumesAt(int pair) // g to continue the pair from, null to start it from the beginning
+    {
+        return cursors.get(pair);
+    }
+
+    boolean due()
+    {
+        return System.currentTimeMillis() - lastSave >= INTERVAL;
+    }
+
+    void mark(int pair, int[] g) // pair will search g next; kept for the following saves
+    {
+        cursors.put(pair, Arrays.copyOf(g, g.length));
+    }
+
+    void pairDone(int pair)
+    {
+        done.set(pair);
+        cursors.remove(pair);
+    }
+
+    void record(Collection<int[][]> fractions) throws IOException // append {f, g} of each fraction: lengths, then one byte (two if n > 256) per coefficient
+    {
+        for(int[][] fraction : fractions) {
+            for(int[] poly : fraction) {
+                found.writeByte(poly.length);
+                for(int c : poly)
+                    writeCoefficient(c);
+                foundLength += 1 + poly.length * (GF.n > 256 ? 2 : 1);
+            }
+        }
+    }
+
+    void save(long count, int state) throws IOException // count covers the finished pairs and each marked pair up to its cursor
+    {
+        found.flush();
+        foundStream.getFD().sync();
+        outStream.getFD().sync(); // the caller flushes the output file after every write
+        StringBuilder contents = new StringBuilder();
+        contents.append(count).append("\r\n").append(state).append("\r\n");
+        contents.append(Arrays.toString(done.toLongArray())).append("\r\n").append(cursors.size()).append("\r\n");
+        for(int pair : cursors.keySet())
+            contents.append(pair).append(' ').append(Arrays.toString(cursors.get(pair))).append("\r\n");
+        contents.append(new File(outFileName).length()).append("\r\n").append(foundLength).append("\r\n");
+        writeSaveFile(contents.toString());
+        lastSave = System.currentTimeMillis();
+    }
+
+    void complete() throws IOException
+    {
+        found.close();
+        writeSaveFile("complete\r\n");
+    }
+
+    void writeSaveFile(String contents) throws IOException // write a temp file, then rename it over the save so a crash never leaves half a save
+    {
+        File tmp = new File(saveFileName+".tmp");
+        FileOutputStream tmpStream = new FileOutputStream(tmp);
+        tmpStream.write(contents.getBytes());
+        tmpStream.getFD().sync();
+        tmpStream.close();
+        Files.move(tmp.toPath(), Paths.get(saveFileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void loadFound(Set<String> foundFracPPs) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(foundFileName)));
+        long read = 0;
+        while(read < foundLength) {
+            int[] f = readPolynomial(in);
+            int[] g = readPolynomial(in);
+            read += 2 + (f.length + g.length) * (GF.n > 256 ? 2 : 1);
+            foundFracPPs.add(Arrays.toString(f) + " / " + Arrays.toString(g));
+        }
+        in.close();
+    }
+
+    void writeCoefficient(int c) throws IOException
+    {
+        if(GF.n > 256)
+            found.writeShort(c);
+        else
+            found.writeByte(c);
+    }
+
+    static int[] readPolynomial(DataInputStream in) throws IOException
+    {
+        int[] poly = new int[in.readUnsignedByte()];
+        for(int i = 0; i < poly.length; i++)
+            poly[i] = GF.n > 256 ? in.readUnsignedShort() : in.readUnsignedByte();
+        return poly;
+    }
+
+    static int[] parsePolynomial(String input)
+    {
+        String[] split = input.replace("[", "").replace("]", "").split(", ");
+        int[] poly = new int[split.length];
+        for(int x = 0; x < split.length; x++)
+            poly[x] = Integer.parseInt(split[x]);
+        return poly;
+    }
+
+    static long[] parseWords(String input)
+    {
+        input = input.replace("[", "").replace("]", "");
+        if(input.isEmpty())
+            return new long[0];
+        String[] split = input.split(", ");
+        long[] words = new long[split.length];
+        for(int x = 0; x < split.length; x++)
+            words[x] = Long.parseLong(split[x]);
+        return words;
+    }
+
+    static void truncate(String fileName, long length) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        file.setLength(length);
+        file.close();
+    }
+}
+
 // Include the GF and Polynomial classes exactly as they were in your original code
 class GF
 {
@@ -1,7 +1,20 @@
 package FracSearchFZ;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.Executors;
@@ -17,6 +30,7 @@ public class FracSearchFZ {
 
     static List<Integer> fixedZeroDegrees;
     static boolean verbose;
+    static boolean resume; // continue from the save file of an interrupted run
     // static boolean outputPerms;
     // Arithmetic Tables
     static int[][] subtractionTable;
@@ -32,7 +46,9 @@ public class FracSearchFZ {
     static ArrayList<boolean[]> gBitMasks; // bit masks for g
     static boolean pDividesG;
     static long count;
+    static Checkpoint checkpoint;
     static long totalToCheck;
+    static float startPercent; // share of totalToCheck already searched when resuming
     static long startTime;
 
     public static void main(String[] args) throws IOException {
@@ -75,13 +91,12 @@ public class FracSearchFZ {
         String outFileName = "frac_" + prime + "_" + power + "_" + fdegree + "_" + gdegree + ".txt";
         fixNumeratorDegreesToZero();
 
-        BufferedWriter outFile = new BufferedWriter(new FileWriter(outFileName));
-        outFile.write(GF.irr+"\r\n");
-        outFile.flush();
-
         HashSet<String> foundFracPPs = new HashSet<>();
-        count = 0;
+        checkpoint = new Checkpoint(outFileName);
+        BufferedWriter outFile = checkpoint.open(resume, foundFracPPs);
+        count = checkpoint.count;
         totalToCheck = totalToCheck();
+        startPercent = (float)count / (float)totalToCheck;
         startTime = System.currentTimeMillis();
         Runnable updateConsole = () -> { update(); };
         ScheduledExecutorService updateThread = Executors.newScheduledThreadPool(1);
@@ -89,8 +104,13 @@ public class FracSearchFZ {
         updateThread.schedule(updateConsole, 30, TimeUnit.SECONDS);
         updateThread.scheduleAtFixedRate(updateConsole, 1, 1, TimeUnit.MINUTES);
         // Main Loop
-        for(boolean[] gmask : gBitMasks) {
-            for(boolean[] fmask : fBitMasks) {
+        for(int gi = 0; gi < gBitMasks.size(); gi++) {
+            boolean[] gmask = gBitMasks.get(gi);
+            for(int fi = 0; fi < fBitMasks.size(); fi++) {
+                int pair = gi * fBitMasks.size() + fi; // pairs are numbered in search order for the checkpoint
+                if(checkpoint.isDone(pair))
+                    continue; // finished before the save
+                boolean[] fmask = fBitMasks.get(fi);
                 //Find lock index
                 lockIndex = getLockIndex(fmask, gmask);
                 if(lockIndex[0] == 0) { // locking an index in f
@@ -103,8 +123,17 @@ public class FracSearchFZ {
                 //Create initial pp
                 int[] g = createPolynomial(gmask);
                 int[] gMaskIndexes = listIndexes(gmask);
+                int[] cursor = checkpoint.resumesAt(pair);
+                if(cursor != null) { // continue this pair from the saved g
+                    g = cursor;
+                    curLockValueIndex = lockPosition(g);
+                }
                 //System.out.println(Arrays.toString(fmask) + " / " + Arrays.toString(gmask) + " " + lockIndex[0] + " " + lockIndex[1]);
                 do {
+                    if(checkpoint.due()) {
+                        checkpoint.mark(pair, g);
+                        checkpoint.save(count, 0);
+                    }
                     int[] gValues = evaluatePolynomial(g);
                     if(containsZero(gValues)) { // if g(x) produces a 0, skip it since we can't divide by zero
                         count += totalSkipped(fmask, gmask);
@@ -127,6 +156,7 @@ public class FracSearchFZ {
                             outFile.write(toWrite);
                             outFile.flush();
                             foundFracPPs.addAll(equivalenceClass.keySet());
+                            checkpoint.record(equivalenceClass.values());
                             String output = Arrays.toString(f) + " / " + Arrays.toString(g);
                             while(output.length() < maxStringLength())
                                 output += " ";
@@ -144,9 +174,11 @@ public class FracSearchFZ {
 
                 }
                 while(incrementPolynomial(g, gMaskIndexes, 1));
+                checkpoint.pairDone(pair);
             }
         }
         outFile.close();
+        checkpoint.complete();
         updateThread.shutdownNow();
         long endTime = System.currentTimeMillis();
         DecimalFormat df = new DecimalFormat("##.##");
@@ -375,6 +407,15 @@ public class FracSearchFZ {
         return result;
     }
 
+    public static int lockPosition(int[] g) { // curLockValueIndex once the g odometer has reached g, 1 while the lock is in f
+        if(lockIndex[0] != 1)
+            return 1;
+        for(int i=1; i<lockValues.length; i++)
+            if(lockValues[i] == g[lockIndex[1]])
+                return i;
+        return 1;
+    }
+
     public static boolean containsZero(int[] array) {
         for(int i=0; i< array.length; i++) {
             if(array[i] == 0)
@@ -744,7 +785,7 @@ public class FracSearchFZ {
         float numMinutes = (float) (System.currentTimeMillis() - startTime) / 60000;
         DecimalFormat df = new DecimalFormat("##.##");
         float percent = (float)count / (float)totalToCheck;
-        float totalMinutes = (float)numMinutes / (percent);
+        float totalMinutes = (float)numMinutes / (percent-startPercent) * (1-startPercent); //adjusted by startPercent if we resume
         System.out.println(df.format(percent*100)+"% complete. "+ df.format(numMinutes) + " min elapsed. Estimated "
                 + df.format(totalMinutes-numMinutes)+" min remaining, "+df.format(totalMinutes)+" min total.");
     }
@@ -765,11 +806,14 @@ public class FracSearchFZ {
     }
 
     public static void parseArgs(String[] args) {
+        resume = Arrays.asList(args).contains("--resume");
+        args = Arrays.stream(args).filter(arg -> !arg.equals("--resume")).toArray(String[]::new);
         if(args.length < 4) {
             System.out.println("Usage: java FracSearch <prime> <power> <f-degree> <g-degree>");
             System.out.println("f-degree must be strictly > g-degree");
             System.out.println("options:");
             System.out.println("     -v     verbose output of nFPPs");
+            System.out.println("     --resume   continue from the save file of an interrupted search");
             System.exit(0);
         }
         //initialize variables
@@ -843,6 +887,220 @@ public class FracSearchFZ {
 //    }
 }
 
+class Checkpoint // periodic save of the search cursors, so an interrupted run can continue with --resume
+{
+    static final long INTERVAL = 60000; // ms between saves
+    final String outFileName;
+    final String saveFileName; // count, finished pairs, cursors and file lengths at the last save
+    final String foundFileName; // coefficients of every recorded fraction, reloaded on resume instead of parsing the text output
+    FileOutputStream outStream;
+    FileOutputStream foundStream;
+    DataOutputStream found;
+    long foundLength; // bytes written to foundFileName
+    long lastSave;
+    long count; // fractions counted at the last save, up to each cursor
+    int state; // search state the caller passed to save, 0 if it keeps none
+    final BitSet done = new BitSet(); // finished pairs, by position in the pair list
+    final TreeMap<Integer, int[]> cursors = new TreeMap<>(); // next g to search in each pair that was part way through
+
+    Checkpoint(String outFileName)
+    {
+        this.outFileName = outFileName;
+        String name = outFileName.substring(0, outFileName.lastIndexOf('.'));
+        saveFileName = name + "_save.txt";
+        foundFileName = name + "_found.bin";
+    }
+
+    BufferedWriter open(boolean resume, Set<String> foundFracPPs) throws IOException // output file positioned at the last save, foundFracPPs reloaded
+    {
+        lastSave = System.currentTimeMillis();
+        if(!resume || !new File(saveFileName).exists()) {
+            if(resume)
+                System.out.println("No save file \""+saveFileName+"\" found, starting a new search");
+            outStream = new FileOutputStream(outFileName);
+            foundStream = new FileOutputStream(foundFileName);
+            found = new DataOutputStream(new BufferedOutputStream(foundStream));
+            BufferedWriter outFile = new BufferedWriter(new OutputStreamWriter(outStream));
+            outFile.write(GF.irr+"\r\n");
+            outFile.flush();
+            return outFile;
+        }
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        if(firstLine.equals("complete")) {
+            System.out.println("A completed search has been detected. See \""+outFileName+"\" for results.");
+            System.out.println("Delete \""+saveFileName+"\" if you wish to start a new search");
+            System.exit(0);
+        }
+        count = Long.parseLong(firstLine);
+        state = Integer.parseInt(saveReader.readLine());
+        done.or(BitSet.valueOf(parseWords(saveReader.readLine())));
+        int cursorCount = Integer.parseInt(saveReader.readLine());
+        for(int i = 0; i < cursorCount; i++) { // "pair [g]"
+            String line = saveReader.readLine();
+            int split = line.indexOf(' ');
+            cursors.put(Integer.parseInt(line.substring(0, split)), parsePolynomial(line.substring(split + 1)));
+        }
+        long outLength = Long.parseLong(saveReader.readLine());
+        foundLength = Long.parseLong(saveReader.readLine());
+        saveReader.close();
+        truncate(outFileName, outLength); // anything written after the save is searched again
+        truncate(foundFileName, foundLength);
+        loadFound(foundFracPPs);
+        System.out.println("Resuming Search From:");
+        System.out.println("count = "+count);
+        System.out.println(done.cardinality()+" pairs finished");
+        for(int pair : cursors.keySet())
+            System.out.println("pair "+pair+" at g = "+Arrays.toString(cursors.get(pair)));
+        System.out.println(foundFracPPs.size()+" NFPPs loaded\n");
+        outStream = new FileOutputStream(outFileName, true);
+        foundStream = new FileOutputStream(foundFileName, true);
+        found = new DataOutputStream(new BufferedOutputStream(foundStream));
+        return new BufferedWriter(new OutputStreamWriter(outStream));
+    }
+
+    boolean isComplete() throws IOException // the save file marks a finished search
+    {
+        if(!new File(saveFileName).exists())
+            return false;
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        saveReader.close();
+        return "complete".equals(firstLine);
+    }
+
+    boolean isDone(int pair) // pair was finished before the save
+    {
+        return done.get(pair);
+    }
+
+    boolean allDone(int fromPair, int toPair) // every pair in [fromPair, toPair) was finished before the save
+    {
+        return done.nextClearBit(fromPair) >= toPair;
+    }
+
+    int[] resumesAt(int pair) // g to continue the pair from, null to start it from the beginning
+    {
+        return cursors.get(pair);
+    }
+
+    boolean due()
+    {
+        return System.currentTimeMillis() - lastSave >= INTERVAL;
+    }
+
+    void mark(int pair, int[] g) // pair will search g next; kept for the following saves
+    {
+        cursors.put(pair, Arrays.copyOf(g, g.length));
+    }
+
+    void pairDone(int pair)
+    {
+        done.set(pair);
+        cursors.remove(pair);
+    }
+
+    void record(Collection<int[][]> fractions) throws IOException // append {f, g} of each fraction: lengths, then one byte (two if n > 256) per coefficient
+    {
+        for(int[][] fraction : fractions) {
+            for(int[] poly : fraction) {
+                found.writeByte(poly.length);
+                for(int c : poly)
+                    writeCoefficient(c);
+                foundLength += 1 + poly.length * (GF.n > 256 ? 2 : 1);
+            }
+        }
+    }
+
+    void save(long count, int state) throws IOException // count covers the finished pairs and each marked pair up to its cursor
+    {
+        found.flush();
+        foundStream.getFD().sync();
+        outStream.getFD().sync(); // the caller flushes the output file after every write
+        StringBuilder contents = new StringBuilder();
+        contents.append(count).append("\r\n").append(state).append("\r\n");
+        contents.append(Arrays.toString(done.toLongArray())).append("\r\n").append(cursors.size()).append("\r\n");
+        for(int pair : cursors.keySet())
+            contents.append(pair).append(' ').append(Arrays.toString(cursors.get(pair))).append("\r\n");
+        contents.append(new File(outFileName).length()).append("\r\n").append(foundLength).append("\r\n");
+        writeSaveFile(contents.toString());
+        lastSave = System.currentTimeMillis();
+    }
+
+    void complete() throws IOException
+    {
+        found.close();
+        writeSaveFile("complete\r\n");
+    }
+
+    void writeSaveFile(String contents) throws IOException // write a temp file, then rename it over the save so a crash never leaves half a save
+    {
+        File tmp = new File(saveFileName+".tmp");
+        FileOutputStream tmpStream = new FileOutputStream(tmp);
+        tmpStream.write(contents.getBytes());
+        tmpStream.getFD().sync();
+        tmpStream.close();
+        Files.move(tmp.toPath(), Paths.get(saveFileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void loadFound(Set<String> foundFracPPs) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(foundFileName)));
+        long read = 0;
+        while(read < foundLength) {
+            int[] f = readPolynomial(in);
+            int[] g = readPolynomial(in);
+            read += 2 + (f.length + g.length) * (GF.n > 256 ? 2 : 1);
+            foundFracPPs.add(Arrays.toString(f) + " / " + Arrays.toString(g));
+        }
+        in.close();
+    }
+
+    void writeCoefficient(int c) throws IOException
+    {
+        if(GF.n > 256)
+            found.writeShort(c);
+        else
+            found.writeByte(c);
+    }
+
+    static int[] readPolynomial(DataInputStream in) throws IOException
+    {
+        int[] poly = new int[in.readUnsignedByte()];
+        for(int i = 0; i < poly.length; i++)
+            poly[i] = GF.n > 256 ? in.readUnsignedShort() : in.readUnsignedByte();
+        return poly;
+    }
+
+    static int[] parsePolynomial(String input)
+    {
+        String[] split = input.replace("[", "").replace("]", "").split(", ");
+        int[] poly = new int[split.length];
+        for(int x = 0; x < split.length; x++)
+            poly[x] = Integer.parseInt(split[x]);
+        return poly;
+    }
+
+    static long[] parseWords(String input)
+    {
+        input = input.replace("[", "").replace("]", "");
+        if(input.isEmpty())
+            return new long[0];
+        String[] split = input.split(", ");
+        long[] words = new long[split.length];
+        for(int x = 0; x < split.length; x++)
+            words[x] = Long.parseLong(split[x]);
+        return words;
+    }
+
+    static void truncate(String fileName, long length) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        file.setLength(length);
+        file.close();
+    }
+}
+
 class GF
 {
     static Random rand = new Random(1);
@@ -1,15 +1,31 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +37,8 @@ public class FracSearchFixedNumerator {
     static int fdegree;
     static int gdegree;
     static boolean verbose;
+    static boolean resume; // continue from the save file of an interrupted run
+    static String batchFile; // one fixed-numerator specification per line, searched against a single g enumeration
     // static boolean outputPerms;
     // Arithmetic Tables
     static int[][] subtractionTable;
@@ -36,7 +54,9 @@ public class FracSearchFixedNumerator {
     static ArrayList<boolean[]> gBitMasks; // bit masks for g
     static boolean pDividesG;
     static long count;
+    static Checkpoint checkpoint;
     static long totalToCheck;
+    static float startPercent; // share of totalToCheck already searched when resuming
     static long startTime;
 
     // Fixed F-coefficient controls
@@ -82,14 +102,18 @@ public class FracSearchFixedNumerator {
             System.out.println(Arrays.toString(mask));
         }*/
 
+        if(batchFile != null) {
+            searchBatch();
+            return;
+        }
+
         String outFileName = "frac_" + prime + "_" + power + "_" + fdegree + "_" + gdegree + ".txt";
-        BufferedWriter outFile = new BufferedWriter(new FileWriter(outFileName));
-        outFile.write(GF.irr+"\r\n");
-        outFile.flush();
-        
         HashSet<String> foundFracPPs = new HashSet<>();
-        count = 0;
+        checkpoint = new Checkpoint(outFileName);
+        BufferedWriter outFile = checkpoint.open(resume, foundFracPPs);
+        count = checkpoint.count;
         totalToCheck = totalToCheck();
+        startPercent = (float)count / (float)totalToCheck;
         startTime = System.currentTimeMillis();
         Runnable updateConsole = () -> { update(); };
         ScheduledExecutorService updateThread = Executors.newScheduledThreadPool(1);
@@ -97,8 +121,13 @@ public class FracSearchFixedNumerator {
         updateThread.schedule(updateConsole, 30, TimeUnit.SECONDS);
         updateThread.scheduleAtFixedRate(updateConsole, 1, 1, TimeUnit.MINUTES);
         // Main Loop
-        for(boolean[] gmask : gBitMasks) {
-            for(boolean[] fmask : fBitMasks) {
+        for(int gi = 0; gi < gBitMasks.size(); gi++) {
+            boolean[] gmask = gBitMasks.get(gi);
+            for(int fi = 0; fi < fBitMasks.size(); fi++) {
+                int pair = gi * fBitMasks.size() + fi; // pairs are numbered in search order for the checkpoint
+                if(checkpoint.isDone(pair))
+                    continue; // finished before the save
+                boolean[] fmask = fBitMasks.get(fi);
                 //Find lock index
                 lockIndex = getLockIndex(fmask, gmask);
                 if(lockIndex[0] == 0) { // locking an index in f
@@ -111,50 +140,30 @@ public class FracSearchFixedNumerator {
                 //Create initial pp
                 int[] g = createGPolynomial(gmask);
                 int[] gMaskIndexes = listIndexes(gmask);
+                int[] cursor = checkpoint.resumesAt(pair);
+                if(cursor != null) { // continue this pair from the saved g
+                    g = cursor;
+                    curLockValueIndex = lockPosition(g);
+                }
                 //System.out.println(Arrays.toString(fmask) + " / " + Arrays.toString(gmask) + " " + lockIndex[0] + " " + lockIndex[1]);
                 do {
+                    if(checkpoint.due()) {
+                        checkpoint.mark(pair, g);
+                        checkpoint.save(count, 0);
+                    }
                     int[] gValues = evaluatePolynomial(g);
                     if(containsZero(gValues)) { // if g(x) produces a 0, skip it since we can't divide by zero
                         count += totalSkipped(fmask, gmask);
                         continue;
                     }                    
-                    int[] f = createFPolynomial(fmask);
-                    int[] fMaskIndexes = listIndexes(fmask);
-                    do {
-                        count++;
-                        if(checkPerm(f, gValues) 
-                                && !foundFracPPs.contains(Arrays.toString(f) + " / " + Arrays.toString(g))
-                                && isOne(polyGCD(f, g))) {
-                            HashMap<String, int[][]> equivalenceClass = getFGMaps(f, g);
-                            if(pDividesG) {
-                                equivalenceClass = getFofXPlusBMaps(equivalenceClass);
-                            }
-                            String toWrite = "";
-                            for(String key : equivalenceClass.keySet())
-                                toWrite += key + "\r\n";
-                            outFile.write(toWrite);
-                            outFile.flush();
-                            foundFracPPs.addAll(equivalenceClass.keySet());
-                            String output = polyToString(f) + " / " + polyToString(g);
-                            while(output.length() < maxStringLength())
-                                output += " ";
-                            if(verbose) {
-                                System.out.println(equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
-                                System.out.println(toWrite);
-                            }
-                            else {
-                                System.out.println(output + "   " + equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
-                            }
-                        }
-                        //update();
-                    }
-                    while(incrementPolynomial(f, fMaskIndexes, 0));
-                    
+                    searchNumerators(fmask, g, gValues, foundFracPPs, outFile);
                 }
                 while(incrementPolynomial(g, gMaskIndexes, 1));
+                checkpoint.pairDone(pair);
             }
         }
         outFile.close();
+        checkpoint.complete();
         updateThread.shutdownNow();
         long endTime = System.currentTimeMillis();
         DecimalFormat df = new DecimalFormat("##.##");
@@ -163,6 +172,120 @@ public class FracSearchFixedNumerator {
         System.out.println(foundFracPPs.size() + " NFPPs Found");
     }
 
+    public static void searchNumerators(boolean[] fmask, int[] g, int[] gValues,
+                                        HashSet<String> foundFracPPs, BufferedWriter outFile) throws IOException {
+        int[] f = createFPolynomial(fmask);
+        int[] fMaskIndexes = listIndexes(fmask);
+        do {
+            count++;
+            if(checkPerm(f, gValues) 
+                    && !foundFracPPs.contains(Arrays.toString(f) + " / " + Arrays.toString(g))
+                    && isOne(polyGCD(f, g))) {
+                HashMap<String, int[][]> equivalenceClass = getFGMaps(f, g);
+                if(pDividesG) {
+                    equivalenceClass = getFofXPlusBMaps(equivalenceClass);
+                }
+                String toWrite = "";
+                for(String key : equivalenceClass.keySet())
+                    toWrite += key + "\r\n";
+                outFile.write(toWrite);
+                outFile.flush();
+                foundFracPPs.addAll(equivalenceClass.keySet());
+                if(checkpoint != null) // -batch keeps no save files
+                    checkpoint.record(equivalenceClass.values());
+                String output = polyToString(f) + " / " + polyToString(g);
+                while(output.length() < maxStringLength())
+                    output += " ";
+                if(verbose) {
+                    System.out.println(equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
+                    System.out.println(toWrite);
+                }
+                else {
+                    System.out.println(output + "   " + equivalenceClass.size() + " NFPPs Found. "+ foundFracPPs.size() + " Total.");
+                }
+            }
+            //update();
+        }
+        while(incrementPolynomial(f, fMaskIndexes, 0));
+    }
+
+    public static void searchBatch() throws IOException { // enumerate and filter g once per gmask, then hand each root-free g to every pattern
+        if(resume) {
+            System.out.println("--resume is not supported with -batch");
+            System.exit(0);
+        }
+        ArrayList<NumeratorPattern> patterns = NumeratorPattern.read(batchFile);
+        totalToCheck = 0;
+        for(NumeratorPattern pattern : patterns) {
+            pattern.select();
+            totalToCheck += totalToCheck();
+            pattern.open();
+        }
+        count = 0;
+        startPercent = 0;
+        startTime = System.currentTimeMillis();
+        Runnable updateConsole = () -> { update(); };
+        ScheduledExecutorService updateThread = Executors.newScheduledThreadPool(1);
+        updateThread.schedule(updateConsole, 10, TimeUnit.SECONDS);
+        updateThread.schedule(updateConsole, 30, TimeUnit.SECONDS);
+        updateThread.scheduleAtFixedRate(updateConsole, 1, 1, TimeUnit.MINUTES);
+        int[] unlocked = {-1, -1}; // g steps through every value, each pair's lock is applied as a filter
+        for(boolean[] gmask : gBitMasks) {
+            for(NumeratorPattern pattern : patterns)
+                pattern.lockFor(gmask);
+            int[] gMaskIndexes = listIndexes(gmask);
+            long candidates = (long) Math.pow(GF.n-1, gMaskIndexes.length);
+            boolean keep = candidates * (gdegree + 1 + GF.n) * Integer.BYTES <= Runtime.getRuntime().maxMemory() / 4;
+            ArrayList<int[][]> denominators = new ArrayList<>(); // {g, g(x) values or null if g has a root}, in odometer order
+            lockIndex = unlocked;
+            int[] g = createGPolynomial(gmask);
+            do {
+                int[] gValues = evaluatePolynomial(g);
+                if(containsZero(gValues))
+                    gValues = null;
+                if(keep) {
+                    denominators.add(new int[][] {Arrays.copyOf(g, g.length), gValues});
+                    continue;
+                }
+                for(NumeratorPattern pattern : patterns) { // too many g to keep, hand each one to every pair as it is found
+                    pattern.select();
+                    for(int fi = 0; fi < fBitMasks.size(); fi++)
+                        searchPair(pattern, fi, gmask, g, gValues);
+                }
+                lockIndex = unlocked;
+            }
+            while(incrementPolynomial(g, gMaskIndexes, 1));
+            for(NumeratorPattern pattern : patterns) { // same pair and g order as a single run, so each pattern finds the same first members
+                pattern.select();
+                for(int fi = 0; fi < fBitMasks.size(); fi++)
+                    for(int[][] denominator : denominators)
+                        searchPair(pattern, fi, gmask, denominator[0], denominator[1]);
+            }
+        }
+        updateThread.shutdownNow();
+        long endTime = System.currentTimeMillis();
+        DecimalFormat df = new DecimalFormat("##.##");
+        System.out.println("\nSearch Complete");
+        System.out.println(df.format((float)(endTime-startTime)/60000) + " min elapsed");
+        for(NumeratorPattern pattern : patterns) {
+            pattern.close();
+            System.out.println(pattern.found.size() + " NFPPs Found for " + pattern.label);
+        }
+    }
+
+    static void searchPair(NumeratorPattern pattern, int fi, boolean[] gmask, int[] g, int[] gValues) throws IOException { // g against fmask fi of the selected pattern
+        if(!pattern.enumerates(fi, g))
+            return; // g is locked for this pair, only its minimum FG-Map values are needed
+        if(gValues == null) { // g has a root, counted as in a single run
+            count += totalSkipped(fBitMasks.get(fi), gmask);
+            return;
+        }
+        lockIndex = pattern.lockIndexes[fi];
+        lockValues = pattern.lockValues[fi];
+        curLockValueIndex = 1;
+        searchNumerators(fBitMasks.get(fi), g, gValues, pattern.found, pattern.outFile);
+    }
+
     static String polyToString(int[] poly) {
         StringBuilder sb = new StringBuilder();
         int degree = poly.length - 1;
@@ -512,6 +635,15 @@ public class FracSearchFixedNumerator {
 //            return false;
 //    }
     
+    public static int lockPosition(int[] g) { // curLockValueIndex once the g odometer has reached g, 1 while the lock is in f
+        if(lockIndex[0] != 1)
+            return 1;
+        for(int i=1; i<lockValues.length; i++)
+            if(lockValues[i] == g[lockIndex[1]])
+                return i;
+        return 1;
+    }
+
     public static boolean containsZero(int[] array) {
         for(int i=0; i< array.length; i++) {
             if(array[i] == 0)
@@ -905,7 +1037,7 @@ public class FracSearchFixedNumerator {
         float numMinutes = (float) (System.currentTimeMillis() - startTime) / 60000;
         DecimalFormat df = new DecimalFormat("##.##");
         float percent = (float)count / (float)totalToCheck;
-        float totalMinutes = (float)numMinutes / (percent);
+        float totalMinutes = (float)numMinutes / (percent-startPercent) * (1-startPercent); //adjusted by startPercent if we resume
         System.out.println(df.format(percent*100)+"% complete. "+ df.format(numMinutes) + " min elapsed. Estimated " 
                 + df.format(totalMinutes-numMinutes)+" min remaining, "+df.format(totalMinutes)+" min total.");
     }
@@ -926,9 +1058,14 @@ public class FracSearchFixedNumerator {
     }
     
     public static void parseArgs(String[] args) {
+        resume = Arrays.asList(args).contains("--resume");
+        args = Arrays.stream(args).filter(arg -> !arg.equals("--resume")).toArray(String[]::new);
         if(args.length < 4) {
-            System.out.println("Usage: java FracSearch <prime> <power> <f-degree> <g-degree> [<deg> <val>]... [-v]");
+            System.out.println("Usage: java FracSearch <prime> <power> <f-degree> <g-degree> [<deg> <val>]... [-v] [--resume]");
+            System.out.println("       java FracSearch <prime> <power> <f-degree> <g-degree> -batch <file> [-v]");
             System.out.println("f-degree must be strictly > g-degree");
+            System.out.println("-batch reads one list of <deg> <val> pairs per line and writes frac_p_r_f_g_<deg>-<val>_....txt for each");
+            System.out.println("       (no save files are kept, an interrupted -batch run starts over)");
             System.exit(0);
         }
         prime = Integer.parseInt(args[0]);
@@ -941,33 +1078,334 @@ public class FracSearchFixedNumerator {
         // parse extra args: pairs of <deg> <val> for F, plus optional -v anywhere
         for (int i = 4; i < args.length; i++) {
             if ("-v".equals(args[i])) { verbose = true; continue; }
+            if ("-batch".equals(args[i]) && i + 1 < args.length) { batchFile = args[++i]; continue; }
             // need a value after degree
             if (i + 1 >= args.length) break;
             // if next is a flag, stop
-            if ("-v".equals(args[i+1])) break;
+            if (args[i+1].startsWith("-")) break;
 
-            int deg = Integer.parseInt(args[i]);
-            int val = Integer.parseInt(args[i+1]);
-            int idx = fdegree - deg; // internal index
+            addFixedCoefficient(Integer.parseInt(args[i]), Integer.parseInt(args[i+1]));
+            i++; // consumed a pair
+        }
+    }
 
-            if (idx < 0 || idx > fdegree) {
-                System.out.println("Ignoring out-of-range fixed F degree: " + deg);
-            } else if (val == 0) {
-                fFixedZeroDegrees.add(deg); // remember as degree (we map to idx later)
+    static void addFixedCoefficient(int deg, int val) { // fix the coefficient of x^deg in f to val
+        int idx = fdegree - deg; // internal index
+
+        if (idx < 0 || idx > fdegree) {
+            System.out.println("Ignoring out-of-range fixed F degree: " + deg);
+        } else if (val == 0) {
+            fFixedZeroDegrees.add(deg); // remember as degree (we map to idx later)
+        } else {
+            if (val < 0 || val >= GF.n) {
+                System.out.println("Ignoring invalid GF value for F coeff at degree " + deg + ": " + val);
             } else {
-                if (val < 0 || val >= GF.n) {
-                    System.out.println("Ignoring invalid GF value for F coeff at degree " + deg + ": " + val);
-                } else {
-                    fFixedIdx.add(idx);
-                    fFixedValues.add(val);
-                }
+                fFixedIdx.add(idx);
+                fFixedValues.add(val);
             }
-            i++; // consumed a pair
         }
     }
 
 }
 
+class NumeratorPattern // one fixed-numerator specification of a -batch run, with its own masks, results and output file
+{
+    final String label; // "<deg>-<val>" pairs joined by '_', used in the output file name
+    final List<Integer> fFixedZeroDegrees = new ArrayList<>();
+    final List<Integer> fFixedIdx = new ArrayList<>();
+    final List<Integer> fFixedValues = new ArrayList<>();
+    ArrayList<boolean[]> fBitMasks;
+    final HashSet<String> found = new HashSet<>();
+    BufferedWriter outFile;
+    int[][] lockIndexes; // lock of each (fmask, current gmask) pair
+    int[][] lockValues;
+
+    NumeratorPattern(String[] pairs)
+    {
+        select();
+        StringBuilder name = new StringBuilder();
+        for(int i = 0; i + 1 < pairs.length; i += 2) {
+            FracSearchFixedNumerator.addFixedCoefficient(Integer.parseInt(pairs[i]), Integer.parseInt(pairs[i+1]));
+            name.append(name.length() > 0 ? "_" : "").append(pairs[i]).append('-').append(pairs[i+1]);
+        }
+        label = name.length() > 0 ? name.toString() : "free";
+        FracSearchFixedNumerator.fBitMasks = FracSearchFixedNumerator.createFBitMasks();
+        FracSearchFixedNumerator.applyFixedFOnMasks();
+        fBitMasks = FracSearchFixedNumerator.fBitMasks;
+    }
+
+    static ArrayList<NumeratorPattern> read(String fileName) throws IOException // one pattern per line, blank lines and # comments skipped
+    {
+        ArrayList<NumeratorPattern> patterns = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        String line;
+        while((line = reader.readLine()) != null) {
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#"))
+                continue;
+            patterns.add(new NumeratorPattern(line.split("\\s+")));
+        }
+        reader.close();
+        return patterns;
+    }
+
+    void select() // point the search's fixed-numerator state at this pattern
+    {
+        FracSearchFixedNumerator.fFixedZeroDegrees = fFixedZeroDegrees;
+        FracSearchFixedNumerator.fFixedIdx = fFixedIdx;
+        FracSearchFixedNumerator.fFixedValues = fFixedValues;
+        FracSearchFixedNumerator.fBitMasks = fBitMasks;
+    }
+
+    void open() throws IOException // no Checkpoint: the batch loop has no cursor to resume from, so there is nothing to save
+    {
+        outFile = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("frac_" + FracSearchFixedNumerator.prime + "_"
+            + FracSearchFixedNumerator.power + "_" + FracSearchFixedNumerator.fdegree + "_" + FracSearchFixedNumerator.gdegree + "_" + label + ".txt")));
+        outFile.write(GF.irr+"\r\n");
+        outFile.flush();
+    }
+
+    void close() throws IOException
+    {
+        outFile.close();
+    }
+
+    void lockFor(boolean[] gmask) // FG-Map lock of every fmask paired with gmask
+    {
+        lockIndexes = new int[fBitMasks.size()][];
+        lockValues = new int[fBitMasks.size()][];
+        for(int fi = 0; fi < fBitMasks.size(); fi++) {
+            lockIndexes[fi] = FracSearchFixedNumerator.getLockIndex(fBitMasks.get(fi), gmask);
+            HashMap<Integer, ArrayList<Integer>> values = lockIndexes[fi][0] == 0 ? FracSearchFixedNumerator.fFGMapValues : FracSearchFixedNumerator.gFGMapValues;
+            lockValues[fi] = values.get(lockIndexes[fi][1]).stream().mapToInt(i->i).toArray();
+        }
+    }
+
+    boolean enumerates(int fi, int[] g) // would the pair's own g odometer reach g
+    {
+        if(lockIndexes[fi][0] != 1)
+            return true;
+        for(int i = 1; i < lockValues[fi].length; i++) // value 0 is never used
+            if(lockValues[fi][i] == g[lockIndexes[fi][1]])
+                return true;
+        return false;
+    }
+}
+
+class Checkpoint // periodic save of the search cursors, so an interrupted run can continue with --resume
+{
+    static final long INTERVAL = 60000; // ms between saves
+    final String outFileName;
+    final String saveFileName; // count, finished pairs, cursors and file lengths at the last save
+    final String foundFileName; // coefficients of every recorded fraction, reloaded on resume instead of parsing the text output
+    FileOutputStream outStream;
+    FileOutputStream foundStream;
+    DataOutputStream found;
+    long foundLength; // bytes written to foundFileName
+    long lastSave;
+    long count; // fractions counted at the last save, up to each cursor
+    int state; // search state the caller passed to save, 0 if it keeps none
+    final BitSet done = new BitSet(); // finished pairs, by position in the pair list
+    final TreeMap<Integer, int[]> cursors = new TreeMap<>(); // next g to search in each pair that was part way through
+
+    Checkpoint(String outFileName)
+    {
+        this.outFileName = outFileName;
+        String name = outFileName.substring(0, outFileName.lastIndexOf('.'));
+        saveFileName = name + "_save.txt";
+        foundFileName = name + "_found.bin";
+    }
+
+    BufferedWriter open(boolean resume, Set<String> foundFracPPs) throws IOException // output file positioned at the last save, foundFracPPs reloaded
+    {
+        lastSave = System.currentTimeMillis();
+        if(!resume || !new File(saveFileName).exists()) {
+            if(resume)
+                System.out.println("No save file \""+saveFileName+"\" found, starting a new search");
+            outStream = new FileOutputStream(outFileName);
+            foundStream = new FileOutputStream(foundFileName);
+            found = new DataOutputStream(new BufferedOutputStream(foundStream));
+            BufferedWriter outFile = new BufferedWriter(new OutputStreamWriter(outStream));
+            outFile.write(GF.irr+"\r\n");
+            outFile.flush();
+            return outFile;
+        }
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        if(firstLine.equals("complete")) {
+            System.out.println("A completed search has been detected. See \""+outFileName+"\" for results.");
+            System.out.println("Delete \""+saveFileName+"\" if you wish to start a new search");
+            System.exit(0);
+        }
+        count = Long.parseLong(firstLine);
+        state = Integer.parseInt(saveReader.readLine());
+        done.or(BitSet.valueOf(parseWords(saveReader.readLine())));
+        int cursorCount = Integer.parseInt(saveReader.readLine());
+        for(int i = 0; i < cursorCount; i++) { // "pair [g]"
+            String line = saveReader.readLine();
+            int split = line.indexOf(' ');
+            cursors.put(Integer.parseInt(line.substring(0, split)), parsePolynomial(line.substring(split + 1)));
+        }
+        long outLength = Long.parseLong(saveReader.readLine());
+        foundLength = Long.parseLong(saveReader.readLine());
+        saveReader.close();
+        truncate(outFileName, outLength); // anything written after the save is searched again
+        truncate(foundFileName, foundLength);
+        loadFound(foundFracPPs);
+        System.out.println("Resuming Search From:");
+        System.out.println("count = "+count);
+        System.out.println(done.cardinality()+" pairs finished");
+        for(int pair : cursors.keySet())
+            System.out.println("pair "+pair+" at g = "+Arrays.toString(cursors.get(pair)));
+        System.out.println(foundFracPPs.size()+" NFPPs loaded\n");
+        outStream = new FileOutputStream(outFileName, true);
+        foundStream = new FileOutputStream(foundFileName, true);
+        found = new DataOutputStream(new BufferedOutputStream(foundStream));
+        return new BufferedWriter(new OutputStreamWriter(outStream));
+    }
+
+    boolean isComplete() throws IOException // the save file marks a finished search
+    {
+        if(!new File(saveFileName).exists())
+            return false;
+        BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
+        String firstLine = saveReader.readLine();
+        saveReader.close();
+        return "complete".equals(firstLine);
+    }
+
+    boolean isDone(int pair) // pair was finished before the save
+    {
+        return done.get(pair);
+    }
+
+    boolean allDone(int fromPair, int toPair) // every pair in [fromPair, toPair) was finished before the save
+    {
+        return done.nextClearBit(fromPair) >= toPair;
+    }
+
+    int[] resumesAt(int pair) // g to continue the pair from, null to start it from the beginning
+    {
+        return cursors.get(pair);
+    }
+
+    boolean due()
+    {
+        return System.currentTimeMillis() - lastSave >= INTERVAL;
+    }
+
+    void mark(int pair, int[] g) // pair will search g next; kept for the following saves
+    {
+        cursors.put(pair, Arrays.copyOf(g, g.length));
+    }
+
+    void pairDone(int pair)
+    {
+        done.set(pair);
+        cursors.remove(pair);
+    }
+
+    void record(Collection<int[][]> fractions) throws IOException // append {f, g} of each fraction: lengths, then one byte (two if n > 256) per coefficient
+    {
+        for(int[][] fraction : fractions) {
+            for(int[] poly : fraction) {
+                found.writeByte(poly.length);
+                for(int c : poly)
+                    writeCoefficient(c);
+                foundLength += 1 + poly.length * (GF.n > 256 ? 2 : 1);
+            }
+        }
+    }
+
+    void save(long count, int state) throws IOException // count covers the finished pairs and each marked pair up to its cursor
+    {
+        found.flush();
+        foundStream.getFD().sync();
+        outStream.getFD().sync(); // the caller flushes the output file after every write
+        StringBuilder contents = new StringBuilder();
+        contents.append(count).append("\r\n").append(state).append("\r\n");
+        contents.append(Arrays.toString(done.toLongArray())).append("\r\n").append(cursors.size()).append("\r\n");
+        for(int pair : cursors.keySet())
+            contents.append(pair).append(' ').append(Arrays.toString(cursors.get(pair))).append("\r\n");
+        contents.append(new File(outFileName).length()).append("\r\n").append(foundLength).append("\r\n");
+        writeSaveFile(contents.toString());
+        lastSave = System.currentTimeMillis();
+    }
+
+    void complete() throws IOException
+    {
+        found.close();
+        writeSaveFile("complete\r\n");
+    }
+
+    void writeSaveFile(String contents) throws IOException // write a temp file, then rename it over the save so a crash never leaves half a save
+    {
+        File tmp = new File(saveFileName+".tmp");
+        FileOutputStream tmpStream = new FileOutputStream(tmp);
+        tmpStream.write(contents.getBytes());
+        tmpStream.getFD().sync();
+        tmpStream.close();
+        Files.move(tmp.toPath(), Paths.get(saveFileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void loadFound(Set<String> foundFracPPs) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(foundFileName)));
+        long read = 0;
+        while(read < foundLength) {
+            int[] f = readPolynomial(in);
+            int[] g = readPolynomial(in);
+            read += 2 + (f.length + g.length) * (GF.n > 256 ? 2 : 1);
+            foundFracPPs.add(Arrays.toString(f) + " / " + Arrays.toString(g));
+        }
+        in.close();
+    }
+
+    void writeCoefficient(int c) throws IOException
+    {
+        if(GF.n > 256)
+            found.writeShort(c);
+        else
+            found.writeByte(c);
+    }
+
+    static int[] readPolynomial(DataInputStream in) throws IOException
+    {
+        int[] poly = new int[in.readUnsignedByte()];
+        for(int i = 0; i < poly.length; i++)
+            poly[i] = GF.n > 256 ? in.readUnsignedShort() : in.readUnsignedByte();
+        return poly;
+    }
+
+    static int[] parsePolynomial(String input)
+    {
+        String[] split = input.replace("[", "").replace("]", "").split(", ");
+        int[] poly = new int[split.length];
+        for(int x = 0; x < split.length; x++)
+            poly[x] = Integer.parseInt(split[x]);
+        return poly;
+    }
+
+    static long[] parseWords(String input)
+    {
+        input = input.replace("[", "").replace("]", "");
+        if(input.isEmpty())
+            return new long[0];
+        String[] split = input.split(", ");
+        long[] words = new long[split.length];
+        for(int x = 0; x < split.length; x++)
+            words[x] = Long.parseLong(split[x]);
+        return words;
+    }
+
+    static void truncate(String fileName, long length) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        file.setLength(length);
+        file.close();
+    }
+}
+
 class GF 
 {    
     static Random rand = new Random(1);
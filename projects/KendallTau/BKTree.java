@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+class BKTree implements CodeIndex { // Burkhard-Keller tree: each child is keyed by its distance to the parent, so by the triangle
+                                    // inequality a query at distance D from a node only needs the children keyed D-r..D+r
+    final KendallKernel kernel;
+    int[][] codewords = new int[1024][];
+    int[] key = new int[1024]; // distance to the parent
+    int[] firstChild = new int[1024];
+    int[] nextSibling = new int[1024];
+    int[] maxKey = new int[1024]; // largest child key, distances past maxKey + r prune every child
+    int[] stack = new int[1024];
+    int size;
+    int lastHit = -1;
+
+    BKTree(int n) {
+        kernel = new KendallKernel(n);
+    }
+
+    public void add(int[] codeword) {
+        if(size == codewords.length)
+            grow();
+        codewords[size] = codeword.clone();
+        firstChild[size] = -1;
+        nextSibling[size] = -1;
+        maxKey[size] = -1;
+        if(size > 0) {
+            kernel.setReference(codeword);
+            int node = 0;
+            while(true) {
+                int distance = kernel.distance(codewords[node], Integer.MAX_VALUE);
+                int child = firstChild[node];
+                while(child != -1 && key[child] != distance)
+                    child = nextSibling[child];
+                if(child == -1) { // new branch
+                    key[size] = distance;
+                    nextSibling[size] = firstChild[node];
+                    firstChild[node] = size;
+                    maxKey[node] = Math.max(maxKey[node], distance);
+                    break;
+                }
+                node = child;
+            }
+        }
+        size++;
+    }
+
+    public boolean anyWithin(int[] q, int radius) {
+        if(size == 0)
+            return false;
+        kernel.setReference(q);
+        if(lastHit >= 0 && kernel.distance(codewords[lastHit], radius + 1) <= radius)
+            return true;
+        int top = 0;
+        stack[top++] = 0;
+        while(top > 0) {
+            int node = stack[--top];
+            int distance = kernel.distance(codewords[node], Math.max(radius, maxKey[node] + radius) + 1);
+            if(distance <= radius) {
+                lastHit = node;
+                return true;
+            }
+            for(int child = firstChild[node]; child != -1; child = nextSibling[child])
+                if(Math.abs(key[child] - distance) <= radius)
+                    stack[top++] = child;
+        }
+        return false;
+    }
+
+    void grow() {
+        int length = 2 * codewords.length;
+        codewords = Arrays.copyOf(codewords, length);
+        key = Arrays.copyOf(key, length);
+        firstChild = Arrays.copyOf(firstChild, length);
+        nextSibling = Arrays.copyOf(nextSibling, length);
+        maxKey = Arrays.copyOf(maxKey, length);
+        stack = Arrays.copyOf(stack, length);
+    }
+}
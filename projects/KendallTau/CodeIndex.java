@@ -0,0 +1,6 @@
+
+// Accepted codewords of a search, answering "is any codeword within distance r of this candidate".
+interface CodeIndex {
+    void add(int[] codeword); // keeps a copy
+    boolean anyWithin(int[] q, int radius);
+}
@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+// Kendall distances from a moving arrangement q to every accepted codeword, for searches that step by transpositions (SJT
+// order). A transposition only flips the relative order of the swapped pair and of each with the elements between them, so
+// a step costs O(1) per codeword for adjacent swaps, and close counts the codewords nearer than limit.
+class DistanceTracker {
+    final int n;
+    final int limit;
+    final KendallKernel kernel;
+    final int[] q; // the current arrangement
+    int[][] where = new int[1024][]; // where[j][v+1] = index of label v in codeword j, where[j][n+1+k] = index of its k-th -1
+    int[] distance = new int[1024];
+    int size;
+    int close; // codewords at distance < limit
+
+    DistanceTracker(int[] start, int limit) {
+        n = start.length;
+        this.limit = limit;
+        kernel = new KendallKernel(n);
+        q = start.clone();
+    }
+
+    boolean admissible() {
+        return close == 0;
+    }
+
+    void add(int[] codeword) {
+        if(size == where.length) {
+            where = Arrays.copyOf(where, 2 * size);
+            distance = Arrays.copyOf(distance, 2 * size);
+        }
+        int[] w = new int[2 * n + 1];
+        int fillers = 0;
+        for(int i = 0; i < n; i++) {
+            if(codeword[i] == -1)
+                w[n + 1 + fillers++] = i;
+            else
+                w[codeword[i] + 1] = i;
+        }
+        where[size] = w;
+        kernel.setReference(codeword);
+        distance[size] = kernel.distance(q, Integer.MAX_VALUE);
+        if(distance[size] < limit)
+            close++;
+        size++;
+    }
+
+    void transpose(int i, int j) { // swaps q[i] and q[j], i < j; anything between them must be -1, with q[i] and q[j] labels
+        int x = q[i];
+        int y = q[j];
+        if(x == y) // two fillers
+            return;
+        int fillersBefore = 0;
+        for(int t = 0; t < i; t++)
+            if(q[t] == -1)
+                fillersBefore++;
+        int ix = x == -1 ? n + 1 + fillersBefore : x + 1;
+        int between = j - i - 1;
+        int firstBetween = n + 1 + fillersBefore; // where-index of the first -1 between them (x is a label when there are any)
+        int iy = y == -1 ? firstBetween : y + 1;
+        for(int c = 0; c < size; c++) {
+            int[] w = where[c];
+            int px = w[ix];
+            int py = w[iy];
+            int change = px < py ? 1 : -1; // +1 when the pair agreed with the codeword before the swap
+            for(int t = 0; t < between; t++) {
+                int pz = w[firstBetween + t];
+                change += (px < pz ? 1 : -1) + (pz < py ? 1 : -1);
+            }
+            int old = distance[c];
+            distance[c] = old + change;
+            if((old < limit) != (distance[c] < limit))
+                close += distance[c] < limit ? 1 : -1;
+        }
+        q[i] = y;
+        q[j] = x;
+    }
+}
@@ -0,0 +1,83 @@
+class ForbiddenBitmap implements CodeIndex { // every arrangement within a fixed radius of an accepted codeword, marked by rank, so a
+                                             // query is one bit test. Only for small spaces: n!/(n-m)! arrangements of m labels
+    static final long LIMIT = 479001600; // 12! bits, about 60 MB
+
+    final int n;
+    final int firstLabel; // labels are firstLabel..firstLabel+m-1, the rest of an arrangement is -1
+    final int radius;
+    final long[] weight; // weight[L] = n(n-1)...(n-L+1), place value of label L's slot among those the smaller labels leave free
+    final long[] forbidden;
+    final int[] labels; // labels of the codeword being added, -1 for fillers
+    final int[] fillers; // its filler positions, in order
+
+    ForbiddenBitmap(int n, int m, int firstLabel, int radius) {
+        this.n = n;
+        this.firstLabel = firstLabel;
+        this.radius = radius;
+        weight = new long[m + 1];
+        weight[0] = 1;
+        for(int label = 0; label < m; label++)
+            weight[label + 1] = weight[label] * (n - label);
+        forbidden = new long[(int) ((weight[m] + 63) >>> 6)];
+        labels = new int[n];
+        fillers = new int[n];
+    }
+
+    static boolean fits(int n, int m) {
+        long size = 1;
+        for(int label = 0; label < m && size <= LIMIT; label++)
+            size *= n - label;
+        return n <= 64 && size <= LIMIT;
+    }
+
+    long rank(int[] q) {
+        long placed = 0; // labels seen so far
+        long rank = 0;
+        for(int i = 0; i < n; i++) {
+            if(q[i] != -1) {
+                int label = q[i] - firstLabel;
+                rank += (i - Long.bitCount(placed & ((1L << label) - 1))) * weight[label];
+                placed |= 1L << label;
+            }
+        }
+        return rank;
+    }
+
+    public void add(int[] codeword) {
+        int count = 0;
+        for(int i = 0; i < n; i++) {
+            labels[i] = codeword[i] == -1 ? -1 : codeword[i] - firstLabel;
+            if(labels[i] == -1)
+                fillers[count++] = i;
+        }
+        mark(0, n == 64 ? -1L : (1L << n) - 1, 0, 0, 0, radius);
+    }
+
+    public boolean anyWithin(int[] q, int radius) { // radius is the one given at construction
+        long rank = rank(q);
+        return (forbidden[(int) (rank >>> 6)] & 1L << rank) != 0;
+    }
+
+    // Builds q position by position from the codeword's positions still free. Taking the k-th smallest costs k inversions, and
+    // fillers are taken in order, so each arrangement within budget is reached exactly once and every branch reaches one.
+    void mark(int i, long free, int filler, long placed, long rank, int budget) {
+        if(i == n) {
+            forbidden[(int) (rank >>> 6)] |= 1L << rank;
+            return;
+        }
+        long rest = free;
+        for(int k = 0; k <= budget && rest != 0; k++) {
+            int v = Long.numberOfTrailingZeros(rest);
+            rest &= rest - 1;
+            int label = labels[v];
+            if(label == -1) {
+                if(v == fillers[filler])
+                    mark(i + 1, free & ~(1L << v), filler + 1, placed, rank, budget - k);
+            }
+            else {
+                long slot = i - Long.bitCount(placed & ((1L << label) - 1));
+                mark(i + 1, free & ~(1L << v), filler, placed | 1L << label, rank + slot * weight[label], budget - k);
+            }
+        }
+    }
+}
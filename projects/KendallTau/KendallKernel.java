@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+// Thresholded Kendall tau distance between two arrangements of the same values, without allocation.
+// -1 may repeat (unfixed positions); equal values are matched in order, as adjacent swaps would move them.
+// The distance is the inversion count of q composed with the inverse of the reference, stopping once it
+// reaches d. Seen positions are kept in one long for n <= 64, in a word array up to WORDS_LIMIT, and in
+// a Fenwick tree above that.
+class KendallKernel {
+    static final int WORDS_LIMIT = 1024; // longest arrangement counted with a bitset
+
+    final int n;
+    final int[] position; // position[v+1] = index of value v in the reference
+    final int[] fillers; // indexes of the -1s in the reference, in order
+    final long[] words; // seen positions, 64 < n <= WORDS_LIMIT only
+    final int[] tree; // Fenwick tree over reference positions, n > WORDS_LIMIT only
+
+    KendallKernel(int n) {
+        this.n = n;
+        position = new int[n + 1];
+        fillers = new int[n];
+        words = n > 64 && n <= WORDS_LIMIT ? new long[(n + 63) >>> 6] : null;
+        tree = n > WORDS_LIMIT ? new int[n + 1] : null;
+    }
+
+    void setReference(int[] p) { // the arrangement every following call is measured from
+        int count = 0;
+        for(int i = 0; i < n; i++) {
+            if(p[i] == -1)
+                fillers[count++] = i;
+            else
+                position[p[i] + 1] = i;
+        }
+    }
+
+    int distance(int[] q, int limit) { // Kendall tau distance between the reference and q, or limit if it is at least that
+        if(n <= 64)
+            return distanceMask(q, limit);
+        return words != null ? distanceWords(q, limit) : distanceFenwick(q, limit);
+    }
+
+    int distanceMask(int[] q, int limit) { // each element adds the positions seen before it that lie after its own
+        long seen = 0;
+        int inversions = 0;
+        int filler = 0;
+        for(int i = 0; i < n; i++) {
+            int p = q[i] == -1 ? fillers[filler++] : position[q[i] + 1];
+            inversions += Long.bitCount(seen >>> p >>> 1);
+            if(inversions >= limit)
+                return limit;
+            seen |= 1L << p;
+        }
+        return inversions;
+    }
+
+    int distanceWords(int[] q, int limit) { // as distanceMask, with the positions after p spread over the words above p's
+        Arrays.fill(words, 0);
+        int inversions = 0;
+        int filler = 0;
+        for(int i = 0; i < n; i++) {
+            int p = q[i] == -1 ? fillers[filler++] : position[q[i] + 1];
+            int w = p >>> 6;
+            inversions += Long.bitCount(words[w] >>> p >>> 1); // the shift uses p mod 64
+            for(int v = w + 1; v < words.length; v++)
+                inversions += Long.bitCount(words[v]);
+            if(inversions >= limit)
+                return limit;
+            words[w] |= 1L << p;
+        }
+        return inversions;
+    }
+
+    int distanceFenwick(int[] q, int limit) {
+        Arrays.fill(tree, 0);
+        int inversions = 0;
+        int filler = 0;
+        for(int i = 0; i < n; i++) {
+            int p = q[i] == -1 ? fillers[filler++] : position[q[i] + 1];
+            int before = 0; // seen positions <= p
+            for(int k = p + 1; k > 0; k -= k & -k)
+                before += tree[k];
+            inversions += i - before;
+            if(inversions >= limit)
+                return limit;
+            for(int k = p + 1; k <= n; k += k & -k)
+                tree[k]++;
+        }
+        return inversions;
+    }
+}
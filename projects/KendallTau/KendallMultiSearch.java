@@ -15,6 +15,8 @@ public class KendallMultiSearch {
     static int[][] P;
     static String indexFile;
     static boolean indexSearch;
+    static CodeIndex code; // the accepted codewords P[0..N-1], searched by dist
+    static boolean bitmap; // mark each codeword's radius d-1 ball in a ForbiddenBitmap instead of searching the code
 
     public static void main(String[] args) {
         args = new String[] {"9", "5", "2", "1"};
@@ -147,6 +149,7 @@ public class KendallMultiSearch {
         P = new int[sz][n];
         Random rand = new Random(System.currentTimeMillis());
         N = 0;
+        code = newIndex();
         // try and add u random permutations
         for(int j = 0; j < u; j++) {
             Arrays.fill(data, -1);
@@ -182,6 +185,7 @@ public class KendallMultiSearch {
         P = new int[sz][n];
         Random rand = new Random(System.currentTimeMillis());
         N = 0;
+        code = newIndex();
         // try and add u random permutations
         for(int j = 0; j < u; j++) {
             for(int i = 0; i < m; i++) {
@@ -251,37 +255,18 @@ public class KendallMultiSearch {
         return midxs;
     }
 
-    public static boolean dist(int[] data) {
-        for(int j = 0; j < N; j++) {
-            if(!kendallDistance(data, P[j])) {
-                return false;
-            }
-        }
-        return true;
+    public static boolean dist(int[] data) { // no accepted codeword is within d-1 of data (d <= 0 is treated as 1)
+        return !code.anyWithin(data, Math.max(d, 1) - 1);
     }
 
-    public static boolean kendallDistance(int[] p1, int[] p2) {
-        int[] p2_copy = new int[n];
-        System.arraycopy(p2, 0, p2_copy, 0, n);
-
-        int res = 0;
-        for(int i = 0; i < n; i++) {
-            int k = i;
-            while(p1[i] != p2_copy[k]) {
-                k++;
-            }
-            for(int j = k - 1; j >= i; j--) {
-                swap(p2_copy, j, j + 1);
-                res++;
-                if(res >= d) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    static CodeIndex newIndex() {
+        if(bitmap)
+            return new ForbiddenBitmap(n, m, indexSearch ? n - m : 0, Math.max(d, 1) - 1);
+        return new BKTree(n);
     }
 
     private static void addToPA(int[] data) {
+        code.add(data);
         System.arraycopy(data, 0, P[N], 0, n);
         N++;
         if(N == sz) {
@@ -325,6 +310,9 @@ public class KendallMultiSearch {
     }
     
     public static void parseArgs(String[] args) {
+        bitmap = args.length > 0 && args[args.length - 1].equals("-bitmap");
+        if(bitmap)
+            args = Arrays.copyOf(args, args.length - 1);
         if(args.length == 4) {
             n = Integer.parseInt(args[0]);
             m = Integer.parseInt(args[1]);
@@ -356,9 +344,14 @@ public class KendallMultiSearch {
         else {
             System.out.println("invalid parameters\n");
             System.out.println("for index search:");
-            System.out.println("   java KendallMultiSearch <n> <m> <d> <u>\n");
+            System.out.println("   java KendallMultiSearch <n> <m> <d> <u> [-bitmap]\n");
             System.out.println("for fixed search:");
-            System.out.println("   java KendallMultiSearch <d> <u> <indexFileName>");
+            System.out.println("   java KendallMultiSearch <d> <u> <indexFileName> [-bitmap]\n");
+            System.out.println("-bitmap marks every arrangement within d-1 of each codeword, for n!/(n-m)! up to 12!");
+            System.exit(0);
+        }
+        if(bitmap && !ForbiddenBitmap.fits(n, m)) {
+            System.out.println("-bitmap needs n!/(n-m)! <= 12!");
             System.exit(0);
         }
     }
@@ -0,0 +1,38 @@
+// Lexicographic order of the ranks: swap the pivot with its successor and reverse the suffix. Fillers compare equal, so
+// each arrangement appears once.
+class LexOrder extends PermutationOrder {
+    final int[] at; // at[i] = rank at position i, -1 for fillers
+
+    LexOrder(int[] perm, int fillers) {
+        super(perm);
+        at = new int[n];
+        for(int i = 0; i < n; i++)
+            at[i] = i < fillers ? -1 : i;
+    }
+
+    boolean next() {
+        int pivot = n - 2;
+        while(pivot >= 0 && at[pivot] >= at[pivot + 1])
+            pivot--;
+        if(pivot < 0)
+            return false;
+        int successor = n - 1;
+        while(at[successor] <= at[pivot])
+            successor--;
+        swap(pivot, successor);
+        for(int l = pivot + 1, r = n - 1; l < r; l++, r--)
+            swap(l, r);
+        first = pivot;
+        second = n - 1;
+        return true;
+    }
+
+    void swap(int i, int j) {
+        int temp = at[i];
+        at[i] = at[j];
+        at[j] = temp;
+        temp = perm[i];
+        perm[i] = perm[j];
+        perm[j] = temp;
+    }
+}
@@ -14,16 +14,10 @@ public class MainSJT {
     static int[][] P;
     static String indexFile;
     static boolean indexSearch;
-
-    // Global variables for SJT
-    static int[] direction;
-    static int[] directionM;
-    static int[] sjtPermutation;
-    static int[] sjtPermutationM;
-    static int[] identityPermutation; //for indexPA
-    static int[] identityPermutationM; //for fixedPA
-    //TODO: rename the normal to indexPA and M to fixedPA
-    static int numCalls = 0;
+    static CodeIndex code; // the accepted codewords P[0..N-1], searched by dist
+    static boolean bitmap; // mark each codeword's radius d-1 ball in a ForbiddenBitmap instead of searching the code
+    static boolean incremental; // follow the SJT walk with a DistanceTracker instead of querying code
+    static DistanceTracker track; // distances from the current SJT candidate to P[0..N-1], null outside the walk
 
     public static void main(String[] args) {
         parseArgs(args);
@@ -33,32 +27,6 @@ public class MainSJT {
             FixedSearch();
     }
 
-    public static void initializeSJTSetup(){
-        identityPermutation = createIdentityPermutation(n);
-        sjtPermutation = identityPermutation;
-
-        // Initialize the direction array
-        direction = new int[n];
-        Arrays.fill(direction, -1); // Assuming -1 for left, 1 for right
-    }
-
-    public static void initializeSJTSetupM(){
-        identityPermutationM = createIdentityPermutation(m);
-        sjtPermutationM = identityPermutationM;
-
-        // Initialize the direction array
-        directionM = new int[m];
-        Arrays.fill(directionM, -1); // Assuming -1 for left, 1 for right
-    }
-
-    public static int[] createIdentityPermutation(int n) { //0-indexed
-        int[] identity = new int[n];
-        for (int i = 0; i < n; i++) {
-            identity[i] = i;
-        }
-        return identity;
-    }
-
     public static void IndexSearch() {
 
         System.out.println("Running Index Search");
@@ -174,12 +142,13 @@ public class MainSJT {
     }
 
     public static void indexPA() {
-        initializeSJTSetup();
         int[] data = new int[n];
         sz = 100_000;
         P = new int[sz][n];
         Random rand = new Random(System.currentTimeMillis());
         N = 0;
+        code = newIndex();
+        track = null;
         // try and add u random permutations
         for(int j = 0; j < u; j++) {
             Arrays.fill(data, -1);
@@ -202,33 +171,28 @@ public class MainSJT {
             data[i] = i;
         }
         boolean hasNext = true;
-        // iterate through all permutations
-
+        if(incremental)
+            track = newTracker(data);
+        // iterate through all arrangements in SJT order, the -1s staying in order
+        SJTOrder order = new SJTOrder(data, n - m);
         while(hasNext) {
             if(dist(data)) {
                 addToPA(data);
             }
-            hasNext = findNextSJTPermutation();
-            data = sjtPermutation;
-            if (m < n) {
-                for (int i = 0; i < n; i++) {
-                    // Check if the value of data[i] is not among the last m values
-                    if (data[i] < n - m) {
-                        data[i] = -1;
-                    }
-                    // Else, keep the value as is since it's among the last m values
-                }
-            }
+            hasNext = order.next();
+            if(track != null && hasNext)
+                track.transpose(order.first, order.second);
         }
     }
 
     public static void fixedPA(int[] idxs) {
-        initializeSJTSetupM();
         int[] data = new int[m]; //this data is different, it's only size m
         sz = 100_000;
         P = new int[sz][n];
         Random rand = new Random(System.currentTimeMillis());
         N = 0;
+        code = newIndex();
+        track = null;
         // try and add u random permutations
         for(int j = 0; j < u; j++) {
             for(int i = 0; i < m; i++) {
@@ -249,17 +213,26 @@ public class MainSJT {
             data[i] = i;
         }
         boolean hasNext = true;
-        // iterate through all permutations
+        int[] slots = null; // slots[i] = position of data[i] in insert(data, idxs)
+        if(incremental) {
+            track = newTracker(insert(data, idxs));
+            slots = new int[m];
+            for(int i = 0, pos = 0; i < m; i++, pos++) {
+                while(Arrays.binarySearch(idxs, pos) >= 0)
+                    pos++;
+                slots[i] = pos;
+            }
+        }
+        // iterate through all permutations in SJT order
+        SJTOrder order = new SJTOrder(data, 0);
         while(hasNext) {
             int[] perm = insert(data, idxs);
             if(dist(perm)) {
                 addToPA(perm);
             }
-            hasNext = findNextSJTPermutationM();
-            if(sjtPermutationM == null){
-                initializeSJTSetupM();
-            }
-            data = sjtPermutationM;
+            hasNext = order.next();
+            if(track != null && hasNext) // only -1s lie between the two slots
+                track.transpose(slots[order.first], slots[order.second]);
         }
 //        System.out.println("Adding permutation to PA: " + Arrays.toString(data));
     }
@@ -300,39 +273,30 @@ public class MainSJT {
         return midxs;
     }
 
-    public static boolean dist(int[] data) {
-        for(int j = 0; j < N; j++) {
-            if(!kendallDistance(data, P[j])) {
-                return false;
-            }
-        }
-        return true;
+    public static boolean dist(int[] data) { // no accepted codeword is within d-1 of data (d <= 0 is treated as 1)
+        if(track != null) // data is the arrangement track has followed
+            return track.admissible();
+        return !code.anyWithin(data, Math.max(d, 1) - 1);
     }
 
-    public static boolean kendallDistance(int[] p1, int[] p2) {
-        int[] p2_copy = new int[n];
-        System.arraycopy(p2, 0, p2_copy, 0, n);
-
-        int res = 0;
-        for(int i = 0; i < n; i++) {
-            int k = i;
+    static DistanceTracker newTracker(int[] start) { // tracks start and the codewords accepted so far
+        DistanceTracker tracker = new DistanceTracker(start, Math.max(d, 1));
+        for(int j = 0; j < N; j++)
+            tracker.add(P[j]);
+        return tracker;
+    }
 
-            while(p1[i] != p2_copy[k]) {
-                k++;
-            }
-            for(int j = k - 1; j >= i; j--) {
-                swap(p2_copy, j, j + 1);
-                res++;
-                if(res >= d) {
-                    return true;
-                }
-            }
-        }
-//        System.out.println("Kendall tau distance between " + Arrays.toString(p1) + " and " + Arrays.toString(p2) + " is: " + res);
-        return false;
+    static CodeIndex newIndex() {
+        if(bitmap)
+            return new ForbiddenBitmap(n, m, indexSearch ? n - m : 0, Math.max(d, 1) - 1);
+        return new BKTree(n);
     }
 
     private static void addToPA(int[] data) {
+        if(track != null) // the walk only asks track, and code is rebuilt before the next search
+            track.add(data);
+        else
+            code.add(data);
         System.arraycopy(data, 0, P[N], 0, n);
         N++;
         if(N == sz) {
@@ -343,87 +307,21 @@ public class MainSJT {
         }
     }
 
-    public static boolean findNextSJTPermutation() {
-        numCalls++;
-        if(numCalls == 1){
-            sjtPermutation = identityPermutation;
-            return true;
-        }
-        // Find the largest mobile element k
-        int k = -1, kIndex = -1;
-        for (int i = 0; i < sjtPermutation.length; i++) {
-            int adjacentNumIndex = i + direction[i];
-            if (adjacentNumIndex >= 0 && adjacentNumIndex < sjtPermutation.length) {
-                if ((direction[i] == -1 && sjtPermutation[i] > sjtPermutation[adjacentNumIndex]) ||
-                        (direction[i] == 1 && sjtPermutation[i] > sjtPermutation[adjacentNumIndex])) {
-                    if (k == -1 || sjtPermutation[i] > sjtPermutation[kIndex]) {
-                        k = sjtPermutation[i];
-                        kIndex = i;
-                    }
-                }
-            }
-        }
-
-        // No mobile element means this was the last permutation
-        if (k == -1) {
-            return false;
-        }
-
-        // Swap k with the element in its direction
-        int swapIndex = kIndex + direction[kIndex];
-        swap(sjtPermutation, kIndex, swapIndex);
-        swap(direction, kIndex, swapIndex);
-
-        // Reverse the direction of all elements larger than k
-        for (int i = 0; i < sjtPermutation.length; i++) {
-            if (sjtPermutation[i] > k) {
-                direction[i] = -direction[i];
-            }
-        }
-        return true;
-    }
-
-    public static boolean findNextSJTPermutationM() {
-        numCalls++;
-        if(numCalls == 1){
-            sjtPermutationM = identityPermutation;
-            return true;
-        }
-        // Find the largest mobile element k
-        int k = -1, kIndex = -1;
-        for (int i = 0; i < sjtPermutationM.length; i++) {
-            int adjacentNumIndex = i + directionM[i];
-            if (adjacentNumIndex >= 0 && adjacentNumIndex < sjtPermutationM.length) {
-                if ((directionM[i] == -1 && sjtPermutationM[i] > sjtPermutationM[adjacentNumIndex]) ||
-                        (directionM[i] == 1 && sjtPermutationM[i] > sjtPermutationM[adjacentNumIndex])) {
-                    if (k == -1 || sjtPermutationM[i] > sjtPermutationM[kIndex]) {
-                        k = sjtPermutationM[i];
-                        kIndex = i;
-                    }
-                }
-            }
-        }
-
-        // No mobile element means this was the last permutation
-        if (k == -1) {
-            return false;
-        }
-
-        // Swap k with the element in its direction
-        int swapIndex = kIndex + directionM[kIndex];
-        swap(sjtPermutationM, kIndex, swapIndex);
-        swap(directionM, kIndex, swapIndex);
-
-        // Reverse the direction of all elements larger than k
-        for (int i = 0; i < sjtPermutationM.length; i++) {
-            if (sjtPermutationM[i] > k) {
-                directionM[i] = -directionM[i];
+    public static void parseArgs(String[] args) {
+        bitmap = false;
+        incremental = false;
+        int count = args.length;
+        for(; count > 0 && args[count - 1].startsWith("-"); count--) {
+            if(args[count - 1].equals("-bitmap"))
+                bitmap = true;
+            else if(args[count - 1].equals("-incremental"))
+                incremental = true;
+            else {
+                System.out.println(args[count - 1] + " is an unrecognized option.");
+                System.exit(0);
             }
         }
-        return true;
-    }
-
-    public static void parseArgs(String[] args) {
+        args = Arrays.copyOf(args, count);
         if(args.length == 4) {
             n = Integer.parseInt(args[0]);
             m = Integer.parseInt(args[1]);
@@ -455,9 +353,15 @@ public class MainSJT {
         else {
             System.out.println("invalid parameters\n");
             System.out.println("for index search:");
-            System.out.println("   java KendallMultiSearch <n> <m> <d> <u>\n");
+            System.out.println("   java KendallMultiSearch <n> <m> <d> <u> [-bitmap] [-incremental]\n");
             System.out.println("for fixed search:");
-            System.out.println("   java KendallMultiSearch <d> <u> <indexFileName>");
+            System.out.println("   java KendallMultiSearch <d> <u> <indexFileName> [-bitmap] [-incremental]\n");
+            System.out.println("-bitmap marks every arrangement within d-1 of each codeword, for n!/(n-m)! up to 12!");
+            System.out.println("-incremental updates the distance to every codeword at each SJT step");
+            System.exit(0);
+        }
+        if(bitmap && !ForbiddenBitmap.fits(n, m)) {
+            System.out.println("-bitmap needs n!/(n-m)! <= 12!");
             System.exit(0);
         }
     }
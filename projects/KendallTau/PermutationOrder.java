@@ -0,0 +1,26 @@
+// Walks every rearrangement of an array in place, one step per next(), in O(1) amortized time per step (SJT steps are O(1)
+// outright). The caller's array is stepped directly; elements are ranked by their starting position, so starting
+// from a sorted array gives the usual order of its values. For SJTOrder and LexOrder the first `fillers` entries are
+// interchangeable and never trade places (the -1s of a partial arrangement), giving n!/fillers! arrangements instead of n!.
+// After next() returns true, perm[first] and perm[second] are the two entries it exchanged (first < second) for
+// transposition orders, and perm[first..second] is the rewritten suffix for LexOrder.
+abstract class PermutationOrder {
+    final int n;
+    final int[] perm;
+    int first, second;
+
+    PermutationOrder(int[] perm) {
+        this.perm = perm;
+        n = perm.length;
+    }
+
+    abstract boolean next(); // steps to the next arrangement, false (perm unchanged) after the last
+
+    void exchange(int i, int j) {
+        int temp = perm[i];
+        perm[i] = perm[j];
+        perm[j] = temp;
+        first = Math.min(i, j);
+        second = Math.max(i, j);
+    }
+}
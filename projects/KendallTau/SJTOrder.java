@@ -0,0 +1,52 @@
+// Steinhaus-Johnson-Trotter order: each step moves the largest mobile element one place in its direction. Even's inverse
+// array finds that element's position directly, and focus pointers (Bitner, Ehrlich, Reingold) name the element, so no step
+// scans the array. With fillers this is SJT over the movers, which pass through the fillers as if they were smaller.
+class SJTOrder extends PermutationOrder {
+    final int lowest; // smallest rank that moves; the ranks below are fillers (or the smallest element, which never moves)
+    final int[] at; // at[i] = rank at position i, -1 for fillers
+    final int[] position; // position[r] = index of rank r
+    final int[] direction; // -1 left, +1 right
+    final int[] focus; // focus[n-1] = next rank to move, focus[lowest-1] = lowest-1 once every rank is done
+
+    SJTOrder(int[] perm, int fillers) {
+        super(perm);
+        lowest = Math.max(fillers, 1);
+        at = new int[n];
+        position = new int[n];
+        direction = new int[n];
+        focus = new int[n];
+        for(int i = 0; i < n; i++) {
+            at[i] = i < lowest ? -1 : i;
+            position[i] = i;
+            direction[i] = -1;
+            focus[i] = i;
+        }
+    }
+
+    boolean next() {
+        if(n == 0)
+            return false;
+        int r = focus[n - 1];
+        focus[n - 1] = n - 1;
+        if(r < lowest) {
+            focus[n - 1] = r; // stays finished
+            return false;
+        }
+        int i = position[r];
+        int k = i + direction[r];
+        int other = at[k];
+        at[i] = other;
+        at[k] = r;
+        if(other != -1)
+            position[other] = i;
+        position[r] = k;
+        exchange(i, k);
+        int beyond = k + direction[r];
+        if(beyond < 0 || beyond == n || at[beyond] > r) { // r is no longer mobile: turn it and hand the focus down
+            direction[r] = -direction[r];
+            focus[r] = focus[r - 1];
+            focus[r - 1] = r - 1;
+        }
+        return true;
+    }
+}
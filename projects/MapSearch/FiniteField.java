@@ -1,16 +1,28 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
-
-import FracSearchFZ.Polynomial;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FiniteField {
 	static String newLine = System.getProperty("line.separator");
 	static int[] coef = null;
 	public static void main(String [] args) {
+		if(args.length > 0 && args[0].equals("-pa")) {
+			cosetSearch(args);
+			return;
+		}
 		int p,r,k;
 		if(args.length >= 3) {
 			p = Integer.parseInt(args[0]);
@@ -30,12 +42,253 @@ public class FiniteField {
 		}
 		else {
 			System.out.println("Too few arguments. Usage: java FiniteField <p> <r> <k> [{coefs}] where p-prime, r-exponent, k-number of AGL cosets to display. Additionally, any number of arguments following <k> will be taken as coefficients for the Primitive Polynomial.");
+			System.out.println("Coset search: java FiniteField -pa <p> <r> <d> <permfile> [{coefs}] [-restarts n] [-t n] [-write], see cosetSearch.");
+			return;
+		}
+		printCosets(new LazyAGL(GF(p,r)), k);
+	}
+	
+	// Coset-extension PA search. Every permutation s in <permfile> (one per line, e.g. PermGen's -norm output) stands for its
+	// coset {a*s(x)+b}, which has minimum distance n-1 on its own. Cosets are compatible when no two members are closer than d,
+	// and a greedy clique of compatible cosets is an array of (cosets)*n(n-1) permutations at distance >= d. The field must be
+	// built over the primitive polynomial the file was generated over: given as coefficients, or else read from the header of
+	// <permfile> or of the MapSearch/FracSearch file "<name>.txt" that PermGen expanded into "<name>_perms.txt".
+	public static void cosetSearch(String[] args) {
+		if(args.length < 5) {
+			System.out.println("Usage: java FiniteField -pa <p> <r> <d> <permfile> [{coefs}] [-restarts n] [-t n] [-write]");
+			System.out.println("     {coefs}       the primitive polynomial <permfile> was generated over, highest degree first; read from the");
+			System.out.println("                   first line of <permfile> or of the MapSearch/FracSearch file it came from if omitted");
+			System.out.println("     -restarts n   greedy cliques over n orders, the first by compatibility count, the rest random (default 1)");
+			System.out.println("     -t n          number of worker threads (default: all cores)");
+			System.out.println("     -write        also writes every permutation of the chosen cosets");
+			return;
+		}
+		int p = Integer.parseInt(args[1]);
+		int r = Integer.parseInt(args[2]);
+		int d = Integer.parseInt(args[3]);
+		String fileName = args[4];
+		int restarts = 1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean write = false;
+		List<Integer> coefArgs = new ArrayList<Integer>();
+		for(int i = 5; i < args.length; i++) {
+			if(args[i].equals("-restarts") && i+1 < args.length)
+				restarts = Math.max(1, Integer.parseInt(args[++i]));
+			else if(args[i].equals("-t") && i+1 < args.length)
+				threads = Math.max(1, Integer.parseInt(args[++i]));
+			else if(args[i].equals("-write"))
+				write = true;
+			else if(args[i].matches("\\d+"))
+				coefArgs.add(Integer.parseInt(args[i]));
+			else {
+				System.out.println("Unrecognized option: " + args[i]);
+				return;
+			}
+		}
+		if(!coefArgs.isEmpty()) {
+			if(coefArgs.size() != r+1) {
+				System.out.println("Expected " + (r+1) + " coefficients for the Primitive Polynomial.");
+				return;
+			}
+			coef = new int[r+1];
+			for(int i = 0; i < coefArgs.size(); i++)
+				coef[r - i] = coefArgs.get(i);
+		}
+		else {
+			String headerFile = fileName;
+			Polynomial irr = readIrreducible(headerFile, p);
+			if(irr == null && fileName.endsWith("_perms.txt")) {
+				headerFile = fileName.substring(0, fileName.length() - "_perms.txt".length()) + ".txt";
+				irr = readIrreducible(headerFile, p);
+			}
+			if(irr == null || irr.deg != r) {
+				System.out.println("No degree " + r + " polynomial on the first line of \"" + headerFile + "\".");
+				System.out.println("Give the coefficients of the primitive polynomial <permfile> was generated over.");
+				return;
+			}
+			System.out.println("Field over " + irr + " from \"" + headerFile + "\"");
+			coef = irr.coef;
+		}
+		LazyAGL agl = new LazyAGL(GF(p, r));
+		int n = agl.n;
+		if(d < 2 || d > n-1) {
+			System.out.println("d must be between 2 and " + (n-1) + ", the distance within a coset.");
 			return;
 		}
-		int[][][] cos = AGLCosets(p,r);
-		printCosets(cos, k);
+		try {
+			List<int[]> reps = readCosetReps(fileName, agl);
+			System.out.println(newLine + reps.size() + " distinct cosets in \"" + fileName + "\"");
+			long startTime = System.currentTimeMillis();
+			long[][] compatible = compatibility(reps, agl, d, threads);
+			System.out.println("Compatibility computed in " + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+			int[] clique = cliqueSearch(compatible, restarts, threads);
+			String base = fileName.replace(".txt", "");
+			String cosetFileName = base + "_cosets_d" + d + ".txt";
+			BufferedWriter out = new BufferedWriter(new FileWriter(cosetFileName));
+			for(int c : clique)
+				writePerm(out, reps.get(c));
+			out.close();
+			System.out.println(clique.length + " compatible cosets written to \"" + cosetFileName + "\", a PA of "
+					+ (long) clique.length * n * (n-1) + " permutations at distance >= " + d);
+			if(write) {
+				String paFileName = base + "_pa_d" + d + ".txt";
+				out = new BufferedWriter(new FileWriter(paFileName));
+				int[] perm = new int[n];
+				for(int c : clique)
+					for(int a = 1; a < n; a++)
+						for(int b = 0; b < n; b++)
+							writePerm(out, agl.apply(a, b, reps.get(c), perm));
+				out.close();
+				System.out.println("Permutations written to \"" + paFileName + "\"");
+			}
+		} catch(IOException | InterruptedException | ExecutionException e) {
+			System.out.println("Coset search failed.");
+			e.printStackTrace();
+		}
+	}
+	
+	public static Polynomial readIrreducible(String fileName, int prime) { // the GF.irr MapSearch/FracSearch wrote on the first line, null if there is none
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(fileName));
+			String header = in.readLine();
+			in.close();
+			if(header == null)
+				return null;
+			Polynomial irr = Polynomial.parse(header);
+			for(int c : irr.coef)
+				if(c >= prime)
+					return null;
+			return irr;
+		} catch(IOException | RuntimeException e) {
+			return null; // a missing file or a permutation line
+		}
+	}
+	
+	public static List<int[]> readCosetReps(String fileName, LazyAGL agl) throws IOException { // lines that are not permutations of GF(q) are skipped, each coset is kept once
+		List<int[]> reps = new ArrayList<int[]>();
+		HashSet<String> seen = new HashSet<String>();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		String line;
+		while((line = in.readLine()) != null) {
+			String[] split = line.trim().split("\\s+");
+			if(split.length != agl.n || !split[0].matches("\\d+"))
+				continue;
+			int[] perm = new int[agl.n];
+			boolean[] used = new boolean[agl.n];
+			boolean valid = true;
+			for(int x = 0; x < agl.n && valid; x++) {
+				perm[x] = Integer.parseInt(split[x]);
+				valid = perm[x] < agl.n && !used[perm[x]];
+				if(valid)
+					used[perm[x]] = true;
+			}
+			if(!valid)
+				continue;
+			int[] rep = agl.canonical(perm);
+			if(seen.add(Arrays.toString(rep)))
+				reps.add(rep);
+		}
+		in.close();
+		return reps;
+	}
+	
+	public static long[][] compatibility(List<int[]> reps, LazyAGL agl, int d, int threads) throws InterruptedException, ExecutionException { // compatible[i] = bitset of the cosets at distance >= d from coset i
+		int m = reps.size();
+		long[][] compatible = new long[m][(m + 63) >>> 6];
+		AtomicInteger nextRow = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for(int t = 0; t < threads; t++)
+			workers.add(pool.submit(() -> {
+				int[] counts = new int[agl.n * agl.n];
+				for(int i = nextRow.getAndIncrement(); i < m; i = nextRow.getAndIncrement()) // rows get shorter, so they are handed out one at a time
+					for(int j = i+1; j < m; j++)
+						if(agl.maxAgreement(reps.get(i), reps.get(j), counts, agl.n - d + 1) <= agl.n - d)
+							compatible[i][j >>> 6] |= 1L << j;
+			}));
+		for(Future<?> worker : workers)
+			worker.get();
+		pool.shutdown();
+		for(int i = 0; i < m; i++) // each pair was computed once, by its lower row
+			for(int j = i+1; j < m; j++)
+				if((compatible[i][j >>> 6] >>> j & 1) != 0)
+					compatible[j][i >>> 6] |= 1L << i;
+		return compatible;
+	}
+	
+	public static int[] cliqueSearch(long[][] compatible, int restarts, int threads) throws InterruptedException, ExecutionException { // largest of the greedy cliques over each vertex order
+		int m = compatible.length;
+		Integer[] byDegree = new Integer[m];
+		int[] degree = new int[m];
+		for(int i = 0; i < m; i++) {
+			byDegree[i] = i;
+			for(long word : compatible[i])
+				degree[i] += Long.bitCount(word);
+		}
+		Arrays.sort(byDegree, (a, b) -> degree[b] - degree[a]);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<int[]>> runs = new ArrayList<Future<int[]>>();
+		for(int run = 0; run < restarts; run++) {
+			int[] order = new int[m];
+			for(int i = 0; i < m; i++)
+				order[i] = byDegree[i];
+			Random rand = new Random(run);
+			for(int i = m-1; i > 0 && run > 0; i--) { // run 0 keeps the degree order
+				int j = rand.nextInt(i+1);
+				int temp = order[i];
+				order[i] = order[j];
+				order[j] = temp;
+			}
+			runs.add(pool.submit(() -> greedyClique(compatible, order)));
+		}
+		int[] best = new int[0];
+		for(int run = 0; run < restarts; run++) {
+			int[] clique = runs.get(run).get();
+			if(restarts > 1)
+				System.out.println("restart " + run + ": " + clique.length + " cosets");
+			if(clique.length > best.length)
+				best = clique;
+		}
+		pool.shutdown();
+		return best;
 	}
 	
+	public static int[] greedyClique(long[][] compatible, int[] order) {
+		long[] candidates = new long[compatible.length == 0 ? 0 : compatible[0].length];
+		for(int i = 0; i < compatible.length; i++)
+			candidates[i >>> 6] |= 1L << i;
+		List<Integer> clique = new ArrayList<Integer>();
+		for(int v : order)
+			if((candidates[v >>> 6] >>> v & 1) != 0) {
+				clique.add(v);
+				for(int w = 0; w < candidates.length; w++)
+					candidates[w] &= compatible[v][w];
+			}
+		int[] res = new int[clique.size()];
+		for(int i = 0; i < res.length; i++)
+			res[i] = clique.get(i);
+		return res;
+	}
+	
+	public static void writePerm(BufferedWriter out, int[] perm) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for(int x = 0; x < perm.length; x++) {
+			if(x > 0)
+				sb.append(' ');
+			sb.append(perm[x]);
+		}
+		out.write(sb.append(newLine).toString());
+	}
+	
+	
+	public static void printCosets(LazyAGL agl, int k) {
+		int[] row = new int[agl.n];
+		for(int i = 0; i < Math.min(agl.n - 1, k); i++) {
+			System.out.printf(newLine + "Coset %d:" + newLine, i);
+			for(int j = 0; j < agl.n; j++)
+				print(new int[][] {agl.get(i, j, row)});
+		}
+	}
 	
 	public static void printCosets(int[][][] blocks, int k) {
 		for(int i = 0; i < Math.min(blocks.length, k); i++) {
@@ -123,35 +376,35 @@ public class FiniteField {
 		return res;
 	}
 	
-	public static int[][] multTable(int prime, int pow, Polynomial irr, List<Polynomial> arr) {
-		Polynomial.mod = prime;
+	public static int[][] multTable(int prime, int pow, Polynomial irr, List<Polynomial> arr) { // arr.get(i) = x^(i-1) with irr primitive, so exponents add mod n-1
 		int sz = (int)Math.pow(prime, pow);
 		int[][] table = new int[sz][sz];
-		for(int a = 0; a < sz; a++)
-			for(int b = 0; b < sz; b++) {
-				Polynomial result = arr.get(a).mult(arr.get(b)).divide(irr)[1];
-				for(int i = 0; i < arr.size(); i++)
-					if(arr.get(i).equals(result)) {
-						table[a][b] = i;
-						break;
-					}
-			}
+		for(int a = 1; a < sz; a++)
+			for(int b = 1; b < sz; b++)
+				table[a][b] = 1 + (a - 1 + b - 1) % (sz - 1);
 		return table;
 	}
 	
-	public static int[][] addTable(int prime, int pow, List<Polynomial> arr) {
-		Polynomial.mod = prime;
+	public static int[][] addTable(int prime, int pow, List<Polynomial> arr) { // elements are found by their coefficients read as a base-prime number instead of by searching arr
 		int sz = (int) Math.pow(prime, pow);
+		int[][] digits = new int[sz][pow];
+		int[] index = new int[sz];
+		for(int i = 0; i < sz; i++) {
+			Polynomial poly = arr.get(i);
+			int code = 0;
+			for(int j = pow - 1; j >= 0; j--) {
+				digits[i][j] = j < poly.coef.length ? poly.coef[j] : 0;
+				code = code * prime + digits[i][j];
+			}
+			index[code] = i;
+		}
 		int[][] table = new int[sz][sz];
 		for(int a = 0; a < sz; a++)
 			for(int b = 0; b < sz; b++) {
-				Polynomial result = arr.get(a).add(arr.get(b));
-				for(int i = 0; i < arr.size(); i++) {
-					if(arr.get(i).equals(result)) {
-						table[a][b] = i;
-						break;
-					}
-				}
+				int code = 0;
+				for(int j = pow - 1; j >= 0; j--)
+					code = code * prime + (digits[a][j] + digits[b][j]) % prime;
+				table[a][b] = index[code];
 			}
 		return table;
 	}
@@ -231,6 +484,68 @@ public class FiniteField {
 	}
 }
 
+class LazyAGL { // AGL(1,q) over the field tables, each a*x+b computed when asked for instead of stored
+	final int n;
+	final int[][] add;
+	final int[][] mult;
+	final int[][] sub; // sub[u][v] = u - v
+	final int[] inverse;
+	
+	public LazyAGL(int[][][] tables) {
+		add = tables[0];
+		mult = tables[1];
+		n = add.length;
+		int[] negative = new int[n];
+		inverse = new int[n];
+		for(int u = 0; u < n; u++)
+			for(int v = 0; v < n; v++) {
+				if(add[u][v] == 0)
+					negative[u] = v;
+				if(mult[u][v] == 1)
+					inverse[u] = v;
+			}
+		sub = new int[n][n];
+		for(int u = 0; u < n; u++)
+			for(int v = 0; v < n; v++)
+				sub[u][v] = add[u][negative[v]];
+	}
+	
+	public int[] get(int coset, int row, int[] res) { // AGLCosets(p,r)[coset][row], i.e. a = coset+1, b = row
+		for(int x = 0; x < n; x++)
+			res[x] = add[mult[coset+1][x]][row];
+		return res;
+	}
+	
+	public int[] apply(int a, int b, int[] perm, int[] res) { // a*perm(x)+b, member (a, b) of perm's coset
+		for(int x = 0; x < n; x++)
+			res[x] = add[mult[a][perm[x]]][b];
+		return res;
+	}
+	
+	public int[] canonical(int[] perm) { // the member of perm's coset that maps 0 to 0 and 1 to 1
+		int a = inverse[sub[perm[1]][perm[0]]];
+		return apply(a, sub[0][mult[a][perm[0]]], perm, new int[n]);
+	}
+	
+	public int maxAgreement(int[] s, int[] t, int[] counts, int limit) { // most positions s shares with one member a*t(x)+b of t's coset, stopping once limit is reached
+		Arrays.fill(counts, 0);
+		int best = 0;
+		for(int x = 0; x < n; x++) {
+			int[] subRow = sub[s[x]];
+			int[] multRow = mult[t[x]];
+			for(int a = 1; a < n; a++) { // s(x) = a*t(x) + b for exactly one b
+				int c = ++counts[a * n + subRow[multRow[a]]];
+				if(c > best) {
+					best = c;
+					if(best >= limit)
+						return best;
+				}
+			}
+		}
+		return best;
+	}
+}
+
 class Polynomial {
 	static int mod = 0;
 	int[] coef;
@@ -345,6 +660,27 @@ class Polynomial {
 		return false;
 	}
 	
+	public static Polynomial parse(String input) { // inverse of toString, e.g. "x^6 + 2x^2 + x + 1"
+		String[] terms = input.trim().split(" \\+ ");
+		int[] exponents = new int[terms.length];
+		int[] values = new int[terms.length];
+		int degree = 0;
+		for(int t = 0; t < terms.length; t++) {
+			int x = terms[t].indexOf('x');
+			if(x < 0)
+				values[t] = Integer.parseInt(terms[t]);
+			else {
+				values[t] = x == 0 ? 1 : Integer.parseInt(terms[t].substring(0, x));
+				exponents[t] = x + 1 == terms[t].length() ? 1 : Integer.parseInt(terms[t].substring(x + 2));
+			}
+			degree = Math.max(degree, exponents[t]);
+		}
+		int[] coef = new int[degree + 1];
+		for(int t = 0; t < terms.length; t++)
+			coef[exponents[t]] = values[t];
+		return new Polynomial(coef);
+	}
+	
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		if(deg == -1)
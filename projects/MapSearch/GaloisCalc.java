@@ -1,6 +1,10 @@
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -14,19 +18,37 @@ public class GaloisCalc
 	 * @param args
 	 *            args[0] - Prime args[1] - Power args[2] - Primitive Polynomial
 	 *            in the form ax^b+cx^d+...+ex^1+f
+	 *            -batch file - read commands from file ("-" for stdin) until
+	 *            its end, results buffered to stdout, setup info to stderr;
+	 *            each command answers with exactly one line ("any" when every
+	 *            element solves it, "error: ..." when it fails)
 	 */
-	public static void main(String[] args)
+	public static void main(String[] args) throws Exception
 	{
 		//args = new String[] { "3", "4", "x^4+2x^3+2" };
 
+		String batchFile = null;
+		ArrayList<String> argList = new ArrayList<>(Arrays.asList(args));
+		int batchIndex = argList.indexOf("-batch");
+		if (batchIndex >= 0 && batchIndex + 1 < argList.size())
+		{
+			batchFile = argList.remove(batchIndex + 1);
+			argList.remove(batchIndex);
+			args = argList.toArray(new String[0]);
+		}
+
 		if (args.length != 3 && args.length != 2)
 		{
 			System.out.println("Incorrect usage.");
-			System.out.println("java GaloisCalc <prime> <power> [primitivePolynomial]");
+			System.out.println("java GaloisCalc <prime> <power> [primitivePolynomial] [-batch <file|->]");
 			System.out.println("Primitive Polynomial of the form ax^b+cx^d+...+ex^1+f");
 			return;
 		}
 
+		boolean batch = batchFile != null;
+		if (batch)
+			System.setOut(System.err); // keeps the results on stdout clean
+
 		int prime = Integer.parseInt(args[0]);
 		int power = Integer.parseInt(args[1]);
 
@@ -67,7 +89,7 @@ public class GaloisCalc
 					else
 						value = Integer.parseInt(parts[0]);
 
-					if (poly.size() >= arrayIndex)
+					if (poly.size() > arrayIndex)
 						poly.set(arrayIndex, value);
 					else
 					{
@@ -91,14 +113,26 @@ public class GaloisCalc
 
 		System.out.println("Took: " + (endT - startT) + "ms");
 
-		Scanner scanner = new Scanner(System.in);
+		Scanner scanner;
+		if (batch)
+		{
+			System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false));
+			scanner = batchFile.equals("-") ? new Scanner(System.in) : new Scanner(new File(batchFile));
+		}
+		else
+			scanner = new Scanner(System.in);
 
 		String lastLine = "";
 
 		while (true)
 		{
+			if (batch && !scanner.hasNextLine())
+				break;
 			String lineIn = scanner.nextLine();
 
+			if (batch && (lineIn.trim().isEmpty() || lineIn.startsWith("#")))
+				continue;
+
 			if (lineIn.equals(""))
 				lineIn = lastLine;
 			else
@@ -108,7 +142,17 @@ public class GaloisCalc
 			{
 				if (lineIn.equals("exit"))
 					break;
-				if (lineIn.contains("+"))
+				if (lineIn.startsWith("log")) // before the operators, so "exp -1" is not read as a subtraction
+				{
+					int a = Integer.parseInt(lineIn.substring(3).trim());
+					System.out.println(GF.logTable[a]);
+				}
+				else if (lineIn.startsWith("exp"))
+				{
+					int k = Integer.parseInt(lineIn.substring(3).trim());
+					System.out.println(GF.expTable[Math.floorMod(k, GF.n - 1)]);
+				}
+				else if (lineIn.contains("+"))
 				{
 					String[] parts = lineIn.split("\\+");
 
@@ -161,14 +205,7 @@ public class GaloisCalc
 					{
 						int a = Integer.parseInt(parts[0].trim());
 						int b = Integer.parseInt(parts[1].trim());
-
-						for (int i = 0; i < GF.n; i++)
-						{
-							if (GFAdd(b, i) == a)
-							{
-								System.out.println(i);
-							}
-						}
+						System.out.println(GFSub(a, b));
 					}
 				}
 				else if (lineIn.contains("*"))
@@ -237,12 +274,10 @@ public class GaloisCalc
 							int b = divisor[0];
 
 							int mul = 1;
-							for (int i = 0; i < GF.n; i++)
-								if (a == GFMul(b, i))
-								{
-									mul = i;
-									break;
-								}
+							if (b != 0)
+								mul = GFDiv(a, b);
+							else if (a == 0)
+								mul = 0;
 
 							// System.out.println(a + " * " + mul + " = " + b);
 
@@ -263,21 +298,31 @@ public class GaloisCalc
 
 						}
 
-						System.out.println(Arrays.toString(out));
-						System.out.println("R: " + Arrays.toString(dividen));
+						if (batch)
+							System.out.println(Arrays.toString(out) + " R: " + Arrays.toString(dividen));
+						else
+						{
+							System.out.println(Arrays.toString(out));
+							System.out.println("R: " + Arrays.toString(dividen));
+						}
 					}
 					else
 					{
 						int a = Integer.parseInt(parts[0].trim());
 						int b = Integer.parseInt(parts[1].trim());
 
-						for (int i = 0; i < GF.n; i++)
+						if (b != 0)
+							System.out.println(GFDiv(a, b));
+						else if (a != 0)
 						{
-							if (GFMul(b, i) == a)
-							{
-								System.out.println(i);
-							}
+							if (batch)
+								System.out.println("error: division by zero");
 						}
+						else if (batch) // 0 / 0: every element
+							System.out.println("any");
+						else
+							for (int i = 0; i < GF.n; i++)
+								System.out.println(i);
 					}
 				}
 				else if (lineIn.contains("sa"))
@@ -286,13 +331,7 @@ public class GaloisCalc
 					int a = Integer.parseInt(parts[0].trim());
 					int b = Integer.parseInt(parts[1].trim());
 
-					for (int i = 0; i < GF.n; i++)
-					{
-						if (GFAdd(a, i) == b)
-						{
-							System.out.println(a + " + " + i + " = " + b);
-						}
-					}
+					System.out.println(a + " + " + GFSub(b, a) + " = " + b);
 				}
 				else if (lineIn.contains("sm"))
 				{
@@ -300,13 +339,18 @@ public class GaloisCalc
 					int a = Integer.parseInt(parts[0].trim());
 					int b = Integer.parseInt(parts[1].trim());
 
-					for (int i = 0; i < GF.n; i++)
+					if (a != 0)
+						System.out.println(a + " * " + GFDiv(b, a) + " = " + b);
+					else if (b != 0)
 					{
-						if (GFMul(a, i) == b)
-						{
-							System.out.println(a + " * " + i + " = " + b);
-						}
+						if (batch)
+							System.out.println("error: no solution to 0 * x = " + b);
 					}
+					else if (batch) // 0 * x = 0: every element
+						System.out.println("any");
+					else
+						for (int i = 0; i < GF.n; i++)
+							System.out.println(a + " * " + i + " = " + b);
 				}
 				else if (lineIn.contains("orbitAdd"))
 				{
@@ -317,16 +361,20 @@ public class GaloisCalc
 					int cur = start;
 
 					int size = 0;
+					StringBuilder orbit = new StringBuilder(); // batch mode prints the orbit on one line
 
 					do
 					{
 						size++;
-						System.out.println(cur);
+						if (batch)
+							orbit.append(cur).append(' ');
+						else
+							System.out.println(cur);
 						cur = GFAdd(cur, add);
 					}
 					while (cur != start);
 
-					System.out.println("Found orbit of size " + size);
+					System.out.println(orbit + "Found orbit of size " + size);
 				}
 				else if (lineIn.contains("orbitMul"))
 				{
@@ -337,17 +385,23 @@ public class GaloisCalc
 					int cur = start;
 
 					int size = 0;
+					StringBuilder orbit = new StringBuilder();
 
 					do
 					{
 						size++;
-						System.out.println(cur);
+						if (batch)
+							orbit.append(cur).append(' ');
+						else
+							System.out.println(cur);
 						cur = GFMul(cur, mul);
 					}
 					while (cur != start);
 
-					System.out.println("Found orbit of size " + size);
+					System.out.println(orbit + "Found orbit of size " + size);
 				}
+				else if (batch && (lineIn.contains("atable") || lineIn.contains("test")))
+					System.out.println("error: " + lineIn.trim() + " is not available with -batch");
 				else if (lineIn.contains("atable"))
 				{
 					System.out.print(" \t");
@@ -445,14 +499,19 @@ public class GaloisCalc
 						System.out.println(lineIn + " Hit/Attempt: " + hit + "/" + attempt + " - dupe: " + dupe);
 					}
 				}
+				else if (batch)
+					System.out.println("error: unknown command " + lineIn);
 			}
 			catch (Exception e)
 			{
+				if (batch) // every command answers on stdout, so results stay in step with the input
+					System.out.println("error: " + e);
 				e.printStackTrace();
 			}
 		}
 
 		scanner.close();
+		System.out.flush();
 	}
 
 	static int GFAdd(int a, int b)
@@ -462,15 +521,7 @@ public class GaloisCalc
 
 	static int GFSub(int a, int b)
 	{
-		for (int i = 0; i < GF.n; i++)
-		{
-			if (GFAdd(b, i) == a)
-			{
-				return i;
-			}
-		}
-
-		throw new RuntimeException("Error: No valid subtraction");
+		return GFAdd(a, GF.negTable[b]);
 	}
 
 	static int GFMul(int a, int b)
@@ -478,6 +529,13 @@ public class GaloisCalc
 		return GF.mulTable[a + b * GF.n];
 	}
 
+	static int GFDiv(int a, int b)
+	{
+		if (b == 0)
+			throw new RuntimeException("Error: Division by zero");
+		return GFMul(a, GF.invTable[b]);
+	}
+
 	static int[] GFAdd(int a[], int b[])
 	{
 		int[] res = new int[Math.max(a.length, b.length)];
@@ -581,6 +639,10 @@ class GF
 
 	public static int[] addTable;
 	public static int[] mulTable;
+	public static int[] negTable; // a + negTable[a] = 0
+	public static int[] invTable; // a * invTable[a] = 1, -1 for 0
+	public static int[] expTable; // expTable[k] = x^k
+	public static int[] logTable; // expTable[logTable[a]] = a, -1 for 0
 
 	public static Polynomial irr;
 
@@ -603,10 +665,21 @@ class GF
 		List<Polynomial> arr = genPolynomials(prime, power, irr);
 		endT = System.currentTimeMillis();
 		System.out.println("Found polys (" + (endT - startT) + "ms)");
+		boolean[] seen = new boolean[n];
+		for (Polynomial p : arr)
+		{
+			if (seen[code(prime, p)]) // x^k repeats before x^(n-1), the tables would not be a field
+			{
+				System.out.println(irr + " is not a primitive polynomial.");
+				System.exit(1);
+			}
+			seen[code(prime, p)] = true;
+		}
 
 		startT = System.currentTimeMillis();
 		addTable = addTable(prime, power, arr);
 		mulTable = multTable(prime, power, irr, arr);
+		fillInverseTables();
 		endT = System.currentTimeMillis();
 		System.out.println("Found tables (" + (endT - startT) + "ms)");
 
@@ -653,7 +726,8 @@ class GF
 		arr.add(zero);
 		do
 		{
-			arr.add(base.divide(irr)[1]);
+			base = base.divide(irr)[1]; // kept reduced, so each step divides a degree <= power polynomial
+			arr.add(base);
 			base = base.mult(x);
 		}
 		while (arr.size() < n);
@@ -678,20 +752,11 @@ class GF
 
 	public static int[] multTable(int prime, int pow, Polynomial irr, List<Polynomial> arr)
 	{
-		Polynomial.mod = prime;
 		int sz = (int) Math.pow(prime, pow);
 		int[] table = new int[sz * sz];
-		for (int a = 0; a < sz; a++)
-			for (int b = 0; b < sz; b++)
-			{
-				Polynomial result = arr.get(a).mult(arr.get(b)).divide(irr)[1];
-				for (int i = 0; i < arr.size(); i++)
-					if (arr.get(i).equals(result))
-					{
-						table[a + b * n] = i;
-						break;
-					}
-			}
+		for (int a = 1; a < sz; a++) // arr.get(i) = x^(i-1) with irr primitive, so exponents add mod sz-1
+			for (int b = 1; b < sz; b++)
+				table[a + b * n] = 1 + (a - 1 + b - 1) % (sz - 1);
 		return table;
 	}
 
@@ -699,22 +764,49 @@ class GF
 	{
 		Polynomial.mod = prime;
 		int sz = (int) Math.pow(prime, pow);
+		int[] index = polyIndex(prime, arr);
 		int[] table = new int[sz * sz];
 		for (int a = 0; a < sz; a++)
 			for (int b = 0; b < sz; b++)
-			{
-				Polynomial result = arr.get(a).add(arr.get(b));
-				for (int i = 0; i < arr.size(); i++)
-				{
-					if (arr.get(i).equals(result))
-					{
-						table[a + b * sz] = i;
-						break;
-					}
-				}
-			}
+				table[a + b * sz] = index[code(prime, arr.get(a).add(arr.get(b)))];
 		return table;
 	}
+
+	static int[] polyIndex(int prime, List<Polynomial> arr) // element of each reduced polynomial, by code
+	{
+		int[] index = new int[n];
+		for (int i = 0; i < arr.size(); i++)
+			index[code(prime, arr.get(i))] = i;
+		return index;
+	}
+
+	static int code(int prime, Polynomial p) // coefficients read as a base-prime number
+	{
+		int code = 0;
+		for (int j = p.coef.length - 1; j >= 0; j--)
+			code = code * prime + p.coef[j];
+		return code;
+	}
+
+	static void fillInverseTables() // element i >= 1 is x^(i-1), so logs and inverses follow from the index
+	{
+		negTable = new int[n];
+		for (int a = 0; a < n; a++)
+			for (int b = 0; b < n; b++)
+				if (addTable[a + b * n] == 0)
+					negTable[a] = b;
+		invTable = new int[n];
+		expTable = new int[n - 1];
+		logTable = new int[n];
+		invTable[0] = -1;
+		logTable[0] = -1;
+		for (int a = 1; a < n; a++)
+		{
+			invTable[a] = 1 + (n - a) % (n - 1);
+			expTable[a - 1] = a;
+			logTable[a] = a - 1;
+		}
+	}
 }
 
 class Polynomial
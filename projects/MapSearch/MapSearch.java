@@ -13,6 +13,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class MapSearch {
     static int prime;
@@ -20,6 +27,7 @@ public class MapSearch {
     static int messageLength;
     static int degree;
     static int[][] powerTable;
+    static int[][][] shiftTable; // shiftTable[b][k] = coefficients of (x+b)^k
     static boolean degModPrime;
     
     static HashMap<Integer, ArrayList<Integer>> indexElements;
@@ -28,10 +36,25 @@ public class MapSearch {
     static int curLockValueIndex;
     
     static boolean resume;
+    static boolean complete; // only keep p with p(x) + x also a permutation
+    static String fileName; // output and save file name without extension
+    static int[] completeMultipliers; // p + x is a permutation for some member of p's FG class exactly when p + ax is one for some a here
+    static int[] seen; // seen[v] == stamp when p(x) = v was hit in the current checkComplete
+    static int[] seenPlus; // same for p(x) + ax
+    static int stamp;
     
     static ArrayList<boolean[]> bitMasks;
     static ArrayList<boolean[]> bitMasksDMP; //additional masks for when Degree % Prime = 0
     
+    static long samples; // draw this many random candidates and estimate the PP count instead of searching
+    static long totalToCheck;
+    static ArrayList<boolean[]> sampleMasks; // every mask in search order, DMP masks last
+    static int mainMasks; // sampleMasks before this index are in the main loop, which does not add x+b maps
+    static long[] sampleMaskEnds; // candidates in [1, 0, ..., 0] and masks 0..i, so a uniform draw picks a mask by size
+    static HashMap<String, Integer> masksByPattern; // how many masks enumerate each coefficient pattern
+    static ConcurrentHashMap<String, Double> sampleWeights; // class size / class members in the space, by member
+    static ConcurrentHashMap<String, Set<String>> sampleClasses; // distinct classes hit, by smallest member
+    
     public static void main(String[] args) throws IOException {
         parseArgs(args);
         //prime = 2;
@@ -42,10 +65,16 @@ public class MapSearch {
         
         long startTime = System.currentTimeMillis();
         powerTable = fillPowerTable();
+        shiftTable = fillShiftTable();
         if(degree % prime == 0)
             degModPrime = true;
         else degModPrime = false;
         resume = checkResume();
+        if(complete) {
+            completeMultipliers = completeMultipliers();
+            seen = new int[GF.n];
+            seenPlus = new int[GF.n];
+        }
         System.out.println(GF.irr+"\n");
         
         ArrayList<ArrayList<Integer>> gOrbits = getGOrbits();
@@ -104,13 +133,19 @@ public class MapSearch {
             }
         }*/
         
+        if(samples > 0) {
+            if(!((degModPrime && prime > 2) || gf64deg10))
+                bitMasksDMP = new ArrayList<>(); // not searched
+            estimate(fileName+"_sample.txt");
+            return;
+        }
         HashSet<String> foundPPs = new HashSet<>();
         long totalToCheck = totalToCheck();
         long lastMinuteStart = System.currentTimeMillis();
         float numMinutes = 0;
         long count = 1;
         BufferedWriter outFile = null;
-        String outputFile = prime+"_"+power+"_"+"deg"+degree+".txt";
+        String outputFile = fileName+".txt";
         
         //Resume Search Logic
         boolean resumeValuesLoaded = false;
@@ -122,7 +157,7 @@ public class MapSearch {
         float startPercent = 0;
         
         if(resume) { //load variables and open output file for appending
-            String saveFileName = prime+"_"+power+"_"+"deg"+degree+"_save.txt";
+            String saveFileName = fileName+"_save.txt";
             BufferedReader saveReader = new BufferedReader(new FileReader(saveFileName));
             String firstLine = saveReader.readLine();
             if(firstLine.equals("complete")) {
@@ -193,7 +228,7 @@ public class MapSearch {
             int[] zeroPP = new int[messageLength];
             Arrays.fill(zeroPP, 0);
             zeroPP[0] = 1;
-            if(checkPerm(zeroPP)) {
+            if(complete ? checkComplete(zeroPP) : checkPerm(zeroPP)) {
                 foundPPs.add(Arrays.toString(zeroPP));
                 String output = Arrays.toString(zeroPP);
                 outFile.write(output+"\r\n");
@@ -233,11 +268,12 @@ public class MapSearch {
            
             do {
                 count++;
-                if(checkPerm(pp) && !foundPPs.contains(Arrays.toString(pp))) {
+                if((complete ? checkComplete(pp) : checkPerm(pp)) && !foundPPs.contains(Arrays.toString(pp))) {
                     HashMap<String, int[]> fgMaps = getFGMaps(pp);
                     String toWrite = "";
                     for(String key : fgMaps.keySet())
-                        toWrite += key + "\r\n";
+                        if(!complete || isCompleteMapping(fgMaps.get(key)))
+                            toWrite += key + "\r\n";
                     outFile.write(toWrite);
                     outFile.flush();
                     saveProgress(count, mask, pp, false);
@@ -288,7 +324,7 @@ public class MapSearch {
                 
                 do {
                    count++;
-                   if(checkPerm(pp) && !foundPPs.contains(Arrays.toString(pp))) {
+                   if((complete ? checkComplete(pp) : checkPerm(pp)) && !foundPPs.contains(Arrays.toString(pp))) {
                        HashMap<String, int[]> fgMaps = getFGMaps(pp);
                        String toWrite = "";
                        HashMap<String, int[]> fgbMaps = new HashMap<>(); //will store all fg(x+b)Map combinations
@@ -297,7 +333,8 @@ public class MapSearch {
                            fgbMaps.putAll(fofxpbMaps);
                        }
                        for(String key : fgbMaps.keySet())
-                           toWrite += key + "\r\n";
+                           if(!complete || isCompleteMapping(fgbMaps.get(key)))
+                               toWrite += key + "\r\n";
                        outFile.write(toWrite);
                        outFile.flush();
                        saveProgress(count, mask, pp, true);
@@ -544,6 +581,214 @@ public class MapSearch {
         return true;
     }
     
+    public static void estimate(String outputFile) throws IOException { // Monte Carlo PP count from uniform draws over the enumeration space
+        totalToCheck = totalToCheck();
+        sampleMasks = new ArrayList<>(bitMasks);
+        mainMasks = bitMasks.size();
+        sampleMasks.addAll(bitMasksDMP);
+        sampleMaskEnds = new long[sampleMasks.size()];
+        masksByPattern = new HashMap<>();
+        long end = 1; // [1, 0, ..., 0]
+        for(int i=0; i<sampleMasks.size(); i++) {
+            boolean[] mask = sampleMasks.get(i);
+            int lock = getLockIndex(mask);
+            long size = 1;
+            for(int index : listIndexes(mask))
+                size *= index == lock ? indexElements.get(index).size()-1 : GF.n-1;
+            end += size;
+            sampleMaskEnds[i] = end;
+            masksByPattern.merge(Arrays.toString(mask), 1, Integer::sum);
+        }
+        sampleWeights = new ConcurrentHashMap<>();
+        sampleClasses = new ConcurrentHashMap<>();
+        System.out.println("Sampling " + samples + " of " + totalToCheck + " candidates");
+        long startTime = System.currentTimeMillis();
+        int threads = Runtime.getRuntime().availableProcessors();
+        SplittableRandom seeds = new SplittableRandom();
+        ArrayList<Sampler> samplers = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for(int t=0; t<threads; t++) {
+            Sampler sampler = new Sampler(samples / threads + (t < samples % threads ? 1 : 0), seeds.split());
+            samplers.add(sampler);
+            pool.execute(sampler);
+        }
+        pool.shutdown();
+        try {
+            while(!pool.awaitTermination(1, TimeUnit.MINUTES))
+                printEstimate(samplers);
+        } catch (InterruptedException ex) {
+            throw new IOException("Sampling interrupted", ex);
+        }
+        BufferedWriter outFile = new BufferedWriter(new FileWriter(outputFile));
+        outFile.write(GF.irr+"\r\n");
+        long distinct = 0;
+        for(Set<String> members : sampleClasses.values()) {
+            for(String member : members)
+                outFile.write(member+"\r\n");
+            distinct += members.size();
+        }
+        outFile.close();
+        DecimalFormat df = new DecimalFormat("##.##");
+        System.out.println("\nSampling Complete");
+        System.out.println(df.format((float)(System.currentTimeMillis()-startTime)/60000) + " min elapsed");
+        printEstimate(samplers);
+        System.out.println(sampleClasses.size()+" distinct classes hit, "+distinct+" NPPs written to \""+outputFile+"\"");
+    }
+
+    static void printEstimate(ArrayList<Sampler> samplers) { // PP estimate with a 95% normal confidence interval
+        long drawn = 0, hits = 0;
+        double sum = 0, sumSquares = 0;
+        for(Sampler sampler : samplers) {
+            drawn += sampler.drawn;
+            hits += sampler.hits;
+            sum += sampler.sum;
+            sumSquares += sampler.sumSquares;
+        }
+        if(drawn == 0)
+            return;
+        DecimalFormat df = new DecimalFormat("0.###E0");
+        if(hits == 0) { // rule of three, on candidates since the class size of a miss is unknown
+            System.out.println(drawn+" drawn, no hits. 95% upper bound "+df.format(3.0 * totalToCheck / drawn)+" permutation candidates");
+            return;
+        }
+        double mean = sum / drawn;
+        double error = 1.96 * Math.sqrt(Math.max(sumSquares / drawn - mean * mean, 0) / drawn);
+        System.out.println(drawn+" drawn, "+hits+" hits. Estimated "+df.format(mean * totalToCheck)+" NPPs, 95% CI ["
+                + df.format(Math.max(mean - error, 0) * totalToCheck)+", "+df.format((mean + error) * totalToCheck)+"]");
+    }
+
+    static int drawMask(SplittableRandom random) { // index in sampleMasks of a uniform draw, -1 for [1, 0, ..., 0]
+        long r = random.nextLong(totalToCheck);
+        if(r == 0)
+            return -1;
+        int mask = Arrays.binarySearch(sampleMaskEnds, r + 1);
+        return mask < 0 ? -mask - 1 : mask; // first mask whose end is past r
+    }
+
+    static int[] drawCandidate(int maskIndex, SplittableRandom random) {
+        int[] pp = new int[messageLength];
+        pp[0] = 1;
+        if(maskIndex < 0)
+            return pp;
+        boolean[] mask = sampleMasks.get(maskIndex);
+        int lock = getLockIndex(mask);
+        for(int index : listIndexes(mask)) {
+            if(index == lock) { // one of the minimum FG-Map values, skipping value 0
+                ArrayList<Integer> values = indexElements.get(index);
+                pp[index] = values.get(1 + random.nextInt(values.size()-1));
+            }
+            else
+                pp[index] = 1 + random.nextInt(GF.n-1);
+        }
+        return pp;
+    }
+
+    static double sampleWeight(int[] pp, boolean dmp) { // NPPs the class of pp adds to the output, spread over its members the search can draw
+        String key = Arrays.toString(pp);
+        Double weight = sampleWeights.get(key);
+        if(weight != null)
+            return weight;
+        HashMap<String, int[]> fgMaps = getFGMaps(pp);
+        if(dmp) { // the DMP loop records the f(x+b) maps as well
+            HashMap<String, int[]> fgbMaps = new HashMap<>();
+            for(int[] curPP : fgMaps.values())
+                fgbMaps.putAll(getFofXPlusBMaps(curPP));
+            fgMaps = fgbMaps;
+        }
+        int drawable = 0;
+        for(int[] member : fgMaps.values())
+            drawable += timesInSearchSpace(member);
+        weight = (double) fgMaps.size() / Math.max(drawable, 1);
+        for(String member : fgMaps.keySet())
+            sampleWeights.put(member, weight);
+        sampleClasses.putIfAbsent(Collections.min(fgMaps.keySet()), fgMaps.keySet());
+        return weight;
+    }
+
+    static int timesInSearchSpace(int[] pp) { // masks that enumerate pp, with their lock values
+        boolean[] pattern = new boolean[pp.length];
+        boolean zero = true;
+        for(int i=1; i<pp.length; i++) {
+            pattern[i] = pp[i] != 0;
+            zero &= !pattern[i];
+        }
+        if(zero)
+            return 1; // [1, 0, ..., 0] is checked on its own
+        Integer masks = masksByPattern.get(Arrays.toString(pattern));
+        if(masks == null)
+            return 0;
+        int lock = getLockIndex(pattern);
+        return indexElements.get(lock).indexOf(pp[lock]) >= 1 ? masks : 0;
+    }
+
+    public static boolean checkComplete(int[] message) { // message(x) and message(x) + ax are permutations, a = 1 in one pass with two collision maps
+        if(completeMultipliers.length > 1) // several a to try, only pay for them once message(x) is a permutation
+            return checkPerm(message) && hasCompleteMultiplier(message);
+        if(++stamp == 0) { // stamp wrapped, old marks could collide
+            Arrays.fill(seen, 0);
+            Arrays.fill(seenPlus, 0);
+            stamp = 1;
+        }
+        for(int x=0; x<GF.n; x++) {
+            int value = evaluateX(x, message);
+            int plusX = add(value, x);
+            if(seen[value] == stamp || seenPlus[plusX] == stamp)
+                return false;
+            seen[value] = stamp;
+            seenPlus[plusX] = stamp;
+        }
+        return true;
+    }
+
+    public static boolean hasCompleteMultiplier(int[] message) { // message(x) + ax is a permutation for some a in completeMultipliers
+        int[] values = new int[GF.n];
+        for(int x=0; x<GF.n; x++)
+            values[x] = evaluateX(x, message);
+        for(int a : completeMultipliers)
+            if(checkPlusPerm(values, a))
+                return true;
+        return false;
+    }
+
+    public static boolean isCompleteMapping(int[] message) { // message(x) + x is a permutation
+        int[] values = new int[GF.n];
+        for(int x=0; x<GF.n; x++)
+            values[x] = evaluateX(x, message);
+        return checkPlusPerm(values, 1);
+    }
+
+    public static boolean checkPlusPerm(int[] values, int a) { // values[x] + ax hits every element once
+        if(++stamp == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(seenPlus, 0);
+            stamp = 1;
+        }
+        for(int x=0; x<GF.n; x++) {
+            int plusX = add(values[x], mult(a, x));
+            if(seenPlus[plusX] == stamp)
+                return false;
+            seenPlus[plusX] = stamp;
+        }
+        return true;
+    }
+
+    public static int evaluateX(int x, int[] message) { // message(x)
+        int sum = 0;
+        for(int y=0; y<messageLength; y++) {
+            if(message[y] != 0)
+                sum = add(sum, mult(power(x, degree-y), message[y]));
+        }
+        return sum;
+    }
+
+    public static int[] completeMultipliers() { // fMap sends p to a^d p(x/a), which is complete exactly when p + a^(1-d) x is a permutation
+        int step = Math.floorMod(1 - degree, GF.n - 1); // a^(1-d) for a = alpha is alpha^step
+        TreeSet<Integer> multipliers = new TreeSet<>();
+        for(int j=0; j<GF.n-1; j++)
+            multipliers.add(1 + (int)((long)j * step % (GF.n - 1))); // element i is alpha^(i-1)
+        return multipliers.stream().mapToInt(i->i).toArray();
+    }
+
 //    static boolean incrementPoly(int[] poly) {
 //        int curIndex = messageLength-2;
 //        while(incrementIndex(poly, curIndex) && curIndex >=2) {
@@ -663,28 +908,34 @@ public class MapSearch {
         return result;
     }
     
+    public static int[][][] fillShiftTable() { // shift[b][k][j] = coefficient of x^j in (x+b)^k
+        int[][][] shifts = new int[GF.n][degree+1][];
+        for(int b = 0; b < GF.n; b++) {
+            shifts[b][0] = new int[] {1};
+            for(int k = 1; k <= degree; k++) {
+                int[] prev = shifts[b][k-1];
+                int[] cur = new int[k+1];
+                cur[k] = 1;
+                for(int j = 0; j < k; j++) // (x+b)^k = x*(x+b)^(k-1) + b*(x+b)^(k-1)
+                    cur[j] = add(j == 0 ? 0 : prev[j-1], mult(b, prev[j]));
+                shifts[b][k] = cur;
+            }
+        }
+        return shifts;
+    }
+
     public static int[] fOfXPlusBNormal(int[] p, int b) { //same as f(x+b) but normalizes result by zeroing out constant term
-        int[] result = {p[p.length-1]}; //start with result as constant of p
-        for(int i=p.length-2; i>=0; i--) {
-            int[] binomial = {1, b}; //(x+b)
-            int[] poly = binomialToPower(binomial, b, p.length-1-i); //(x+b)^p.length-1-i
-            int[] timesCoef = multA(poly, p[i]); // a*(x+b)^p.length-1-i
-            result = addPoly(timesCoef, result);
+        int[] result = new int[p.length];
+        for(int i=0; i<p.length; i++) {
+            if(p[i] != 0) {
+                int[] binomial = shiftTable[b][degree-i]; // (x+b)^(degree-i), lowest term first
+                for(int j=0; j<binomial.length; j++)
+                    result[degree-j] = add(result[degree-j], mult(p[i], binomial[j]));
+            }
         }
         result[result.length-1]=0; //normalize result (+c to 0 out constant term)
         return result;
     }
-
-    public static int[] binomialToPower(int[] p1, int b, int n) { //p1 = (x+b), return (x+b)^n
-        if(n == 1)
-            return p1;
-        else {
-            int[] timesX = multX(p1);
-            int[] timesB = multA(p1, b);
-            int[] result = addPoly(timesX, timesB);
-            return binomialToPower(result, b, n-1);
-        }
-    }    
     
         public static int[] multX(int[] p) { //multiply polynomial p by x
         int[] px = new int[p.length+1];
@@ -727,25 +978,37 @@ public class MapSearch {
     }
     
     public static void parseArgs(String[] args) {
-        if(args.length != 3) {
-            System.out.println("Usage: java MapSearch <prime> <power> <degree>");
+        complete = Arrays.asList(args).contains("-complete");
+        args = Arrays.stream(args).filter(arg -> !arg.equals("-complete")).toArray(String[]::new);
+        int sampleArg = Arrays.asList(args).indexOf("-sample");
+        if(sampleArg >= 0 && sampleArg+1 < args.length) {
+            samples = Long.parseLong(args[sampleArg+1]);
+            ArrayList<String> rest = new ArrayList<>(Arrays.asList(args));
+            rest.subList(sampleArg, sampleArg+2).clear();
+            args = rest.toArray(new String[0]);
+        }
+        if(args.length != 3 || (complete && samples > 0)) {
+            System.out.println("Usage: java MapSearch <prime> <power> <degree> [-complete | -sample n]");
+            System.out.println("     -complete  only permutations p with p(x) + x also a permutation");
+            System.out.println("     -sample n  estimate the PP count from n random candidates, on all cores");
             System.exit(0);
         }
         prime = Integer.parseInt(args[0]);
         power = Integer.parseInt(args[1]);
         degree = Integer.parseInt(args[2]);
         messageLength = degree+1;
+        fileName = prime+"_"+power+"_"+"deg"+degree + (complete ? "_complete" : "");
         GF.initGF(prime, power); 
     }
     
     public static boolean checkResume() {
-        String saveFile = prime+"_"+power+"_"+"deg"+degree+"_save.txt";
+        String saveFile = fileName+"_save.txt";
         File testFile = new File(saveFile);
         return testFile.exists();
     }
 
     public static void saveProgress(long curCount, boolean[] curMask, int[] curPP, boolean skipToDMPLoop) throws IOException {
-        String saveFileName = prime+"_"+power+"_"+"deg"+degree+"_save.txt";
+        String saveFileName = fileName+"_save.txt";
         BufferedWriter saveFile = null;
         try {
             saveFile = new BufferedWriter(new FileWriter(saveFileName));
@@ -762,7 +1025,7 @@ public class MapSearch {
     }
     
     public static void saveProgressComplete() throws IOException {
-        String saveFileName = prime+"_"+power+"_"+"deg"+degree+"_save.txt";
+        String saveFileName = fileName+"_save.txt";
         BufferedWriter saveFile = null;
         try {
             saveFile = new BufferedWriter(new FileWriter(saveFileName));
@@ -798,8 +1061,18 @@ public class MapSearch {
         return pp;
     }
 
+    static Set<String> foundClass(int[] pp) { // every member the search would record along with pp
+        HashMap<String, int[]> fgMaps = getFGMaps(pp);
+        if(!degModPrime)
+            return fgMaps.keySet();
+        HashSet<String> members = new HashSet<>(fgMaps.keySet());
+        for(int[] curPP : fgMaps.values())
+            members.addAll(getFofXPlusBMaps(curPP).keySet());
+        return members;
+    }
+
     public static HashSet<String> readPPFile() {
-        String fileName = prime+"_"+power+"_"+"deg"+degree+".txt";
+        String fileName = MapSearch.fileName+".txt";
         HashSet<String> ppSet = new HashSet<>();
         try {
             BufferedReader ppFile = new BufferedReader(new FileReader(fileName));   
@@ -807,6 +1080,8 @@ public class MapSearch {
             while((currentLine = ppFile.readLine()) != null) { //expected format "[x1, x2, ..., xn]"  
                 if(!currentLine.isEmpty()) { //prevent errors from empty lines
                     ppSet.add(currentLine);
+                    if(complete) // only complete members were written, mark the rest of the class as found too
+                        ppSet.addAll(foundClass(parsePP(currentLine)));
                 }
             }
             ppFile.close();
@@ -819,6 +1094,36 @@ public class MapSearch {
     
 }
 
+class Sampler implements Runnable // draws candidates on one thread and sums their PP weights
+{
+    final long samples;
+    final SplittableRandom random;
+    volatile long drawn;
+    volatile long hits;
+    volatile double sum; // of sampleWeight over the draws, 0 for a miss
+    volatile double sumSquares;
+
+    Sampler(long samples, SplittableRandom random)
+    {
+        this.samples = samples;
+        this.random = random;
+    }
+
+    public void run()
+    {
+        for(long i = 0; i < samples; i++) {
+            int mask = MapSearch.drawMask(random);
+            int[] pp = MapSearch.drawCandidate(mask, random);
+            double weight = MapSearch.checkPerm(pp) ? MapSearch.sampleWeight(pp, mask >= MapSearch.mainMasks) : 0;
+            if(weight > 0)
+                hits++;
+            sum += weight;
+            sumSquares += weight * weight;
+            drawn++;
+        }
+    }
+}
+
 class GF
 {
     static Random rand = new Random(1);
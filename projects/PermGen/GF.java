@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class GF 
+{    
+    static Random rand = new Random(1);
+
+    static int prime = 1;
+    static int power = 1;
+    static int n = 1;
+
+    public static int[] addTable;
+    public static int[] mulTable;
+
+    public static Polynomial irr;
+
+    public static Polynomial initGF(int prime, int power)
+    {
+            Polynomial.mod = prime;
+            return initGF(prime, power, findRandomPrimitive(prime, power));
+    }
+
+    public static Polynomial initGF(int prime, int power, Polynomial irr) // field over a known primitive polynomial, no search
+    {
+            GF.prime = prime;
+            GF.power = power;
+            GF.n = (int) Math.pow(prime, power);
+
+            Polynomial.mod = prime;
+            GF.irr = irr;
+            List<Polynomial> arr = genPolynomials(prime, power, irr);
+
+            addTable = addTable(prime, power, arr);
+            mulTable = multTable(prime, power, irr, arr);
+
+            return irr;
+    }
+
+    public static Polynomial findRandomPrimitive(int prime, int power)
+    {
+            int n = (int) Math.pow(prime, power);
+            int[] temp = new int[n + 1];
+            temp[temp.length - 1] = 1;
+            temp[1] = prime - 1;
+            Polynomial cur = randomPolynomial(prime, power);
+            while (isReducible(cur, prime) || !isPrimitive(cur, n))
+                    cur = randomPolynomial(prime, power);
+            return cur;
+    }
+
+    public static boolean isPrimitive(Polynomial p, int n)
+    {
+            int d = n - 1;
+            if (p.equals(Polynomial.monomial(1)))
+                    return false;
+            for (int x = 2; x <= n - 2; x++)
+                    if (d % x == 0 && Polynomial.monomial(x).divide(p)[1].isOne())
+                            return false;
+            return true;
+    }
+
+    public static Polynomial randomPolynomial(int mod, int deg)
+    {
+            int[] coef = new int[deg + 1];
+            coef[coef.length - 1] = 1;
+            for (int i = 0; i < coef.length - 1; i++)
+                    coef[i] = rand.nextInt(mod);
+            return new Polynomial(coef);
+    }
+
+    public static List<Polynomial> genPolynomials(int prime, int power, Polynomial irr)
+    {
+            int n = (int) Math.pow(prime, power);
+            Polynomial base = Polynomial.monomial(0);
+            Polynomial x = Polynomial.monomial(1);
+            Polynomial zero = Polynomial.zero();
+            List<Polynomial> arr = new ArrayList<Polynomial>();
+            arr.add(zero);
+            do
+            {
+                    base = base.divide(irr)[1]; // kept reduced, so each step divides a degree <= power polynomial
+                    arr.add(base);
+                    base = base.mult(x);
+            }
+            while (arr.size() < n);
+            return arr;
+    }
+
+    public static boolean isReducible(Polynomial p, int mod)
+    {
+            for (int i = 1; i < p.deg; i++)
+            {
+                    int[] coef = new int[(int) Math.pow(mod, i) + 1];
+                    coef[coef.length - 1] = 1;
+                    coef[1] = mod - 1;
+                    Polynomial test = new Polynomial(coef);
+                    if (Polynomial.gcd(p, test).deg > 0)
+                    {
+                            return true;
+                    }
+            }
+            return false;
+    }
+
+    public static int[] multTable(int prime, int pow, Polynomial irr, List<Polynomial> arr) // arr.get(i) = x^(i-1) with irr primitive, so exponents add mod n-1
+    {
+            int sz = (int) Math.pow(prime, pow);
+            int[] table = new int[sz * sz];
+            for (int a = 1; a < sz; a++)
+                    for (int b = 1; b < sz; b++)
+                            table[a + b * sz] = 1 + (a - 1 + b - 1) % (sz - 1);
+            return table;
+    }
+
+    public static int[] addTable(int prime, int pow, List<Polynomial> arr) // elements found by their coefficients read as a base-prime number, not by searching arr
+    {
+            int sz = (int) Math.pow(prime, pow);
+            int[][] digits = new int[sz][pow];
+            int[] index = new int[sz];
+            for (int i = 0; i < sz; i++)
+            {
+                    Polynomial poly = arr.get(i);
+                    int code = 0;
+                    for (int j = pow - 1; j >= 0; j--)
+                    {
+                            digits[i][j] = j < poly.coef.length ? poly.coef[j] : 0;
+                            code = code * prime + digits[i][j];
+                    }
+                    index[code] = i;
+            }
+            int[] table = new int[sz * sz];
+            for (int a = 0; a < sz; a++)
+                    for (int b = 0; b < sz; b++)
+                    {
+                            int code = 0;
+                            for (int j = pow - 1; j >= 0; j--)
+                                    code = code * prime + (digits[a][j] + digits[b][j]) % prime;
+                            table[a + b * sz] = index[code];
+                    }
+            return table;
+    }
+}
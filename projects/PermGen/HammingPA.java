@@ -0,0 +1,340 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class HammingPA {
+    // Parameter Variables
+    static String inputFileName;
+    static int distance; // minimum Hamming distance between codewords
+    static boolean onlyNormPerms;
+    static int restarts; // random-order runs, 0 = one greedy pass in input order
+    static long seed;
+    static int threads;
+
+    // Program Variables
+    static int n; // symbols per permutation
+    static PermSource source;
+    static String outputFileName;
+
+    public static void main(String[] args) {
+        parseArgs(args);
+        System.out.println(source.size() + " candidate permutations of length " + n + ", minimum distance " + distance + "\n");
+        long startTime = System.currentTimeMillis();
+        PermArray best = null;
+        if(restarts == 0)
+            best = build(source, null);
+        else {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            ArrayList<Future<PermArray>> runs = new ArrayList<Future<PermArray>>();
+            SplittableRandom seeds = new SplittableRandom(seed);
+            for(int r=0; r<restarts; r++) {
+                final PermSource copy = source.copy();
+                final SplittableRandom random = seeds.split();
+                runs.add(pool.submit(() -> build(copy, random)));
+            }
+            try {
+                for(int r=0; r<restarts; r++) {
+                    PermArray pa = runs.get(r).get();
+                    System.out.println("restart " + r + ": " + pa.size + " codewords");
+                    if(best == null || pa.size > best.size) // ties keep the earliest restart, so a seed reproduces its result
+                        best = pa;
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                System.out.println("Restart failed.");
+                ex.printStackTrace();
+                System.exit(0);
+            }
+            pool.shutdown();
+        }
+        System.out.println("\nTime: " + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+
+        try {
+            BufferedWriter outFile = new BufferedWriter(new FileWriter(outputFileName));
+            StringBuilder line = new StringBuilder();
+            for(int[] codeword : best.codewords) {
+                line.setLength(0);
+                for(int x=0; x<n; x++) {
+                    if(x > 0)
+                        line.append(' ');
+                    line.append(codeword[x]);
+                }
+                outFile.write(line.append("\r\n").toString());
+            }
+            outFile.close();
+        } catch (IOException ex) {
+            System.out.println("Output file error. " + outputFileName);
+            ex.printStackTrace();
+        }
+        System.out.println(best.size + " codewords at distance >= " + distance + " written to \"" + outputFileName + "\"");
+    }
+
+    public static PermArray build(PermSource source, SplittableRandom random) { // greedy: keep each candidate at distance >= d from everything kept so far
+        PermArray pa = new PermArray(n, distance);
+        int[] perm = new int[n];
+        long size = source.size();
+        int[] order = null; // random visiting order, null = input order
+        if(random != null) {
+            order = new int[(int) size];
+            for(int i=0; i<order.length; i++) { // Fisher-Yates, filled as it goes
+                int j = random.nextInt(i + 1);
+                order[i] = order[j];
+                order[j] = i;
+            }
+        }
+        for(long i=0; i<size; i++) {
+            source.get(order == null ? i : order[(int) i], perm);
+            if(pa.fits(perm))
+                pa.add(perm);
+        }
+        return pa;
+    }
+
+    public static void printUsage() {
+        System.out.println("Usage: java HammingPA <inputfile> <d> -options");
+        System.out.println("<inputfile> is a MapSearch/FracSearch output file, expanded in-process as PermGen would,");
+        System.out.println("            or a PermGen -bin file \"<name>_perms.bin\"");
+        System.out.println("options:");
+        System.out.println("     -norm       candidates are only the normalized PPs/PRFs (MapSearch/FracSearch input)");
+        System.out.println("     -random r   r greedy runs over random candidate orders, keeping the largest array");
+        System.out.println("     -seed s     seed of the random orders");
+        System.out.println("     -t n        number of worker threads for -random (default: all cores)");
+    }
+
+    public static void parseArgs(String[] args) {
+        if(args.length < 2) {
+            printUsage();
+            System.exit(0);
+        }
+        inputFileName = args[0];
+        distance = Integer.parseInt(args[1]);
+        onlyNormPerms = false;
+        restarts = 0;
+        seed = System.nanoTime();
+        threads = Runtime.getRuntime().availableProcessors();
+        for(int i=2; i<args.length; i++) {
+            if(args[i].equals("-norm"))
+                onlyNormPerms = true;
+            else if(args[i].equals("-random") && i+1 < args.length)
+                restarts = Math.max(1, Integer.parseInt(args[++i]));
+            else if(args[i].equals("-seed") && i+1 < args.length)
+                seed = Long.parseLong(args[++i]);
+            else if(args[i].equals("-t") && i+1 < args.length)
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            else {
+                System.out.println(args[i] + " is an unrecognized option.");
+                printUsage();
+                System.exit(0);
+            }
+        }
+
+        if(inputFileName.endsWith("_perms.bin")) {
+            if(onlyNormPerms) {
+                System.out.println("-norm only applies to MapSearch/FracSearch input files.");
+                System.exit(0);
+            }
+            String name = inputFileName.replace("_perms.bin", "");
+            String[] params = name.startsWith("frac_") ? name.replace("frac_", "").split("_") : name.replace("deg", "").split("_");
+            n = (int) Math.round(Math.pow(Integer.parseInt(params[0]), Integer.parseInt(params[1])));
+            try {
+                source = new BinSource(inputFileName, n);
+            } catch (IOException ex) {
+                System.out.println("Error reading permutation file \"" + inputFileName + "\", or file not found.");
+                System.exit(0);
+            }
+            outputFileName = name + "_pa_d" + distance + ".txt";
+        }
+        else {
+            PermGen.load(inputFileName, onlyNormPerms);
+            n = GF.n;
+            source = new ExpansionSource();
+            outputFileName = inputFileName.replace(".txt", "") + "_pa_d" + distance + ".txt";
+        }
+        if(distance < 2 || distance > n) {
+            System.out.println("d must be between 2 and " + n + ".");
+            System.exit(0);
+        }
+        if(restarts > 0 && source.size() > Integer.MAX_VALUE - 8) {
+            System.out.println("Too many candidates for -random (" + source.size() + ").");
+            System.exit(0);
+        }
+    }
+}
+
+class PermArray // accepted codewords, with bitsets block[x*n+v] marking the codewords of each block of 64 that hold v at position x
+{
+    final int n;
+    final int threshold; // agreements that put two permutations closer than d, n-d+1
+    final int planes; // bits per sliced agreement counter
+    final long[] counter; // counter[p] = bit p of all 64 agreement counts of the block being checked
+    final ArrayList<int[]> codewords = new ArrayList<int[]>();
+    long[][] blocks = new long[16][];
+    int size;
+    int lastConflict; // block that rejected the previous candidate, checked first since neighbouring candidates tend to clash with the same codewords
+
+    PermArray(int n, int distance)
+    {
+        this.n = n;
+        threshold = n - distance + 1;
+        planes = 32 - Integer.numberOfLeadingZeros(threshold);
+        counter = new long[planes];
+    }
+
+    boolean fits(int[] perm) // agrees with every codeword in fewer than threshold positions
+    {
+        int used = (size + 63) >>> 6;
+        if(lastConflict < used && tooClose(blocks[lastConflict], perm))
+            return false;
+        for(int w = 0; w < used; w++) {
+            if(w != lastConflict && tooClose(blocks[w], perm)) {
+                lastConflict = w;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean tooClose(long[] block, int[] perm) // some codeword of the block agrees with perm in threshold or more positions
+    {
+        Arrays.fill(counter, 0);
+        long overflow = 0; // counts past 2^planes - 1, already above threshold
+        for(int x = 0; x < n; x++) {
+            long carry = block[x * n + perm[x]]; // codewords agreeing at x, added to the counters as one 64-lane ripple add
+            for(int p = 0; p < planes && carry != 0; p++) {
+                long next = counter[p] & carry;
+                counter[p] ^= carry;
+                carry = next;
+            }
+            overflow |= carry;
+        }
+        if(overflow != 0)
+            return true;
+        long greater = 0; // lanes whose count is >= threshold, comparing from the top bit down
+        long equal = -1L;
+        for(int p = planes - 1; p >= 0; p--) {
+            if((threshold >>> p & 1) != 0)
+                equal &= counter[p];
+            else {
+                greater |= equal & counter[p];
+                equal &= ~counter[p];
+            }
+        }
+        return (greater | equal) != 0;
+    }
+
+    void add(int[] perm)
+    {
+        int w = size >>> 6;
+        if(w == blocks.length)
+            blocks = Arrays.copyOf(blocks, 2 * blocks.length);
+        if(blocks[w] == null)
+            blocks[w] = new long[n * n];
+        long bit = 1L << (size & 63);
+        for(int x = 0; x < n; x++)
+            blocks[w][x * n + perm[x]] |= bit;
+        codewords.add(perm.clone());
+        size++;
+    }
+}
+
+interface PermSource // candidate permutations by index, so a restart can visit them in any order
+{
+    long size();
+    void get(long index, int[] perm);
+    PermSource copy(); // independent cursor for another thread
+}
+
+class ExpansionSource implements PermSource // a*f(x+b)+c expansion of the file loaded by PermGen.load, computed on demand
+{
+    final PermSpliterator loader = new PermSpliterator(0, 0); // only used to load units
+    final long perUnit = (long) (PermGen.aRange - 1) * PermGen.cRange;
+    int loadedUnit = -1;
+
+    public long size()
+    {
+        return PermGen.size();
+    }
+
+    public void get(long index, int[] perm) // same order as PermSpliterator: unit, then a, then c
+    {
+        int unit = (int) (index / perUnit);
+        if(unit != loadedUnit) {
+            loader.load(unit);
+            loadedUnit = unit;
+        }
+        int rest = (int) (index % perUnit);
+        int a = 1 + rest / PermGen.cRange;
+        int c = rest % PermGen.cRange;
+        for(int x = 0; x < perm.length; x++)
+            perm[x] = PermGen.add(PermGen.mult(loader.initialPerm[x], a), c);
+    }
+
+    public PermSource copy()
+    {
+        return new ExpansionSource();
+    }
+}
+
+class BinSource implements PermSource // records of a PermGen -bin file, memory-mapped in segments of whole records
+{
+    static final long SEGMENT = 1 << 30;
+    final boolean wide; // 2 bytes per symbol, used once q > 256
+    final int recordLength;
+    final long recordsPerSegment;
+    final long size;
+    final ByteBuffer[] segments;
+
+    BinSource(String fileName, int n) throws IOException
+    {
+        wide = n > 256;
+        recordLength = n * (wide ? 2 : 1);
+        recordsPerSegment = SEGMENT / recordLength;
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        FileChannel channel = file.getChannel();
+        size = channel.size() / recordLength;
+        segments = new ByteBuffer[(int) ((size + recordsPerSegment - 1) / recordsPerSegment)];
+        for(int s = 0; s < segments.length; s++) {
+            long records = Math.min(recordsPerSegment, size - s * recordsPerSegment);
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, s * recordsPerSegment * recordLength, records * recordLength);
+        }
+        file.close(); // the mappings stay valid
+    }
+
+    BinSource(BinSource other)
+    {
+        wide = other.wide;
+        recordLength = other.recordLength;
+        recordsPerSegment = other.recordsPerSegment;
+        size = other.size;
+        segments = new ByteBuffer[other.segments.length];
+        for(int s = 0; s < segments.length; s++)
+            segments[s] = other.segments[s].duplicate();
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    public void get(long index, int[] perm)
+    {
+        ByteBuffer segment = segments[(int) (index / recordsPerSegment)];
+        int position = (int) (index % recordsPerSegment) * recordLength;
+        for(int x = 0; x < perm.length; x++)
+            perm[x] = wide ? segment.getShort(position + 2 * x) & 0xFFFF : segment.get(position + x) & 0xFF;
+    }
+
+    public PermSource copy()
+    {
+        return new BinSource(this);
+    }
+}
@@ -0,0 +1,458 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PPVerify {
+    // Parameter Variables
+    static String inputFileName;
+    static int threads;
+    static boolean checkOrbits;
+
+    // Program Variables
+    static boolean prfFile;
+    static boolean completeFile; // MapSearch -complete output, only complete mappings are written
+    static boolean mobiusFile; // FracSearch -mobius output, one representative per class
+    static boolean shiftOrbits; // p divides the degree x+b acts on, so orbits include the x+b shifts
+    static int fLength;
+    static int gLength;
+    static int[] frobenius; // frobenius[a] = a^p
+    static EntrySet entries;
+    static final int CHUNK = 2048; // entries per verification task
+
+    // Problem kinds, counted per entry
+    static final String[] PROBLEMS = {"unreadable", "duplicate", "not normalized", "not a permutation", "not a complete mapping", "not coprime", "incomplete orbit"};
+    static final int UNREADABLE = 0, DUPLICATE = 1, NOT_NORMALIZED = 2, NOT_PERMUTATION = 3, NOT_COMPLETE = 4, NOT_COPRIME = 5, INCOMPLETE_ORBIT = 6;
+    static final int MAX_EXAMPLES = 20;
+
+    public static void main(String[] args) {
+        parseArgs(args);
+        System.out.println(GF.irr + "\n");
+        long startTime = System.currentTimeMillis();
+        EntryCheck report = new EntryCheck();
+        readEntries(report);
+        System.out.println(entries.size + " entries read (" + (System.currentTimeMillis() - startTime) / 1000.0 + " s)");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // chunks of entries are checked on the pool and merged in order, so the examples are the first problems in the file
+            ArrayDeque<Future<EntryCheck>> pending = new ArrayDeque<Future<EntryCheck>>();
+            int next = 0;
+            while(next < entries.size || !pending.isEmpty()) {
+                while(next < entries.size && pending.size() < 2 * threads) {
+                    final int from = next;
+                    final int to = Math.min(entries.size, next + CHUNK);
+                    pending.add(pool.submit(() -> new EntryCheck().check(from, to)));
+                    next = to;
+                }
+                report.merge(pending.poll().get());
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            System.out.println("Verification failed.");
+            ex.printStackTrace();
+            System.exit(1);
+        }
+        pool.shutdown();
+        System.out.println("Verified in " + (System.currentTimeMillis() - startTime) / 1000.0 + " s\n");
+
+        long total = 0;
+        for(int k=0; k<PROBLEMS.length; k++) {
+            if(report.problems[k] > 0)
+                System.out.println(report.problems[k] + " " + PROBLEMS[k]);
+            total += report.problems[k];
+        }
+        if(!checkOrbits)
+            System.out.println("Orbit completeness not checked" + (mobiusFile ? " (Mobius representatives)" : ""));
+        if(total == 0) {
+            System.out.println("All " + entries.size + " entries verified" + (checkOrbits ? ", orbits complete" : ""));
+            System.exit(0);
+        }
+        System.out.println("\nFirst problems:");
+        for(String example : report.examples)
+            System.out.println(example);
+        System.exit(1);
+    }
+
+    public static void readEntries(EntryCheck report) { // every line after the header into entries, unreadable lines and duplicates reported
+        entries = new EntrySet(fLength + gLength);
+        int[] row = new int[fLength + gLength];
+        try {
+            BufferedReader inputFile = new BufferedReader(new FileReader(inputFileName), 1 << 16);
+            inputFile.readLine();
+            String currentLine;
+            int lineNumber = 1;
+            while((currentLine = inputFile.readLine()) != null) {
+                lineNumber++;
+                if(currentLine.isEmpty())
+                    continue;
+                if(!parseEntry(currentLine, row))
+                    report.problem(UNREADABLE, lineNumber, currentLine.trim());
+                else if(!entries.add(row, lineNumber))
+                    report.problem(DUPLICATE, lineNumber, currentLine.trim());
+            }
+            inputFile.close();
+        } catch (IOException ex) {
+            System.out.println("Error reading Permutation Polynomial file \"" + inputFileName + "\", or file not found.");
+            System.exit(1);
+        }
+    }
+
+    public static boolean parseEntry(String line, int[] row) { // "[f] / [g]" or "[f]" into row, f then g, by hand rather than by regex
+        int count = 0;
+        int value = -1; // digits of the current coefficient, -1 between numbers
+        int closed = 0; // polynomials read
+        for(int i=0; i<line.length(); i++) {
+            char ch = line.charAt(i);
+            if(ch >= '0' && ch <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (ch - '0');
+                if(value >= GF.n)
+                    return false;
+                continue;
+            }
+            if(value >= 0) {
+                if(count == row.length)
+                    return false;
+                row[count++] = value;
+                value = -1;
+            }
+            if(ch == ']') {
+                closed++;
+                if(count != (closed == 1 ? fLength : row.length))
+                    return false;
+                if(closed == (prfFile ? 2 : 1)) {
+                    if(!prfFile)
+                        row[fLength] = 1; // a PP is the fraction f/1
+                    return true; // anything after, like a Mobius class size, is not part of the entry
+                }
+            }
+        }
+        return false;
+    }
+
+    public static void printUsage() {
+        System.out.println("Usage: java PPVerify <inputfile> -options");
+        System.out.println("Checks a MapSearch or FracSearch output file against the field on its first line:");
+        System.out.println("every entry is normalized and a permutation (a complete mapping for -complete files),");
+        System.out.println("fractions are coprime, and the file holds whole orbits under the F, G and x+b maps");
+        System.out.println("options:");
+        System.out.println("     -noorbits   skip the orbit completeness check");
+        System.out.println("     -t n        number of worker threads (default: all cores)");
+    }
+
+    public static void parseArgs(String[] args) {
+        if(args.length < 1) {
+            printUsage();
+            System.exit(0);
+        }
+        inputFileName = args[0];
+        threads = Runtime.getRuntime().availableProcessors();
+        checkOrbits = true;
+        for(int i=1; i<args.length; i++) {
+            if(args[i].equals("-noorbits"))
+                checkOrbits = false;
+            else if(args[i].equals("-t") && i+1 < args.length)
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            else {
+                System.out.println(args[i] + " is an unrecognized option.");
+                printUsage();
+                System.exit(0);
+            }
+        }
+
+        // "frac_p_r_f_g[_mobius].txt" or "p_r_degd[_complete].txt", possibly in another directory
+        String name = new File(inputFileName).getName().replace(".txt", "");
+        prfFile = name.startsWith("frac_");
+        mobiusFile = name.endsWith("_mobius");
+        completeFile = name.endsWith("_complete");
+        String[] params = name.replace("frac_", "").replace("_mobius", "").replace("_complete", "").replace("deg", "").split("_");
+        try {
+            PermGen.prime = Integer.parseInt(params[0]);
+            PermGen.power = Integer.parseInt(params[1]);
+            PermGen.fdegree = Integer.parseInt(params[2]);
+            PermGen.gdegree = prfFile ? Integer.parseInt(params[3]) : 0;
+        } catch (RuntimeException ex) {
+            System.out.println("\"" + inputFileName + "\" is not named like a MapSearch or FracSearch output file.");
+            printUsage();
+            System.exit(0);
+        }
+        fLength = PermGen.fdegree + 1;
+        gLength = PermGen.gdegree + 1;
+        shiftOrbits = (prfFile ? PermGen.gdegree : PermGen.fdegree) % PermGen.prime == 0;
+        if(mobiusFile)
+            checkOrbits = false;
+
+        // the field must be the one the search used, so there is no random fallback here
+        Polynomial.mod = PermGen.prime;
+        Polynomial irr = PermGen.readIrreducible(inputFileName);
+        if(irr == null || irr.deg != PermGen.power || GF.isReducible(irr, PermGen.prime) || !GF.isPrimitive(irr, (int) Math.pow(PermGen.prime, PermGen.power))) {
+            System.out.println("No primitive degree " + PermGen.power + " polynomial on the first line of \"" + inputFileName + "\".");
+            System.exit(1);
+        }
+        GF.initGF(PermGen.prime, PermGen.power, irr);
+        PermGen.subtractionTable = PermGen.fillSubtractionTable();
+        PermGen.divisionTable = PermGen.fillDivisionTable();
+        PermGen.shiftTable = PermGen.fillShiftTable();
+        frobenius = new int[GF.n];
+        for(int a=0; a<GF.n; a++)
+            frobenius[a] = PermGen.calcPower(a, PermGen.prime);
+    }
+}
+
+class EntrySet // entries as fixed-length rows of one char array, found by open addressing, so millions of lines stay compact
+{
+    final int stride;
+    char[] rows = new char[1 << 16];
+    int[] lines = new int[1 << 12]; // line number of each row
+    int[] table = new int[1 << 13]; // row index + 1, 0 = empty
+    int size;
+
+    EntrySet(int stride)
+    {
+        this.stride = stride;
+    }
+
+    boolean add(int[] row, int line) // false if row is already present
+    {
+        if(find(row) >= 0)
+            return false;
+        if((size + 1) * stride > rows.length)
+            rows = Arrays.copyOf(rows, 2 * rows.length);
+        if(size == lines.length)
+            lines = Arrays.copyOf(lines, 2 * lines.length);
+        for(int i = 0; i < stride; i++)
+            rows[size * stride + i] = (char) row[i];
+        lines[size] = line;
+        size++;
+        if(2 * size > table.length)
+            rehash(2 * table.length);
+        else
+            insert(size - 1);
+        return true;
+    }
+
+    int find(int[] row) // index of row, -1 if absent
+    {
+        int mask = table.length - 1;
+        for(int slot = hash(row) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            int i = 0;
+            while(i < stride && rows[index * stride + i] == row[i])
+                i++;
+            if(i == stride)
+                return index;
+        }
+        return -1;
+    }
+
+    void get(int index, int[] row)
+    {
+        for(int i = 0; i < stride; i++)
+            row[i] = rows[index * stride + i];
+    }
+
+    void insert(int index)
+    {
+        int mask = table.length - 1;
+        int h = 0;
+        for(int i = 0; i < stride; i++)
+            h = 31 * h + rows[index * stride + i];
+        int slot = mix(h) & mask;
+        while(table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = index + 1;
+    }
+
+    void rehash(int length)
+    {
+        table = new int[length];
+        for(int index = 0; index < size; index++)
+            insert(index);
+    }
+
+    int hash(int[] row)
+    {
+        int h = 0;
+        for(int i = 0; i < stride; i++)
+            h = 31 * h + row[i];
+        return mix(h);
+    }
+
+    static int mix(int h) // spreads the polynomial hash over the low bits the mask keeps
+    {
+        h *= 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+}
+
+class EntryCheck // checks a range of entries with buffers reused across entries, and counts what fails
+{
+    final int n = GF.n;
+    final int fLength = PPVerify.fLength;
+    final int gLength = PPVerify.gLength;
+    final int[] row = new int[fLength + gLength];
+    final int[] image = new int[fLength + gLength];
+    final int[] shiftedF = new int[fLength];
+    final int[] shiftedG = new int[gLength];
+    final int[] values = new int[n]; // f(x)/g(x) of the row being checked
+    final int[] seen = new int[n]; // stamp of the last check that hit each value
+    final int[] remainder = new int[Math.max(fLength, gLength)];
+    final int[] divisor = new int[Math.max(fLength, gLength)];
+    int stamp;
+    final long[] problems = new long[PPVerify.PROBLEMS.length];
+    final ArrayList<String> examples = new ArrayList<String>();
+
+    EntryCheck check(int from, int to)
+    {
+        for(int index = from; index < to; index++) {
+            PPVerify.entries.get(index, row);
+            int line = PPVerify.entries.lines[index];
+            if(!normalized(row))
+                problem(PPVerify.NOT_NORMALIZED, line, toString(row));
+            boolean permutation = permutes(row);
+            if(!permutation)
+                problem(PPVerify.NOT_PERMUTATION, line, toString(row));
+            else if(PPVerify.completeFile && !permutesPlusX())
+                problem(PPVerify.NOT_COMPLETE, line, toString(row));
+            if(PPVerify.prfFile && !coprime(row))
+                problem(PPVerify.NOT_COPRIME, line, toString(row));
+            if(PPVerify.checkOrbits && permutation && !orbitPresent()) // the x+b images of a g with a root are undefined
+                problem(PPVerify.INCOMPLETE_ORBIT, line, toString(row) + " missing " + toString(image));
+        }
+        return this;
+    }
+
+    void problem(int kind, int line, String entry)
+    {
+        problems[kind]++;
+        if(examples.size() < PPVerify.MAX_EXAMPLES)
+            examples.add("line " + line + ": " + PPVerify.PROBLEMS[kind] + ": " + entry);
+    }
+
+    void merge(EntryCheck other)
+    {
+        for(int k = 0; k < problems.length; k++)
+            problems[k] += other.problems[k];
+        for(String example : other.examples)
+            if(examples.size() < PPVerify.MAX_EXAMPLES)
+                examples.add(example);
+    }
+
+    boolean normalized(int[] row) // monic f and g, f(0) = 0, and no x^(d-1) term in a PP whose degree p does not divide
+    {
+        if(row[0] != 1 || row[fLength] != 1 || row[fLength - 1] != 0)
+            return false;
+        return PPVerify.prfFile || PPVerify.shiftOrbits || fLength < 3 || row[1] == 0;
+    }
+
+    boolean permutes(int[] row) // fills values with f(x)/g(x), true if they are distinct
+    {
+        stamp++;
+        for(int x = 0; x < n; x++) {
+            int f = 0;
+            for(int i = 0; i < fLength; i++) // Horner
+                f = PermGen.add(PermGen.mult(f, x), row[i]);
+            int g = 0;
+            for(int i = fLength; i < row.length; i++)
+                g = PermGen.add(PermGen.mult(g, x), row[i]);
+            if(g == 0)
+                return false;
+            values[x] = PermGen.divide(f, g);
+            if(seen[values[x]] == stamp)
+                return false;
+            seen[values[x]] = stamp;
+        }
+        return true;
+    }
+
+    boolean permutesPlusX() // values[x] + x distinct, after permutes filled values
+    {
+        stamp++;
+        for(int x = 0; x < n; x++) {
+            int plus = PermGen.add(values[x], x);
+            if(seen[plus] == stamp)
+                return false;
+            seen[plus] = stamp;
+        }
+        return true;
+    }
+
+    boolean coprime(int[] row) // Euclid on f and g in place, highest coefficient first
+    {
+        int[] a = remainder;
+        int[] b = divisor;
+        System.arraycopy(row, 0, a, 0, fLength);
+        System.arraycopy(row, fLength, b, 0, gLength);
+        int aLength = fLength;
+        int bLength = gLength;
+        while(bLength > 1) {
+            while(aLength >= bLength) { // a = a mod b
+                int q = PermGen.divide(a[0], b[0]);
+                for(int i = 0; i < bLength; i++)
+                    a[i] = PermGen.subtract(a[i], PermGen.mult(q, b[i]));
+                int zeros = 0;
+                while(zeros < aLength && a[zeros] == 0)
+                    zeros++;
+                System.arraycopy(a, zeros, a, 0, aLength - zeros);
+                aLength -= zeros;
+            }
+            if(aLength == 0)
+                return false; // b divides both, and has degree >= 1
+            int[] swap = a;
+            a = b;
+            b = swap;
+            int swapLength = aLength;
+            aLength = bLength;
+            bLength = swapLength;
+        }
+        return true; // the last remainder is a nonzero constant
+    }
+
+    boolean orbitPresent() // every image of row under one F map, G map or x+b shift is in the file, leaving the first missing one in image
+    {
+        for(int i = 0; i < fLength; i++) // F map, coefficient i times alpha^i (element 1 + i mod n-1)
+            image[i] = PermGen.mult(row[i], 1 + i % (n - 1));
+        for(int i = 0; i < gLength; i++)
+            image[fLength + i] = PermGen.mult(row[fLength + i], 1 + i % (n - 1));
+        if(!present(image))
+            return false;
+        for(int i = 0; i < image.length; i++) // G map, Frobenius
+            image[i] = PPVerify.frobenius[row[i]];
+        if(!present(image))
+            return false;
+        if(PPVerify.shiftOrbits) {
+            int[] f = Arrays.copyOfRange(row, 0, fLength);
+            int[] g = Arrays.copyOfRange(row, fLength, row.length);
+            for(int b = 1; b < n; b++) { // f(x+b) + c g(x+b) / g(x+b) with c making the constant term 0
+                PermGen.fOfXPlusB(f, b, shiftedF);
+                PermGen.fOfXPlusB(g, b, shiftedG);
+                int c = PermGen.divide(PermGen.subtract(0, shiftedF[fLength - 1]), shiftedG[gLength - 1]);
+                for(int i = 0; i < gLength; i++)
+                    shiftedF[fLength - 1 - i] = PermGen.add(shiftedF[fLength - 1 - i], PermGen.mult(c, shiftedG[gLength - 1 - i]));
+                System.arraycopy(shiftedF, 0, image, 0, fLength);
+                System.arraycopy(shiftedG, 0, image, fLength, gLength);
+                if(!present(image))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    boolean present(int[] image) // in the file, or left out of a -complete file for not being a complete mapping
+    {
+        if(PPVerify.entries.find(image) >= 0)
+            return true;
+        return PPVerify.completeFile && !(permutes(image) && permutesPlusX());
+    }
+
+    String toString(int[] row)
+    {
+        String entry = Arrays.toString(Arrays.copyOfRange(row, 0, fLength));
+        return PPVerify.prfFile ? entry + " / " + Arrays.toString(Arrays.copyOfRange(row, fLength, row.length)) : entry;
+    }
+}
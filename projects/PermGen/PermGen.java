@@ -1,16 +1,20 @@
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PermGen {
     // Parameter Variables
@@ -21,76 +25,83 @@ public class PermGen {
     static int gdegree;
     static boolean onlyNormPerms;
     static boolean noBNorm;
+    static boolean binaryOutput; // packed records instead of text lines
+    static int threads; // workers expanding chunks of the input
     
     // Arithmetic Tables
     static int[][] subtractionTable;
     static int[][] divisionTable;
     static int[][] powerTable;
+    static int[][][] shiftTable; // shiftTable[b][k] = coefficients of (x+b)^k
     
     // Program Variables
     static String outputFileName;
     static boolean prfFile;
+    static int aRange;
+    static int bRange;
+    static int cRange;
+    static final long CHUNK_BYTES = 4 << 20; // target output size of one chunk
     static ArrayList<int[][]> prfArray;
 
     public static void main(String[] args) {
         parseArgs(args);        
         System.out.println(GF.irr+"\n");
-        subtractionTable = fillSubtractionTable();
-        divisionTable = fillDivisionTable();
-        powerTable = fillPowerTable();
-        
-        // Configure ranges for a*f(x+b)+c
-        int aRange = GF.n;
-        int bRange = GF.n;
-        int cRange = GF.n;
-        if(prfFile) {
-            if(gdegree % prime == 0) // PRFs use f(x+b) normalization on denominator
-                bRange = 1;
-        }
-        else {
-            if(fdegree % prime == 0) // PPs (as a degree f/0 PRF) use normalization on numerator
-                bRange = 1;
-        }
-        if(onlyNormPerms) {
-            aRange = 2;
-            bRange = 1;
-            cRange = 1;
-        }
-        
-        int count = 0;
-        BufferedWriter outFile = null;
-        try {
-            outFile = new BufferedWriter(new FileWriter(outputFileName));
-            for(int[][] prf : prfArray) {
-                for(int b=0; b<bRange; b++) {
-                    int[] fValues = evaluatePolynomial(fOfXPlusB(prf[0], b));
-                    int[] gValues = new int[GF.n];
-                    Arrays.fill(gValues, 1);
-                    if(prfFile)
-                        gValues = evaluatePolynomial(fOfXPlusB(prf[1], b));
-                    int[] initialPerm = new int[GF.n];
-                    for(int i=0; i<GF.n; i++)
-                        initialPerm[i] = divide(fValues[i], gValues[i]);                  
-                    for(int a=1; a<aRange; a++) {
-                        int[] multPerm = multArray(initialPerm, a); //multiply initial permutation by coeff 'a'
-                        for(int c=0; c<cRange; c++) {
-                            int[] finalPerm = addArray(multPerm, c); //add 'c' to each term in the multiplied permutation
-                            String permString = Arrays.toString(finalPerm).replaceAll("[\\[,\\]]", "");
-                            outFile.write(permString + "\r\n");
-                            count++;
-                        }
-                    }
+        long count = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel outFile = new FileOutputStream(outputFileName).getChannel()) {
+            PermWriter.init(binaryOutput);
+            // chunks of consecutive units are expanded on the pool and written in order
+            int units = units();
+            long unitBytes = (long) (aRange - 1) * cRange * PermWriter.recordLength;
+            int unitsPerChunk = (int) Math.max(1, CHUNK_BYTES / unitBytes);
+            ArrayDeque<Future<PermWriter>> pending = new ArrayDeque<Future<PermWriter>>();
+            int next = 0;
+            while(next < units || !pending.isEmpty()) {
+                while(next < units && pending.size() < 2 * threads) { // bounds the chunks held in memory
+                    final int from = next;
+                    final int to = Math.min(units, next + unitsPerChunk);
+                    pending.add(pool.submit(() -> expand(from, to)));
+                    next = to;
                 }
+                PermWriter chunk = pending.poll().get();
+                chunk.writeTo(outFile);
+                count += chunk.count;
             }
-            outFile.close();
         } catch (IOException ex) {
                 System.out.println("Output file error. " + outputFileName);
                 ex.printStackTrace();
+                System.exit(1);
+        } catch (InterruptedException | ExecutionException ex) {
+                System.out.println("Permutation expansion failed after " + count + " permutations, \"" + outputFileName + "\" is incomplete.");
+                ex.printStackTrace();
+                System.exit(1);
         }
+        pool.shutdown();
     
         System.out.println(count + " permutations written to \"" + outputFileName + "\"");
     }
     
+    public static PermWriter expand(int from, int to) { // permutations a*f(x+b)+c of units [from, to), in output order
+        PermWriter chunk = new PermWriter();
+        PermSpliterator perms = new PermSpliterator(from, to);
+        int[] perm = new int[GF.n];
+        while(perms.next(perm))
+            chunk.write(perm);
+        return chunk;
+    }
+    
+    public static PermSpliterator permutations() { // lazy expansion of the whole input file, in output order
+        return new PermSpliterator(0, units());
+    }
+    
+    public static int units() { // one unit per (prf, b) pair
+        return prfArray.size() * bRange;
+    }
+    
+    public static long size() { // permutations the input file expands to
+        return (long) units() * (aRange - 1) * cRange;
+    }
+    
     public static int add(int a, int b) { // a + b in GF
         return GF.addTable[a + b * GF.n];
     }
@@ -111,15 +122,11 @@ public class PermGen {
         return powerTable[a][b];
     }
     
-    public static int[][] fillSubtractionTable() {
+    public static int[][] fillSubtractionTable() { // b + i = a  =>  a - b = i
         int[][] subtraction = new int[GF.n][GF.n];
-        for(int a = 0; a < GF.n; a++) {
-            for(int b = 0; b < GF.n; b++) {
-                for(int i=0; i<GF.n; i++) {
-                    if(GF.addTable[b*GF.n + i] == a) {
-                         subtraction[a][b] = i;
-                    }
-                }                
+        for(int b = 0; b < GF.n; b++) {
+            for(int i=0; i<GF.n; i++) {
+                subtraction[GF.addTable[b*GF.n + i]][b] = i;
             }
         }
         return subtraction;        
@@ -130,13 +137,9 @@ public class PermGen {
         for(int a = 0; a < GF.n; a++) {
             division[a][0] = -1; // -1 as error for divide by zero
         }
-        for(int a = 0; a < GF.n; a++) {
-            for(int b = 1; b < GF.n; b++) {
-                for(int i=0; i<GF.n; i++) {
-                    if(GF.mulTable[b*GF.n + i] == a) {
-                         division[a][b] = i;
-                    }
-                }                
+        for(int b = 1; b < GF.n; b++) { // b * i = a  =>  a / b = i
+            for(int i=0; i<GF.n; i++) {
+                division[GF.mulTable[b*GF.n + i]][b] = i;
             }
         }
         return division;
@@ -295,24 +298,36 @@ public class PermGen {
         return p.length == 1 && p[0] == 1;
     }
     
-    public static int[] binomialToPower(int[] p1, int c, int n) { //p1 = (x+c), return (x+c)^n
-        if(n == 1)
-            return p1;
-        else {
-            int[] timesX = multX(p1);
-            int[] timesB = multA(p1, c);
-            int[] result = addPoly(timesX, timesB);
-            return binomialToPower(result, c, n-1);
+    public static int[][][] fillShiftTable() { // shift[b][k][j] = coefficient of x^j in (x+b)^k
+        int maxDegree = Math.max(fdegree, gdegree);
+        int[][][] shifts = new int[GF.n][maxDegree+1][];
+        for(int b = 0; b < GF.n; b++) {
+            shifts[b][0] = new int[] {1};
+            for(int k = 1; k <= maxDegree; k++) {
+                int[] prev = shifts[b][k-1];
+                int[] cur = new int[k+1];
+                cur[k] = 1;
+                for(int j = 0; j < k; j++) // (x+b)^k = x*(x+b)^(k-1) + b*(x+b)^(k-1)
+                    cur[j] = add(j == 0 ? 0 : prev[j-1], mult(b, prev[j]));
+                shifts[b][k] = cur;
+            }
         }
-    } 
-    
+        return shifts;
+    }
+
     public static int[] fOfXPlusB(int[] p, int b) { // returns f(x+b)
-        int[] result = {p[p.length-1]}; //start with result as constant of p
-        for(int i=p.length-2; i>=0; i--) {
-            int[] binomial = {1, b}; //(x+b)
-            int[] poly = binomialToPower(binomial, b, p.length-1-i); //(x+b)^p.length-1-i
-            int[] timesCoef = multA(poly, p[i]); // a*(x+b)^p.length-1-i
-            result = addPoly(timesCoef, result);
+        return fOfXPlusB(p, b, new int[p.length]);
+    }
+
+    public static int[] fOfXPlusB(int[] p, int b, int[] result) { // writes f(x+b) into result, no allocation
+        int degree = p.length - 1;
+        Arrays.fill(result, 0, p.length, 0);
+        for(int i=0; i<p.length; i++) {
+            if(p[i] != 0) {
+                int[] binomial = shiftTable[b][degree-i]; // (x+b)^(degree-i), lowest term first
+                for(int j=0; j<binomial.length; j++)
+                    result[degree-j] = add(result[degree-j], mult(p[i], binomial[j]));
+            }
         }
         return result;
     }    
@@ -545,8 +560,6 @@ public class PermGen {
         return gapDegree;
     }
 
-
-
     public static int[] listIndexes(boolean[] mask) {
         int count = 0;
         for(int i=0; i<mask.length; i++) {
@@ -655,6 +668,17 @@ public class PermGen {
         System.out.println(Arrays.toString(array));
     }
     
+    public static Polynomial readIrreducible(String fileName) { // the GF.irr MapSearch/FracSearch wrote on the first line, null if there is none
+        try {
+            BufferedReader inputFile = new BufferedReader(new FileReader(fileName));
+            String header = inputFile.readLine();
+            inputFile.close();
+            return header == null ? null : Polynomial.parse(header);
+        } catch (IOException | RuntimeException ex) {
+            return null; // a missing file is reported by readInputFile
+        }
+    }
+    
     public static ArrayList<int[][]> readInputFile(String fileName) { 
         ArrayList<int[][]> prfs = new ArrayList<>();
         try {
@@ -697,329 +721,143 @@ public class PermGen {
         return polynomial;
     }
     
+    public static void printUsage() {
+        System.out.println("Usage: java PermGen <inputfile> -options");
+        System.out.println("options:");
+        System.out.println("     -norm     generates only permutations from the normalized PPs/PRFs in the input file");            
+        System.out.println("     -bin      writes <inputfile>_perms.bin, q symbols per permutation, 1 byte each (2 bytes big-endian if q > 256)");
+        System.out.println("     -t n      number of worker threads (default: all cores)");
+    }
+
     public static void parseArgs(String[] args) {
-        if(args.length < 1 || args.length > 2) {
-            System.out.println("Usage: java PermGen <inputfile> -options");
-            System.out.println("options:");
-            System.out.println("     -norm     generates only permutations from the normalized PPs/PRFs in the input file");            
+        if(args.length < 1) {
+            printUsage();
             System.exit(0);
         }
         //initialize variables
         onlyNormPerms = false;
-        if(args.length == 2) {
-            if(args[1].equals("-norm"))
+        binaryOutput = false;
+        threads = Runtime.getRuntime().availableProcessors();
+        for(int i=1; i<args.length; i++) {
+            if(args[i].equals("-norm"))
                 onlyNormPerms = true;
+            else if(args[i].equals("-bin"))
+                binaryOutput = true;
+            else if(args[i].equals("-t") && i+1 < args.length)
+                threads = Math.max(1, Integer.parseInt(args[++i]));
             else {
-                System.out.println(args[1] + " is an unrecognized option.");
-                System.out.println("Usage: java PermGen <inputfile> -options");
-                System.out.println("options:");
-                System.out.println("     -norm     generates only permutations from the normalized PPs/PRFs in the input file");            
+                System.out.println(args[i] + " is an unrecognized option.");
+                printUsage();
                 System.exit(0);
             }
         }
-        prfFile = args[0].startsWith("frac_");
+        load(args[0], onlyNormPerms);
+        outputFileName = args[0].replace(".txt", "") + (binaryOutput ? "_perms.bin" : "_perms.txt");
+    }
+    
+    public static void load(String fileName, boolean onlyNorm) { // reads a MapSearch or FracSearch output file and prepares the a*f(x+b)+c expansion
+        onlyNormPerms = onlyNorm;
+        prfFile = fileName.startsWith("frac_");
         String[] params = null;
         if(prfFile)
-            params = args[0].replace("frac_", "").replace(".txt", "").split("_");
+            params = fileName.replace("frac_", "").replace(".txt", "").split("_");
         else
-            params = args[0].replace("deg", "").replace(".txt", "").concat("_0").split("_");
+            params = fileName.replace("deg", "").replace(".txt", "").concat("_0").split("_");
         
         prime = Integer.parseInt(params[0]);
         power = Integer.parseInt(params[1]);
         fdegree = Integer.parseInt(params[2]);
         gdegree = Integer.parseInt(params[3]);
-        GF.initGF(prime, power);
+        Polynomial irr = readIrreducible(fileName);
+        if(irr != null && irr.deg == power)
+            GF.initGF(prime, power, irr);
+        else {
+            System.out.println("No degree " + power + " polynomial on the first line of \"" + fileName + "\", using a random primitive polynomial");
+            GF.initGF(prime, power);
+        }
         
-        prfArray = readInputFile(args[0]);
-        outputFileName = args[0].replace(".txt", "") + "_perms.txt";
-    }
-}
-
-class GF 
-{    
-    static Random rand = new Random(1);
-
-    static int prime = 1;
-    static int power = 1;
-    static int n = 1;
-
-    public static int[] addTable;
-    public static int[] mulTable;
-
-    public static Polynomial irr;
-
-    public static Polynomial initGF(int prime, int power)
-    {
-            GF.prime = prime;
-            GF.power = power;
-            GF.n = (int) Math.pow(prime, power);
-
-            Polynomial.mod = prime;
-            irr = findRandomPrimitive(prime, power);
-            List<Polynomial> arr = genPolynomials(prime, power, irr);
-
-            addTable = addTable(prime, power, arr);
-            mulTable = multTable(prime, power, irr, arr);
-
-            return irr;
-    }
-
-    public static Polynomial findRandomPrimitive(int prime, int power)
-    {
-            int n = (int) Math.pow(prime, power);
-            int[] temp = new int[n + 1];
-            temp[temp.length - 1] = 1;
-            temp[1] = prime - 1;
-            Polynomial cur = randomPolynomial(prime, power);
-            while (isReducible(cur, prime) || !isPrimitive(cur, n))
-                    cur = randomPolynomial(prime, power);
-            return cur;
-    }
-
-    public static boolean isPrimitive(Polynomial p, int n)
-    {
-            int d = n - 1;
-            if (p.equals(Polynomial.monomial(1)))
-                    return false;
-            for (int x = 2; x <= n - 2; x++)
-                    if (d % x == 0 && Polynomial.monomial(x).divide(p)[1].isOne())
-                            return false;
-            return true;
-    }
-
-    public static Polynomial randomPolynomial(int mod, int deg)
-    {
-            int[] coef = new int[deg + 1];
-            coef[coef.length - 1] = 1;
-            for (int i = 0; i < coef.length - 1; i++)
-                    coef[i] = rand.nextInt(mod);
-            return new Polynomial(coef);
-    }
-
-    public static List<Polynomial> genPolynomials(int prime, int power, Polynomial irr)
-    {
-            int n = (int) Math.pow(prime, power);
-            Polynomial base = Polynomial.monomial(0);
-            Polynomial x = Polynomial.monomial(1);
-            Polynomial zero = Polynomial.zero();
-            List<Polynomial> arr = new ArrayList<Polynomial>();
-            arr.add(zero);
-            do
-            {
-                    arr.add(base.divide(irr)[1]);
-                    base = base.mult(x);
-            }
-            while (arr.size() < n);
-            return arr;
-    }
-
-    public static boolean isReducible(Polynomial p, int mod)
-    {
-            for (int i = 1; i < p.deg; i++)
-            {
-                    int[] coef = new int[(int) Math.pow(mod, i) + 1];
-                    coef[coef.length - 1] = 1;
-                    coef[1] = mod - 1;
-                    Polynomial test = new Polynomial(coef);
-                    if (Polynomial.gcd(p, test).deg > 0)
-                    {
-                            return true;
-                    }
-            }
-            return false;
-    }
-
-    public static int[] multTable(int prime, int pow, Polynomial irr, List<Polynomial> arr)
-    {
-            Polynomial.mod = prime;
-            int sz = (int) Math.pow(prime, pow);
-            int[] table = new int[sz * sz];
-            for (int a = 0; a < sz; a++)
-                    for (int b = 0; b < sz; b++)
-                    {
-                            Polynomial result = arr.get(a).mult(arr.get(b)).divide(irr)[1];
-                            for (int i = 0; i < arr.size(); i++)
-                                    if (arr.get(i).equals(result))
-                                    {
-                                            table[a + b * n] = i;
-                                            break;
-                                    }
-                    }
-            return table;
-    }
-
-    public static int[] addTable(int prime, int pow, List<Polynomial> arr)
-    {
-            Polynomial.mod = prime;
-            int sz = (int) Math.pow(prime, pow);
-            int[] table = new int[sz * sz];
-            for (int a = 0; a < sz; a++)
-                    for (int b = 0; b < sz; b++)
-                    {
-                            Polynomial result = arr.get(a).add(arr.get(b));
-                            for (int i = 0; i < arr.size(); i++)
-                            {
-                                    if (arr.get(i).equals(result))
-                                    {
-                                            table[a + b * sz] = i;
-                                            break;
-                                    }
-                            }
-                    }
-            return table;
+        prfArray = readInputFile(fileName);
+        subtractionTable = fillSubtractionTable();
+        divisionTable = fillDivisionTable();
+        powerTable = fillPowerTable();
+        shiftTable = fillShiftTable();
+        
+        // Configure ranges for a*f(x+b)+c
+        aRange = GF.n;
+        bRange = GF.n;
+        cRange = GF.n;
+        if(prfFile) {
+            if(gdegree % prime == 0) // PRFs use f(x+b) normalization on denominator
+                bRange = 1;
+        }
+        else {
+            if(fdegree % prime == 0) // PPs (as a degree f/0 PRF) use normalization on numerator
+                bRange = 1;
+        }
+        if(onlyNormPerms) {
+            aRange = 2;
+            bRange = 1;
+            cRange = 1;
+        }
     }
 }
 
-class Polynomial
+class PermWriter // one chunk of permutations, encoded as text lines or packed records into 1 MB blocks until it is written out
 {
-    static int mod = 0;
-    int[] coef;
-    int deg;
-
-    public Polynomial(int[] coef)
+    static final int BLOCK = 1 << 20;
+    static boolean binary;
+    static boolean wide; // 2 bytes per symbol, needed once q > 256
+    static byte[][] digits; // digits[v] = decimal text of symbol v
+    static int recordLength; // most bytes one permutation can take
+    final ArrayList<ByteBuffer> blocks = new ArrayList<ByteBuffer>();
+    ByteBuffer buffer;
+    long count;
+
+    static void init(boolean binary)
     {
-            deg = coef.length - 1;
-            while (deg >= 0 && coef[deg] == 0)
-                    deg--;
-            this.coef = Arrays.copyOf(coef, deg + 1);
-    }
-
-    public static Polynomial zero()
-    {
-            int[] coef = new int[1];
-            coef[0] = 0;
-            return new Polynomial(coef);
-    }
-
-    public static Polynomial monomial(int n)
-    {
-            int[] coef = new int[n + 1];
-            coef[n] = 1;
-            return new Polynomial(coef);
-    }
-
-    public boolean isOne()
-    {
-            return deg == 0 && coef[0] == 1;
-    }
-
-    public Polynomial mult(Polynomial other)
-    {
-            if (deg == -1 || other.deg == -1)
-                    return new Polynomial(new int[] {});
-            int[] newCoef = new int[deg + other.deg + 1];
-            for (int i = 0; i < coef.length; i++)
-                    for (int j = 0; j < other.coef.length; j++)
-                            newCoef[i + j] = (coef[i] * other.coef[j] + newCoef[i + j]) % mod;
-            return new Polynomial(newCoef);
-    }
-
-    public Polynomial add(Polynomial other)
-    {
-            int[] newCoef = new int[Math.max(coef.length, other.coef.length)];
-            for (int i = 0; i < newCoef.length; i++)
-            {
-                    if (i < coef.length)
-                            newCoef[i] = (newCoef[i] + coef[i]) % mod;
-                    if (i < other.coef.length)
-                            newCoef[i] = (newCoef[i] + other.coef[i]) % mod;
-            }
-            return new Polynomial(newCoef);
-    }
-
-    public Polynomial subtract(Polynomial other)
-    {
-            int[] newCoef = new int[Math.max(coef.length, other.coef.length)];
-            for (int i = 0; i < newCoef.length; i++)
-            {
-                    if (i < coef.length)
-                            newCoef[i] = (coef[i] + newCoef[i]) % mod;
-                    if (i < other.coef.length)
-                            newCoef[i] = (newCoef[i] - other.coef[i] + mod) % mod;
-            }
-            return new Polynomial(newCoef);
-    }
-
-    public Polynomial divideLeadTerms(Polynomial other)
-    {
-            int temp = deg - other.deg;
-            int value = coef[coef.length - 1] * invert(other.coef[other.coef.length - 1]);
-            int newCoef[] = new int[temp + 1];
-            newCoef[temp] = value;
-            return new Polynomial(newCoef);
-    }
-
-    public Polynomial[] divide(Polynomial divisor)
-    {
-            Polynomial[] res = new Polynomial[2];
-            if (divisor.deg == -1)
-                    return null;
-            res[0] = new Polynomial(new int[] {});
-            res[1] = this.copy();
-            while (res[1].deg != -1 && res[1].deg >= divisor.deg)
-            {
-                    Polynomial temp = res[1].divideLeadTerms(divisor);
-                    res[0] = res[0].add(temp);
-                    res[1] = res[1].subtract(temp.mult(divisor));
-            }
-            return res;
-    }
-
-    public static int invert(int n)
-    {
-            for (int a = 1; a < mod; a++)
-                    if ((a * n) % mod == 1)
-                            return a;
-            return -1;
-    }
-
-    public static Polynomial gcd(Polynomial a, Polynomial b)
-    {
-            if (b.deg == -1)
-                    return a;
-            else
-                    return gcd(b, a.divide(b)[1]);
-    }
-
-    public Polynomial copy()
-    {
-            int[] newCoef = Arrays.copyOf(coef, coef.length);
-            return new Polynomial(newCoef);
+        PermWriter.binary = binary;
+        wide = GF.n > 256;
+        digits = new byte[GF.n][];
+        for(int v = 0; v < GF.n; v++)
+            digits[v] = Integer.toString(v).getBytes();
+        if(binary)
+            recordLength = GF.n * (wide ? 2 : 1);
+        else
+            recordLength = GF.n * (digits[GF.n-1].length + 1) + 1; // "v v ... v\r\n"
     }
 
-    public boolean equals(Object other)
+    void write(int[] perm)
     {
-            if (other instanceof Polynomial)
-            {
-                    Polynomial poly = (Polynomial) other;
-                    if (poly.deg != deg)
-                            return false;
-                    for (int i = 0; i < coef.length; i++)
-                            if (coef[i] != poly.coef[i])
-                                    return false;
-                    return true;
+        if(buffer == null || buffer.remaining() < recordLength) {
+            buffer = ByteBuffer.allocate(Math.max(BLOCK, recordLength));
+            blocks.add(buffer);
+        }
+        count++;
+        if(binary) {
+            for(int v : perm) {
+                if(wide)
+                    buffer.putShort((short) v);
+                else
+                    buffer.put((byte) v);
             }
-            return false;
+            return;
+        }
+        for(int x = 0; x < perm.length; x++) {
+            if(x > 0)
+                buffer.put((byte) ' ');
+            buffer.put(digits[perm[x]]);
+        }
+        buffer.put((byte) '\r').put((byte) '\n');
     }
 
-    public String toString()
+    void writeTo(FileChannel channel) throws IOException
     {
-            StringBuilder sb = new StringBuilder();
-            if (deg == -1)
-                    return "0";
-            for (int i = coef.length - 1; i >= 2; i--)
-            {
-                    if (coef[i] == 1)
-                            sb.append("x^" + i + " + ");
-                    else if (coef[i] != 0)
-                            sb.append(coef[i] + "x^" + i + " + ");
-            }
-            if (coef.length >= 2 && coef[1] != 0)
-                    sb.append((coef[1] == 1 ? "" : coef[1]) + "x + ");
-            if (coef.length >= 1 && coef[0] != 0)
-                    sb.append(coef[0]);
-            else
-                    sb.delete(sb.length() - 3, sb.length());
-            return sb.toString();
+        for(ByteBuffer block : blocks) {
+            block.flip();
+            while(block.hasRemaining())
+                channel.write(block);
+        }
+        blocks.clear();
+        buffer = null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+class PermSpliterator implements Spliterator<int[]> // lazy a*f(x+b)+c expansion of units [unit, end), one permutation at a time into a reused array
+{
+    int unit;
+    int end;
+    int a; // 0 until the current unit is loaded
+    int c;
+    final int[] initialPerm = new int[GF.n]; // f(x+b)/g(x+b) of the current unit
+    final int[] multPerm = new int[GF.n]; // a*initialPerm
+    final int[] perm = new int[GF.n]; // handed to tryAdvance's action, copy it to keep it
+
+    PermSpliterator(int from, int to)
+    {
+        unit = from;
+        end = to;
+    }
+
+    boolean next(int[] perm) // writes the next permutation into perm, false once the range is done
+    {
+        if(c == PermGen.cRange) {
+            c = 0;
+            if(++a == PermGen.aRange) {
+                a = 0;
+                unit++;
+            }
+            else
+                multiply();
+        }
+        if(a == 0) {
+            if(unit >= end)
+                return false;
+            load(unit);
+            a = 1;
+            multiply();
+        }
+        for(int x = 0; x < GF.n; x++) // add 'c' to each term in the multiplied permutation
+            perm[x] = PermGen.add(multPerm[x], c);
+        c++;
+        return true;
+    }
+
+    void load(int unit) // initial permutation f(x+b)/g(x+b) of a unit
+    {
+        int[][] prf = PermGen.prfArray.get(unit / PermGen.bRange);
+        int b = unit % PermGen.bRange;
+        int[] fValues = PermGen.evaluatePolynomial(PermGen.fOfXPlusB(prf[0], b));
+        int[] gValues = null;
+        if(PermGen.prfFile)
+            gValues = PermGen.evaluatePolynomial(PermGen.fOfXPlusB(prf[1], b));
+        for(int x = 0; x < GF.n; x++)
+            initialPerm[x] = PermGen.divide(fValues[x], gValues == null ? 1 : gValues[x]);
+    }
+
+    void multiply()
+    {
+        for(int x = 0; x < GF.n; x++)
+            multPerm[x] = PermGen.mult(initialPerm[x], a);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action)
+    {
+        if(!next(perm))
+            return false;
+        action.accept(perm);
+        return true;
+    }
+
+    @Override
+    public Spliterator<int[]> trySplit() // prefix of whole units, plus the partly expanded current unit
+    {
+        if(end - unit < 2)
+            return null;
+        int mid = (unit + end + (a == 0 ? 0 : 1)) >>> 1;
+        PermSpliterator prefix = new PermSpliterator(unit, mid);
+        prefix.a = a;
+        prefix.c = c;
+        System.arraycopy(initialPerm, 0, prefix.initialPerm, 0, GF.n);
+        System.arraycopy(multPerm, 0, prefix.multPerm, 0, GF.n);
+        unit = mid;
+        a = 0;
+        c = 0;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() // exact: units left, less what the current unit has already produced
+    {
+        long perUnit = (long) (PermGen.aRange - 1) * PermGen.cRange;
+        return (end - unit) * perUnit - (a == 0 ? 0 : (a - 1) * PermGen.cRange + c);
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
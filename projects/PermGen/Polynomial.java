@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+class Polynomial
+{
+    static int mod = 0;
+    int[] coef;
+    int deg;
+
+    public Polynomial(int[] coef)
+    {
+            deg = coef.length - 1;
+            while (deg >= 0 && coef[deg] == 0)
+                    deg--;
+            this.coef = Arrays.copyOf(coef, deg + 1);
+    }
+
+    public static Polynomial zero()
+    {
+            int[] coef = new int[1];
+            coef[0] = 0;
+            return new Polynomial(coef);
+    }
+
+    public static Polynomial monomial(int n)
+    {
+            int[] coef = new int[n + 1];
+            coef[n] = 1;
+            return new Polynomial(coef);
+    }
+
+    public boolean isOne()
+    {
+            return deg == 0 && coef[0] == 1;
+    }
+
+    public Polynomial mult(Polynomial other)
+    {
+            if (deg == -1 || other.deg == -1)
+                    return new Polynomial(new int[] {});
+            int[] newCoef = new int[deg + other.deg + 1];
+            for (int i = 0; i < coef.length; i++)
+                    for (int j = 0; j < other.coef.length; j++)
+                            newCoef[i + j] = (coef[i] * other.coef[j] + newCoef[i + j]) % mod;
+            return new Polynomial(newCoef);
+    }
+
+    public Polynomial add(Polynomial other)
+    {
+            int[] newCoef = new int[Math.max(coef.length, other.coef.length)];
+            for (int i = 0; i < newCoef.length; i++)
+            {
+                    if (i < coef.length)
+                            newCoef[i] = (newCoef[i] + coef[i]) % mod;
+                    if (i < other.coef.length)
+                            newCoef[i] = (newCoef[i] + other.coef[i]) % mod;
+            }
+            return new Polynomial(newCoef);
+    }
+
+    public Polynomial subtract(Polynomial other)
+    {
+            int[] newCoef = new int[Math.max(coef.length, other.coef.length)];
+            for (int i = 0; i < newCoef.length; i++)
+            {
+                    if (i < coef.length)
+                            newCoef[i] = (coef[i] + newCoef[i]) % mod;
+                    if (i < other.coef.length)
+                            newCoef[i] = (newCoef[i] - other.coef[i] + mod) % mod;
+            }
+            return new Polynomial(newCoef);
+    }
+
+    public Polynomial divideLeadTerms(Polynomial other)
+    {
+            int temp = deg - other.deg;
+            int value = coef[coef.length - 1] * invert(other.coef[other.coef.length - 1]);
+            int newCoef[] = new int[temp + 1];
+            newCoef[temp] = value;
+            return new Polynomial(newCoef);
+    }
+
+    public Polynomial[] divide(Polynomial divisor)
+    {
+            Polynomial[] res = new Polynomial[2];
+            if (divisor.deg == -1)
+                    return null;
+            res[0] = new Polynomial(new int[] {});
+            res[1] = this.copy();
+            while (res[1].deg != -1 && res[1].deg >= divisor.deg)
+            {
+                    Polynomial temp = res[1].divideLeadTerms(divisor);
+                    res[0] = res[0].add(temp);
+                    res[1] = res[1].subtract(temp.mult(divisor));
+            }
+            return res;
+    }
+
+    public static int invert(int n)
+    {
+            for (int a = 1; a < mod; a++)
+                    if ((a * n) % mod == 1)
+                            return a;
+            return -1;
+    }
+
+    public static Polynomial gcd(Polynomial a, Polynomial b)
+    {
+            if (b.deg == -1)
+                    return a;
+            else
+                    return gcd(b, a.divide(b)[1]);
+    }
+
+    public Polynomial copy()
+    {
+            int[] newCoef = Arrays.copyOf(coef, coef.length);
+            return new Polynomial(newCoef);
+    }
+
+    public boolean equals(Object other)
+    {
+            if (other instanceof Polynomial)
+            {
+                    Polynomial poly = (Polynomial) other;
+                    if (poly.deg != deg)
+                            return false;
+                    for (int i = 0; i < coef.length; i++)
+                            if (coef[i] != poly.coef[i])
+                                    return false;
+                    return true;
+            }
+            return false;
+    }
+
+    public static Polynomial parse(String input) // inverse of toString, e.g. "x^6 + 2x^2 + x + 1"
+    {
+            String[] terms = input.trim().split(" \\+ ");
+            int[] exponents = new int[terms.length];
+            int[] values = new int[terms.length];
+            int degree = 0;
+            for (int t = 0; t < terms.length; t++)
+            {
+                    int x = terms[t].indexOf('x');
+                    if (x < 0)
+                            values[t] = Integer.parseInt(terms[t]);
+                    else
+                    {
+                            values[t] = x == 0 ? 1 : Integer.parseInt(terms[t].substring(0, x));
+                            exponents[t] = x + 1 == terms[t].length() ? 1 : Integer.parseInt(terms[t].substring(x + 2));
+                    }
+                    degree = Math.max(degree, exponents[t]);
+            }
+            int[] coef = new int[degree + 1];
+            for (int t = 0; t < terms.length; t++)
+                    coef[exponents[t]] = values[t];
+            return new Polynomial(coef);
+    }
+
+    public String toString()
+    {
+            StringBuilder sb = new StringBuilder();
+            if (deg == -1)
+                    return "0";
+            for (int i = coef.length - 1; i >= 2; i--)
+            {
+                    if (coef[i] == 1)
+                            sb.append("x^" + i + " + ");
+                    else if (coef[i] != 0)
+                            sb.append(coef[i] + "x^" + i + " + ");
+            }
+            if (coef.length >= 2 && coef[1] != 0)
+                    sb.append((coef[1] == 1 ? "" : coef[1]) + "x + ");
+            if (coef.length >= 1 && coef[0] != 0)
+                    sb.append(coef[0]);
+            else
+                    sb.delete(sb.length() - 3, sb.length());
+            return sb.toString();
+    }
+}
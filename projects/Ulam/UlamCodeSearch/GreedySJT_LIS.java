@@ -10,40 +10,56 @@ public class GreedySJT_LIS {
     static List<int[]> code = new ArrayList<>();
     static List<int[]> inverses = new ArrayList<>();
 
+    // -bitmap: balls of radius d-1 around the code, marked as codewords are added (n <= 12)
+    static UlamBitmap bitmap;
+
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.err.println("Usage: java GreedySJT_LIS <n> <d>");
+            System.err.println("Usage: java GreedySJT_LIS <n> <d> [-bitmap]");
             return;
         }
 
         n = Integer.parseInt(args[0]);
         d = Integer.parseInt(args[1]);
+        if (args.length > 2 && args[2].equals("-bitmap")) {
+            if (n > UlamBitmap.MAX_N) {
+                System.err.println("-bitmap needs n <= " + UlamBitmap.MAX_N);
+                return;
+            }
+            bitmap = new UlamBitmap(n, d - 1);
+        }
 
-        SJTGenerator gen = new SJTGenerator(n);
-        int[] p;
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) p[i] = i + 1;
+        SJTOrder order = new SJTOrder(p, 0); // steps p in place
         long checked = 0;
 
-        while ((p = gen.next()) != null) {
+        do {
             checked++;
 
             boolean ok = true;
             int minDist = Integer.MAX_VALUE;
 
-            for (int i = 0; i < code.size(); i++) {
-                int dist = ulamDistanceAtLeast(p, inverses.get(i), d);
-                if (dist < d) {
-                    ok = false;
-                    break;
+            if (bitmap != null) {
+                ok = !bitmap.isForbidden(p);
+            } else {
+                for (int i = 0; i < code.size(); i++) {
+                    int dist = ulamDistanceAtLeast(p, inverses.get(i), d);
+                    if (dist < d) {
+                        ok = false;
+                        break;
+                    }
+                    minDist = Math.min(minDist, dist);
                 }
-                minDist = Math.min(minDist, dist);
             }
 
             if (ok) {
                 int[] pCopy = p.clone();
+                if (bitmap != null) bitmap.add(pCopy);
                 code.add(pCopy);
                 inverses.add(inverse(pCopy));
             }
-        }
+        } while (order.next());
 
         System.out.println("\nFinal U(" + n + "," + d + ") size = " + code.size());
         saveCode();
@@ -112,57 +128,3 @@ public class GreedySJT_LIS {
         }
     }
 }
-
-class SJTGenerator {
-    int n;
-    int[] perm;
-    int[] dir;
-    boolean first = true;
-
-    public SJTGenerator(int n) {
-        this.n = n;
-        perm = new int[n];
-        dir = new int[n];
-        for (int i = 0; i < n; i++) {
-            perm[i] = i + 1;
-            dir[i] = -1;
-        }
-    }
-
-    public int[] next() {
-        if (first) {
-            first = false;
-            return perm;
-        }
-
-        int k = -1, kIdx = -1;
-
-        for (int i = 0; i < n; i++) {
-            int j = i + dir[i];
-            if (j >= 0 && j < n && perm[i] > perm[j]) {
-                if (k == -1 || perm[i] > k) {
-                    k = perm[i];
-                    kIdx = i;
-                }
-            }
-        }
-
-        if (k == -1) return null;
-
-        int swapIdx = kIdx + dir[kIdx];
-        swap(perm, kIdx, swapIdx);
-        swap(dir, kIdx, swapIdx);
-
-        for (int i = 0; i < n; i++) {
-            if (perm[i] > k) dir[i] *= -1;
-        }
-
-        return perm;
-    }
-
-    private void swap(int[] a, int i, int j) {
-        int t = a[i];
-        a[i] = a[j];
-        a[j] = t;
-    }
-}
@@ -0,0 +1,24 @@
+// Heap's algorithm, iterative form: each step exchanges two entries. No fillers.
+class HeapOrder extends PermutationOrder {
+    final int[] c; // c[i] = swaps done at level i
+    int i = 1;
+
+    HeapOrder(int[] perm) {
+        super(perm);
+        c = new int[n];
+    }
+
+    boolean next() {
+        while(i < n) {
+            if(c[i] < i) {
+                exchange(i % 2 == 0 ? 0 : c[i], i);
+                c[i]++;
+                i = 1;
+                return true;
+            }
+            c[i] = 0;
+            i++;
+        }
+        return false;
+    }
+}
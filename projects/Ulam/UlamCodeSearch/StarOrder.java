@@ -0,0 +1,34 @@
+// Ehrlich's star transpositions (Knuth 7.2.1.2 Algorithm E): each step exchanges perm[0] with another entry. No fillers.
+class StarOrder extends PermutationOrder {
+    final int[] b; // b[j] = position exchanged with perm[0] when digit j advances
+    final int[] c; // mixed-radix counter, c[j] <= j
+
+    StarOrder(int[] perm) {
+        super(perm);
+        b = new int[n];
+        c = new int[n + 1];
+        for(int j = 0; j < n; j++)
+            b[j] = j;
+    }
+
+    boolean next() {
+        int k = 1;
+        while(k < n && c[k] == k) {
+            c[k] = 0;
+            k++;
+        }
+        if(k >= n) {
+            for(int j = 1; j < n; j++) // the counter wrapped; keep it at its end
+                c[j] = j;
+            return false;
+        }
+        c[k]++;
+        exchange(0, b[k]);
+        for(int j = 1, l = k - 1; j < l; j++, l--) { // reverse b[1..k-1]
+            int temp = b[j];
+            b[j] = b[l];
+            b[l] = temp;
+        }
+        return true;
+    }
+}
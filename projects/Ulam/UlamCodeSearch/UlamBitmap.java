@@ -0,0 +1,83 @@
+/**
+ * Greedy-code filter for n <= 12: every permutation of 1..n within Ulam distance
+ * radius of an accepted codeword is marked by its lexicographic rank, so a
+ * candidate costs one bit test instead of a distance to every codeword.
+ */
+class UlamBitmap {
+    static final int MAX_N = 12; // 12! bits, about 60 MB
+
+    final int n;
+    final int radius;
+    final long[] factorial;
+    final long[] bits;
+    int[] reference; // codeword whose ball is being marked
+    final int[] tails; // tails[l] = smallest last position of an increasing run of length l+1 (patience sorting)
+
+    UlamBitmap(int n, int radius) {
+        this.n = n;
+        this.radius = radius;
+        factorial = new long[n + 1];
+        factorial[0] = 1;
+        for (int i = 1; i <= n; i++) factorial[i] = factorial[i - 1] * i;
+        bits = new long[(int) ((factorial[n] + 63) >>> 6)];
+        tails = new int[n + 1];
+    }
+
+    // Lexicographic rank of a permutation of 1..n
+    long rank(int[] p) {
+        int used = 0;
+        long rank = 0;
+        for (int i = 0; i < n; i++) {
+            int value = p[i] - 1;
+            rank += (value - Integer.bitCount(used & ((1 << value) - 1))) * factorial[n - 1 - i];
+            used |= 1 << value;
+        }
+        return rank;
+    }
+
+    boolean isForbidden(int[] p) {
+        long rank = rank(p);
+        return (bits[(int) (rank >>> 6)] & 1L << rank) != 0;
+    }
+
+    // Marks every q with LCS(codeword, q) >= n - radius
+    void add(int[] codeword) {
+        reference = codeword;
+        mark(0, (1 << n) - 1, 0, 0, 0);
+    }
+
+    /**
+     * Builds q position by position, tracking the LIS of the codeword positions
+     * it uses. A branch is only followed while some completion can still keep
+     * an increasing run of n - radius, so each leaf is a distinct ball member.
+     */
+    void mark(int i, int free, int used, long rank, int length) {
+        if (i == n) {
+            bits[(int) (rank >>> 6)] |= 1L << rank;
+            return;
+        }
+        for (int rest = free; rest != 0; rest &= rest - 1) {
+            int v = Integer.numberOfTrailingZeros(rest);
+            int j = 0;
+            while (j < length && tails[j] < v) j++;
+            int saved = tails[j];
+            tails[j] = v;
+            int left = free & ~(1 << v);
+            int newLength = Math.max(length, j + 1);
+            if (reachable(left, newLength)) {
+                int value = reference[v] - 1;
+                long slot = value - Integer.bitCount(used & ((1 << value) - 1));
+                mark(i + 1, left, used | 1 << value, rank + slot * factorial[n - 1 - i], newLength);
+            }
+            tails[j] = saved;
+        }
+    }
+
+    // Longest run a completion can reach: a run of the prefix, then every free position after its end, in order
+    boolean reachable(int free, int length) {
+        int best = Integer.bitCount(free);
+        for (int l = 1; l <= length; l++)
+            best = Math.max(best, l + Integer.bitCount(free >>> tails[l - 1] >>> 1));
+        return best >= n - radius;
+    }
+}
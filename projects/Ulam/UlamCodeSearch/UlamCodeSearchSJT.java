@@ -11,10 +11,11 @@ public class UlamCodeSearchSJT {
         d = Integer.parseInt(args[1]);
 
         List<int[]> code = new ArrayList<>();
-        SJTGenerator gen = new SJTGenerator(n);
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) p[i] = i + 1;
+        SJTOrder order = new SJTOrder(p, 0); // steps p in place
 
-        int[] p;
-        while ((p = gen.next()) != null) {
+        do {
             boolean ok = true;
             for (int[] q : code) {
                 if (ulamDistance(p, q) < d) {
@@ -23,9 +24,9 @@ public class UlamCodeSearchSJT {
                 }
             }
             if (ok) {
-                code.add(p);
+                code.add(p.clone());
             }
-        }
+        } while (order.next());
 
         System.out.println("\nFinal U(" + n + "," + d + ") size = " + code.size());
         saveCodeToFile(code, n, d);
@@ -74,57 +75,3 @@ public class UlamCodeSearchSJT {
     }
 
 }
-
-class SJTGenerator {
-    int n;
-    int[] perm;
-    int[] dir;
-    boolean first = true;
-
-    public SJTGenerator(int n) {
-        this.n = n;
-        perm = new int[n];
-        dir = new int[n];
-        for (int i = 0; i < n; i++) {
-            perm[i] = i + 1;
-            dir[i] = -1;
-        }
-    }
-
-    public int[] next() {
-        if (first) {
-            first = false;
-            return perm.clone();
-        }
-
-        int k = -1, kIdx = -1;
-
-        for (int i = 0; i < n; i++) {
-            int j = i + dir[i];
-            if (j >= 0 && j < n && perm[i] > perm[j]) {
-                if (k == -1 || perm[i] > k) {
-                    k = perm[i];
-                    kIdx = i;
-                }
-            }
-        }
-
-        if (k == -1) return null;
-
-        int swapIdx = kIdx + dir[kIdx];
-        swap(perm, kIdx, swapIdx);
-        swap(dir, kIdx, swapIdx);
-
-        for (int i = 0; i < n; i++) {
-            if (perm[i] > k) dir[i] *= -1;
-        }
-
-        return perm.clone();
-    }
-
-    private void swap(int[] a, int i, int j) {
-        int t = a[i];
-        a[i] = a[j];
-        a[j] = t;
-    }
-}
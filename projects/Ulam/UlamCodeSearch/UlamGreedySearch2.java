@@ -6,6 +6,8 @@ public class UlamGreedySearch2 {
     static int d; // minimum Ulam distance
     static int randomSeedCount = 0; // number of random permutations to pick initially
     static List<int[]> solutionSet = new ArrayList<>(); // stores the final set of permutations
+    static boolean useBitmap = false; // -bitmap: test candidates against the marked balls of the chosen perms
+    static UlamBitmap bitmap; // balls of radius d-1 around solutionSet, when useBitmap
 
     public static void main(String[] args) {
         solutionSet = new ArrayList<>(); // stores the final set of permutations
@@ -20,6 +22,8 @@ public class UlamGreedySearch2 {
             argList.remove(rIndex);
             System.out.println("Random seeding ENABLED with " + randomSeedCount + " random permutations.");
         }
+        // Optional: -bitmap marks each chosen perm's distance < d ball (n <= 12)
+        useBitmap = argList.remove("-bitmap");
 
         if (argList.size() >= 2) {
             try {
@@ -38,6 +42,11 @@ public class UlamGreedySearch2 {
             d = scanner.nextInt();
         }
 
+        if (useBitmap && n > UlamBitmap.MAX_N) {
+            System.err.println("Error: -bitmap needs n <= " + UlamBitmap.MAX_N + ".");
+            System.exit(1);
+        }
+
         System.out.println("Running UlamGreedySearch with n=" + n + " and d=" + d);
 
         // Main algorithm
@@ -71,6 +80,8 @@ public class UlamGreedySearch2 {
         int[] perm = new int[n];
         for (int i = 0; i < n; i++) perm[i] = i + 1;
 
+        if (useBitmap) bitmap = new UlamBitmap(n, d - 1);
+
         // Step 1: random seeding (optional, can shuffle a few initial perms)
         Random rng = new Random();
         if (randomSeedCount > 0) {
@@ -78,17 +89,22 @@ public class UlamGreedySearch2 {
                 int[] candidate = perm.clone();
                 shuffle(candidate, rng);
                 if (isGoodCandidate(candidate))
-                    solutionSet.add(candidate.clone());
+                    addToSolution(candidate);
             }
         }
 
         // Step 2: lexicographic iteration
         do {
             if (isGoodCandidate(perm))
-                solutionSet.add(perm.clone());
+                addToSolution(perm);
         } while (nextPermutation(perm));
     }
 
+    static void addToSolution(int[] perm) {
+        solutionSet.add(perm.clone());
+        if (useBitmap) bitmap.add(perm);
+    }
+
     static void shuffle(int[] arr, Random rng) {
         for (int i = arr.length - 1; i > 0; i--) {
             int j = rng.nextInt(i + 1);
@@ -128,6 +144,7 @@ public class UlamGreedySearch2 {
     }
 
     static boolean isGoodCandidate(int[] candidate) {
+        if (useBitmap) return !bitmap.isForbidden(candidate);
         for (int[] existing : solutionSet) {
             if (ulamDistanceEarlyStop(candidate, existing, d)) {
                 return false;